@@ -66,6 +66,17 @@ public class Common implements ICommon {
     public int m_fisicalDigitDim;
     public String m_paginationQuery;
     public String m_paginationPageSize;
+    /** the template of the search query for the keyset pagination mode (optional) */
+    public String m_keysetQuery;
+    /** the dbms places NULLs before the other values in ascending order */
+    public boolean m_nullsFirstInAscOrder = true;
+    /**
+     * the searches page through the result by the values of the sort columns
+     * instead of by the number of iteration
+     *
+     * @see org.joty.common.SearchQueryBuilderBack
+     */
+    public boolean m_keysetPagination;
     public String m_loc_lang;
     public String m_loc_country;
     public ConfigFile m_configuration;
@@ -84,6 +95,10 @@ public class Common implements ICommon {
     public String m_authServer;
     public String m_sslPort;
     public boolean m_fieldOrdinality;
+    /** if true the data of the queries are asked to the server in the packed format (see {@code org.joty.common.PackedData}) */
+    public boolean m_packedData;
+    /** the size beyond which the body of a request carrying binary content is compressed (0 = never) */
+    public int m_postCompressionThreshold;
     public boolean m_reuseMetadataOnLoadForStore;
     public String m_seq_name;
     public String m_dateSeparator;
@@ -223,6 +238,7 @@ public class Common implements ICommon {
             m_emptyDateRendering = getEmptyDateRendering();
             m_emptyDateTimeRendering = getEmptyDateTimeRendering();
             m_paginationPageSize = getConfStr("pageSize");
+            m_keysetPagination = Boolean.parseBoolean(m_configuration.configTermValue("keysetPagination", true));
             m_passwordLen = getConfInt("passwordLen");
             m_dbmsUserPwdStatement = getConfStr("dbmsUserPwdStatement");
             m_dbmsChangePwdStatement = m_configuration.configTermValue("dbmsChangePwdStatement", jdbcClassName.indexOf("Oracle") >= 0);
@@ -242,6 +258,9 @@ public class Common implements ICommon {
                 m_xmlDateFormat = getConfStr("xmlDateFormat");
                 m_fieldOrdinality = getConfBool("fieldOrdinality");
                 m_reuseMetadataOnLoadForStore = getConfBool("reuseMetadataOnLoadForStore");
+                m_packedData = Boolean.parseBoolean(m_configuration.configTermValue("packedData", true));
+                String postCompressionThreshold = m_configuration.configTermValue("postCompressionThreshold", true);
+                m_postCompressionThreshold = postCompressionThreshold == null ? 0 : Integer.parseInt(postCompressionThreshold.trim());
             }
             m_seq_name = getConfStr("defaultSeqName");
             if (m_emptyDateRendering.length() != 10 || m_emptyDateTimeRendering.length() != 19)
@@ -472,9 +491,8 @@ public class Common implements ICommon {
     String descrByCode(LiteralsCollection literalStruct, int itemData) {
         String retVal = "";
         if (itemData >= 0) {
-            Integer posIdx;
-            posIdx = literalStruct.m_descrReverseMap.get(itemData);
-            if (posIdx != null)
+            int posIdx = literalStruct.m_descrReverseMap.get(itemData);
+            if (posIdx >= 0)
                 retVal = literalStruct.m_descrArray.get(posIdx).descr;
         }
         return retVal;
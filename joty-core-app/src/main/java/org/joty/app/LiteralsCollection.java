@@ -19,11 +19,11 @@
 
 package org.joty.app;
 
-import java.util.HashMap;
 import java.util.Vector;
 
 import org.joty.common.CaselessStringKeyMap;
 import org.joty.common.JotyMessenger;
+import org.joty.common.LongIntMap;
 import org.joty.data.JotyResultSet;
 
 
@@ -58,7 +58,7 @@ public class LiteralsCollection {
 	}
 	
 	public Vector<DescrStruct> m_descrArray;
-	public HashMap<Long, Integer> m_descrReverseMap;
+	public LongIntMap m_descrReverseMap;
 	public CaselessStringKeyMap<Integer> m_strKeyRevMap;
 	public String m_name;
 	public boolean m_dynamic;
@@ -107,7 +107,7 @@ public class LiteralsCollection {
 	public void init(String name, boolean withStrKey) {
 		m_name = name;
 		m_descrArray = new Vector<DescrStruct>();
-		m_descrReverseMap = new HashMap<Long, Integer>();
+		m_descrReverseMap = new LongIntMap();
 		if (withStrKey)
 			m_strKeyRevMap = new CaselessStringKeyMap<Integer>(m_jotyAppInstance);
 	}
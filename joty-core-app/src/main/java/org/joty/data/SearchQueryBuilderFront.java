@@ -56,6 +56,7 @@ public class SearchQueryBuilderFront {
         m_backDelegate = new SearchQueryBuilderBack();
        	Common common = (Common) ((ApplMessenger) app).getCommon();
        m_backDelegate.setPaginationQuery(common.paginationQuery(),common.paginationPageSize());
+       m_backDelegate.setKeysetQuery(common.m_keysetQuery, common.m_nullsFirstInAscOrder);
     }
 
     public interface TermContributor {
@@ -19,7 +19,11 @@
 
 package org.joty.data;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Calendar;
 
 import org.joty.app.Common;
 import org.joty.app.JotyApplication;
@@ -28,6 +32,7 @@ import org.joty.app.JotyException.reason;
 import org.joty.common.ApplMessenger;
 import org.joty.common.BasicPostStatement;
 import org.joty.common.JotyTypes;
+import org.joty.common.PackedData;
 import org.joty.common.Utilities;
 import org.joty.common.Utilities.Stocker;
 import org.joty.web.AbstractWebClient;
@@ -57,7 +62,9 @@ import org.w3c.dom.NodeList;
  * normally translated in sql statement; for this purpose the class uses an
  * instance of the {@code StatementBuilder} class. The 'delete' command is
  * always translated in sql. The result of an inquiry to the database, coming
- * from the Joty Server, is hold in a {@code org.w3c.dom.NodeList} object.
+ * from the Joty Server, is hold in a {@code org.w3c.dom.NodeList} object or,
+ * if the server delivered it in the packed format, in an array of bytes
+ * indexed by the offsets of the records (see {@code PackedData}).
  * <p>
  * As other main classes of the data area of the framework, this one too
  * supports the Accessor mode, by which the completion of the synthesis of the
@@ -79,6 +86,7 @@ import org.w3c.dom.NodeList;
  * @see WrappedField
  * @see AbstractWebClient
  * @see BasicPostStatement
+ * @see PackedData
  *
  */
 
@@ -99,6 +107,12 @@ public abstract class WrappedResultSet  implements JotyResultSet {
     public boolean m_nodeListBOF;
     public Stocker m_smallBlobs;
     private Document m_xml;
+    private byte[] m_packedData;
+    private int[] m_packedRecOffsets;
+    private int m_packedRecCount;
+    private ByteArrayInputStream m_packedInput;
+    private DataInputStream m_packedStream;
+    private Calendar m_packedCalendar;
     public int m_colCount;
     public String m_sql;
 
@@ -574,10 +588,16 @@ public abstract class WrappedResultSet  implements JotyResultSet {
             wClient.loadResultSetStructureFromXml(this, m_xml);
             Element node = (Element) m_xml.getElementsByTagName("Data").item(0);
             if (node != null) {
-                m_recNodeList = node.getElementsByTagName("Record");
-                m_currNodeIndex = -1;
-                if (!getRecordFromNodeList() && ! m_nodeListBOF)
-                    success = false;;
+                m_packedData = wClient.getPackedData(node);
+                m_currNode = null;
+                if (m_packedData == null)
+                    m_recNodeList = node.getElementsByTagName("Record");
+                if (m_packedData == null || indexPackedRecords()) {
+                    m_currNodeIndex = -1;
+                    if (!getRecordFromNodeList() && ! m_nodeListBOF)
+                        success = false;;
+                } else
+                    success = false;
             }
         }
         if (m_cursor != null)
@@ -585,8 +605,95 @@ public abstract class WrappedResultSet  implements JotyResultSet {
         return success;
     }
 
+    /** @return the number of records got from the server */
+    public int recordCount() {
+        return m_packedData == null ? m_recNodeList.getLength() : m_packedRecCount;
+    }
+
+    /**
+     * Scans the packed records once, by skipping the values, to locate the
+     * starting position of each of them.
+     */
+    private boolean indexPackedRecords() {
+        m_packedInput = new ByteArrayInputStream(m_packedData);
+        m_packedStream = new DataInputStream(m_packedInput);
+        m_packedRecOffsets = new int[16];
+        m_packedRecCount = 0;
+        try {
+            while (m_packedInput.available() > 0) {
+                if (m_packedRecCount == m_packedRecOffsets.length) {
+                    int[] offsets = new int[m_packedRecCount * 2];
+                    System.arraycopy(m_packedRecOffsets, 0, offsets, 0, m_packedRecCount);
+                    m_packedRecOffsets = offsets;
+                }
+                m_packedRecOffsets[m_packedRecCount++] = m_packedData.length - m_packedInput.available();
+                for (int i = 0; i < m_colCount; i++)
+                    if (m_packedStream.readByte() == PackedData.VALUE)
+                        PackedData.skipValue(m_packedStream, m_cursor.m_fields[i].m_nType);
+            }
+        } catch (IOException e) {
+            manageGettingRecordException();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean getRecordFromPackedData() {
+        m_packedInput.reset();
+        m_packedInput.skip(m_packedRecOffsets[m_currNodeIndex]);
+        if (m_packedCalendar == null)
+            m_packedCalendar = Calendar.getInstance();
+        FieldDescriptor fieldDescriptor;
+        try {
+            for (int i = 0; i < m_colCount; i++) {
+                fieldDescriptor = m_cursor.m_fields[i];
+                if (m_packedStream.readByte() == PackedData.NULL_VALUE)
+                    fieldDescriptor.clear();
+                else {
+                    fieldDescriptor.m_isNull = false;
+                    switch (fieldDescriptor.m_nType) {
+                        case JotyTypes._text:
+                            fieldDescriptor.m_strVal = PackedData.readText(m_packedStream);
+                            break;
+                        case JotyTypes._long:
+                            fieldDescriptor.m_lVal = m_packedStream.readLong();
+                            break;
+                        case JotyTypes._int:
+                            fieldDescriptor.m_iVal = m_packedStream.readInt();
+                            break;
+                        case JotyTypes._double:
+                            fieldDescriptor.m_dblVal = m_packedStream.readDouble();
+                            break;
+                        case JotyTypes._single:
+                            fieldDescriptor.m_fltVal = m_packedStream.readFloat();
+                            break;
+                        case JotyTypes._date:
+                        case JotyTypes._dateTime:
+                            fieldDescriptor.m_dateVal.setTime(PackedData.readDate(m_packedStream, m_packedCalendar));
+                            break;
+                        case JotyTypes._blob:
+                            PackedData.skipValue(m_packedStream, JotyTypes._blob); // embedded management for blobs
+                            break;
+                        case JotyTypes._smallBlob:
+                            fieldDescriptor.m_previewBytes = PackedData.readBytes(m_packedStream);
+                            break;
+                        case JotyTypes._none:
+                            break; // no value follows the marker
+                        default:
+                            manageGettingRecordException();
+                            return false;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            manageGettingRecordException();
+            return false;
+        }
+        return true;
+    }
+
     public boolean getRecordFromNodeList() {
-        long setDim = m_recNodeList.getLength();
+        long setDim = recordCount();
         if (setDim > m_currNodeIndex)
             m_currNodeIndex++;
         m_nodeListEOF = setDim == 0 || setDim == m_currNodeIndex;
@@ -594,7 +701,10 @@ public abstract class WrappedResultSet  implements JotyResultSet {
         boolean recordGot = false;
         if (!m_nodeListEOF) {
             recordGot = true;
-            m_currNode = m_recNodeList.item(m_currNodeIndex);
+            if (m_packedData != null)
+                success = getRecordFromPackedData();
+            else
+                m_currNode = m_recNodeList.item(m_currNodeIndex);
             if (m_currNode != null) {
                 NodeList valueNodes = m_currNode.getChildNodes();
                 String fieldVal;
@@ -118,6 +118,14 @@ public abstract class AbstractWebClient {
     protected boolean m_genTableJustSpecified;
     protected AbstractDbManager m_dbManager;
     protected ParamContext m_refTransParamContext;
+    /** if set, the next GET request is made conditional on the entity tag */
+    protected String m_ifNoneMatch;
+    /** the entity tag of the content received by the last GET request */
+    public String m_respEtag;
+    /** true if the last GET request has been answered that the content held by the client is not modified */
+    public boolean m_respNotModified;
+    /** the content of the last GET request, if it was binary */
+    public byte[] m_respBytes;
 
     public AbstractWebClient(JotyApplication app) {
         m_app =  app;
@@ -187,6 +195,11 @@ public abstract class AbstractWebClient {
         addXmlNode(xml, "MainFilter", stmntElem, postStatement.m_mainFilter);
         addXmlNode(xml, "SortExpr", stmntElem, postStatement.m_sortExpr);
         addXmlNode(xml, "Iteration", stmntElem, postStatement.m_iteration);
+        if (postStatement.m_seekValues != null) {
+            Element seekValuesElem = addXmlNode(xml, "SeekValues", stmntElem);
+            for (String value : postStatement.m_seekValues)
+                addXmlNode(xml, "Val", seekValuesElem, value);
+        }
 
         if (postStatement.m_nonManagedRollbackActionIden != 0)
             addXmlNode(xml, "NMRA", stmntElem, String.valueOf(postStatement.m_nonManagedRollbackActionIden));
@@ -285,6 +298,7 @@ public abstract class AbstractWebClient {
                         (m_postStatements.size() > 0 ||
                                 m_queryStmnt != null ||
                                 queryDefPostStatement != null ||
+                                m_command.equals("reportSubmit") ||
                                 m_reportParams != null && m_reportParams.size() > 0);
         String urlStr = getCommon().m_secure ? m_authServerPath : m_servletPath;
         m_responseText = null;
@@ -310,10 +324,10 @@ public abstract class AbstractWebClient {
                 rootElem.setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
                 rootElem.setAttribute("xsi:schemaLocation", "http://www.joty.org JotyRequest.xsd");
             }
-            if (m_command.compareToIgnoreCase("report") == 0) {
+            if (m_command.compareToIgnoreCase("report") == 0 || m_command.compareToIgnoreCase("reportSubmit") == 0) {
                 Element repParmsElem = addXmlNode(xml, "ReportParms", rootElem);
                 Element paramElem = null;
-                for (int i = 0; i < m_reportParams.size(); i++) {
+                for (int i = 0; m_reportParams != null && i < m_reportParams.size(); i++) {
                     paramElem = addXmlNode(xml, "Item", repParmsElem);
                     addXmlNode(xml, "Name", paramElem, m_reportParams.get(i).name);
                     addXmlNode(xml, "Val", paramElem, m_reportParams.get(i).render());
@@ -336,17 +350,27 @@ public abstract class AbstractWebClient {
                     }
                 }
             }
-            if (m_bytes != null) {
+            boolean binaryContent = m_bytes != null;
+            if (binaryContent) {
                 addBinaryNode(xml, rootElem, false);
                 if (m_auxiliaryBytes != null)
                     addBinaryNode(xml, rootElem, true);
             }
             resetReqBodyTerms();
             webConn.m_postContent = "<?xml version='1.0' encoding='UTF-8' ?>" + getXmlContent(xml);
+            int compressionThreshold = getCommon().m_postCompressionThreshold;
+            webConn.m_compressPost = binaryContent && compressionThreshold > 0 && webConn.m_postContent.length() >= compressionThreshold;
             log("Post content : \n" + webConn.m_postContent);
             return doPost(webConn, manager);
-        } else
-            return doGet(webConn, manager);
+        } else {
+            webConn.m_ifNoneMatch = m_ifNoneMatch;
+            m_ifNoneMatch = null;
+            boolean retVal = doGet(webConn, manager);
+            m_respEtag = webConn.m_etag;
+            m_respNotModified = webConn.m_notModified;
+            m_respBytes = webConn.m_responseBytes;
+            return retVal;
+        }
     }
 
 
@@ -557,6 +581,28 @@ public abstract class AbstractWebClient {
         }
     }
 
+    /**
+     * Gets the records carried by the 'Data' node in the packed format.
+     *
+     * @param dataNode the 'Data' node of the response
+     * @return the concatenation of the decoded content of the 'Pack' nodes or null if the server
+     * responded with the 'Record' nodes
+     *
+     * @see org.joty.common.PackedData
+     */
+    public byte[] getPackedData(Element dataNode) {
+        if (!"y".equals(dataNode.getAttribute("packed")))
+            return null;
+        NodeList packNodes = dataNode.getElementsByTagName("Pack");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] bytes;
+        for (int i = 0; i < packNodes.getLength(); i++) {
+            bytes = getCommon().m_xmlEncoder.decodeBytes(packNodes.item(i).getTextContent());
+            baos.write(bytes, 0, bytes.length);
+        }
+        return baos.toByteArray();
+    }
+
     public abstract boolean login(Object manager);
 
     public BasicPostStatement prepareAddNewItems(JotyResultSet rs) {
@@ -600,6 +646,64 @@ public abstract class AbstractWebClient {
 
     protected abstract boolean doReport(String renderType);
 
+    /**
+     * Asks the server to build the report in background.
+     *
+     * @return the identifier of the report job or null on failure
+     * @see #reportJobState(String)
+     * @see #fetchReport(String)
+     */
+    public String submitReport(String name, String renderType, boolean twoProcess, Vector<ReportManager.Parameter> params) {
+        prepareReqCommand("reportSubmit");
+        addReqParm("name", name);
+        addReqParm("type", renderType);
+        addReqParm("lang", getCommon().m_language);
+        addReqParm("twoProc", twoProcess ? "y" : "n");
+        m_reportParams = params;
+        String retVal = null;
+        if (doRequest()) {
+            DocumentDescriptor docDescriptor = getDocumentFromRespContent(true);
+            if (docDescriptor.success)
+                retVal = getValue(docDescriptor.xml, "Id");
+        }
+        return retVal;
+    }
+
+    /**
+     * @return the state of the report job ('queued', 'running' or 'done') or
+     *         null if the job failed or it is not found
+     */
+    public String reportJobState(String jobId) {
+        prepareReqCommand("reportStatus");
+        addReqParm("id", jobId);
+        String retVal = null;
+        if (doRequest()) {
+            DocumentDescriptor docDescriptor = getDocumentFromRespContent(true);
+            if (docDescriptor.success)
+                retVal = getValue(docDescriptor.xml, "State");
+        }
+        return retVal;
+    }
+
+    /**
+     * Gets the output of the report job, that the server sends as it is and
+     * then discards.
+     *
+     * @return the content of the report or null on failure
+     */
+    public byte[] fetchReport(String jobId) {
+        prepareReqCommand("reportFetch");
+        addReqParm("id", jobId);
+        byte[] retVal = null;
+        if (doRequest()) {
+            if (m_respBytes == null)
+                getDocumentFromRespContent(true);
+            else
+                retVal = m_respBytes;
+        }
+        return retVal;
+    }
+
     protected void resetReqBodyTerms() {
         m_command = null;
         m_queryStmnt = null;
@@ -636,6 +740,8 @@ public abstract class AbstractWebClient {
             prepareReqCommand("query");
             if (withBinaries)
                 addReqParm("bin", "y");
+            else if (getCommon().m_packedData && !onlyStructure)
+                addReqParm("packed", "y");
             addReqParm("data", onlyStructure ? "n" : "y");
         } else {
             prepareReqCommand("login");
@@ -21,14 +21,21 @@ package org.joty.web;
 
 import org.joty.app.JotyApplication;
 import org.joty.common.JotyMessenger;
+import org.joty.common.Utilities;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
@@ -41,6 +48,15 @@ import javax.net.ssl.TrustManager;
  * This class is responsible to manage the http connection with server. When it
  * detects the protocol in the url, it switches in ssl mode delegating a {@code  AbstractJotyTrustManager} instance for the
  * certificate checking or for triggering the management of it.
+ * <p>
+ * Every request declares that a 'gzip' or 'deflate' compressed response is
+ * accepted and {@code responseStream} takes care of the decompression; the
+ * body of a POST request is compressed if {@code m_compressPost} is set.
+ * <p>
+ * If {@code m_ifNoneMatch} is set the request is conditional: when the server
+ * answers that the representation is not modified {@code m_notModified} is set
+ * and the response text is empty. A binary response ('application/octet-stream')
+ * is not converted to text: its content is made available in {@code m_responseBytes}.
  *
  * @see  AbstractJotyTrustManager
  */
@@ -48,6 +64,13 @@ import javax.net.ssl.TrustManager;
 public abstract class AbstractWebConn {
     public String m_url;
     public String m_postContent;
+    public boolean m_compressPost;
+    /** the entity tag of the copy of the content held by the client */
+    public String m_ifNoneMatch;
+    /** the entity tag of the received content */
+    public String m_etag;
+    public boolean m_notModified;
+    public byte[] m_responseBytes;
     protected int responseCode;
     public boolean m_post;
     protected HttpURLConnection m_conn;
@@ -110,11 +133,16 @@ public abstract class AbstractWebConn {
 
             m_conn.setRequestMethod(m_post ? "POST" : "GET");
             m_conn.setDoInput(true);
+            m_conn.setRequestProperty("Accept-Encoding", "gzip, deflate");
+            if (m_ifNoneMatch != null)
+                m_conn.setRequestProperty("If-None-Match", m_ifNoneMatch);
 
 
             if (m_post) {
                 m_conn.setUseCaches(false);
                 m_conn.setDoOutput(true);
+                if (m_compressPost)
+                    m_conn.setRequestProperty("Content-Encoding", "gzip");
             } else {
                 m_conn.setReadTimeout(waitingGet ? 100000 : 0  /* milliseconds */);
                 m_conn.setConnectTimeout(waitingGet ? 150000 : 0 /* milliseconds */);
@@ -126,6 +154,44 @@ public abstract class AbstractWebConn {
         return retVal;
     }
 
+    /** Sends the body of the POST request, UTF-8 encoded and possibly compressed. */
+    protected void writePostContent() throws IOException {
+        OutputStream os = m_conn.getOutputStream();
+        Writer out = new OutputStreamWriter(m_compressPost ? new GZIPOutputStream(os) : os, "UTF-8");
+        out.write(m_postContent);
+        out.close();
+    }
+
+    /** @return the stream of the response content, decompressed as the server declared */
+    protected InputStream responseStream() throws IOException {
+        InputStream is = m_conn.getInputStream();
+        String encoding = m_conn.getContentEncoding();
+        if ("gzip".equalsIgnoreCase(encoding))
+            is = new GZIPInputStream(is);
+        else if ("deflate".equalsIgnoreCase(encoding))
+            is = new InflaterInputStream(is);
+        return is;
+    }
+
+    /**
+     * Reads the response content after the response code has been got, taking
+     * care of the 'not modified' status and of the entity tag.
+     */
+    protected String readResponse() throws IOException {
+        m_etag = m_conn.getHeaderField("ETag");
+        m_notModified = responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+        m_responseBytes = null;
+        if (m_notModified)
+            return "";
+        else if ("application/octet-stream".equals(m_conn.getContentType())) {
+            InputStream is = responseStream();
+            m_responseBytes = Utilities.bytesFromInputStream(is);
+            is.close();
+            return "";
+        } else
+            return getResp(responseStream());
+    }
+
     protected abstract TrustManager createJotyTrustManager() throws Exception;
 
 
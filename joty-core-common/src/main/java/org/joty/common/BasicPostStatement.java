@@ -179,6 +179,13 @@ public class BasicPostStatement {
 	public String m_mainFilter;
 	public String m_sortExpr;
 	public String m_iteration;
+	/**
+	 * the sql literals of the values of the sort columns in the last row of
+	 * the previous page, for the keyset pagination
+	 * 
+	 * @see SearchQueryBuilderBack
+	 */
+	public String[] m_seekValues;
 
 	/** A vector of a general purpose parameters */
 	public Vector<Item> m_items;
@@ -209,7 +216,7 @@ public class BasicPostStatement {
 		if (paramContext.m_paramsSet != null)
 			for (Iterator it = paramContext.m_paramsSet.entrySet().iterator(); it.hasNext();) {
 				Entry<String, ContextParam> entry = ((Entry<String, ContextParam>) it.next());
-				addItem(entry.getKey(), paramContext.contextParameter(entry.getKey()));
+				addItem(entry.getKey(), paramContext.contextParameter(entry.getKey()), itemType(entry.getValue()));
 				m_items.get(m_items.size() - 1).m_buildFromDirtyPrm = entry.getValue().m_dirty;
 			}
 	}
@@ -222,6 +229,20 @@ public class BasicPostStatement {
 		m_returnedValuesMap.put(name, item);
 	}
 
+	/** Maps the type of the context parameter to the one of the Item object that transfers it. */
+	private int itemType(ContextParam contextParam) {
+		switch (contextParam.m_type) {
+			case CTXP_NUM:
+				return Item._long;
+			case CTXP_DBL:
+				return Item._double;
+			case CTXP_DATE:
+				return Item._date;
+			default:
+				return Item._text;
+		}
+	}
+
 	public void clear() {
 		m_sql = "";
 		m_autoId = "";
@@ -233,6 +254,7 @@ public class BasicPostStatement {
 		m_termName = "";
 		m_firstOutParamPos = "";
 		m_outParamsQty = "";
+		m_seekValues = null;
 		m_items.removeAllElements();
 		if (m_returnedValues != null) {
 			m_returnedValues.clear();
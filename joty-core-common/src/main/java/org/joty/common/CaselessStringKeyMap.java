@@ -19,15 +19,28 @@
 
 package org.joty.common;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 
 /**
- * An HashMap descendant that offers simple way of use.
+ * A Map implementation that offers simple way of use.
  * <p>
  * It is for dealing with set of objects of some type {@code <T>} mapped on key String-s
  * by being unaware of case of the keys.
  * <p>
+ * The case of the keys is ignored by a hash and an equality test that fold the
+ * characters one at a time, in the same way as
+ * {@code String.equalsIgnoreCase} does, so that no String object is created by
+ * the look-ups and the result doesn't depend on the default locale. The keys
+ * are stored, and returned by the iteration, in their folded (lower case)
+ * form.
+ * <p>
  * the class provides a bit of assistance for key collisions: the
  * {@code m_overwritable} member can be set to true in order to have values
  * overwritten on collision.
@@ -35,17 +48,184 @@ import java.util.HashMap;
  * @param <T>
  *            the type of the value instances stored and mapped to the keys.
  */
-public class CaselessStringKeyMap<T> extends HashMap<String, T> {
+public class CaselessStringKeyMap<T> extends AbstractMap<String, T> {
+
+	private static class Node<T> implements Map.Entry<String, T> {
+		final String m_key;
+		final int m_hash;
+		T m_value;
+		Node<T> m_next;
+
+		Node(String key, int hash, T value, Node<T> next) {
+			m_key = key;
+			m_hash = hash;
+			m_value = value;
+			m_next = next;
+		}
+
+		@Override
+		public String getKey() {
+			return m_key;
+		}
+
+		@Override
+		public T getValue() {
+			return m_value;
+		}
+
+		@Override
+		public T setValue(T value) {
+			T oldValue = m_value;
+			m_value = value;
+			return oldValue;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry))
+				return false;
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+			return m_key.equals(entry.getKey()) && (m_value == null ? entry.getValue() == null : m_value.equals(entry.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return m_key.hashCode() ^ (m_value == null ? 0 : m_value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return m_key + "=" + m_value;
+		}
+	}
+
+	private class NodeIterator implements Iterator<Map.Entry<String, T>> {
+		int m_index;
+		Node<T> m_next;
+		Node<T> m_current;
+		int m_expectedModCount = m_modCount;
+
+		NodeIterator() {
+			advance();
+		}
+
+		private void advance() {
+			while (m_next == null && m_index < m_table.length)
+				m_next = m_table[m_index++];
+		}
+
+		@Override
+		public boolean hasNext() {
+			return m_next != null;
+		}
+
+		@Override
+		public Map.Entry<String, T> next() {
+			if (m_modCount != m_expectedModCount)
+				throw new ConcurrentModificationException();
+			if (m_next == null)
+				throw new NoSuchElementException();
+			m_current = m_next;
+			m_next = m_next.m_next;
+			advance();
+			return m_current;
+		}
+
+		@Override
+		public void remove() {
+			if (m_current == null)
+				throw new IllegalStateException();
+			if (m_modCount != m_expectedModCount)
+				throw new ConcurrentModificationException();
+			removeNode(m_current.m_key);
+			m_current = null;
+			m_expectedModCount = m_modCount;
+		}
+	}
 
 	boolean m_overwritable = false;
 	JotyMessenger m_jotyMessanger;
 
+	private Node<T>[] m_table;
+	private int m_size;
+	private int m_modCount;
+	private Set<Map.Entry<String, T>> m_entrySet;
+
 	public CaselessStringKeyMap(JotyMessenger jotyAppInstance) {
 		m_jotyMessanger = jotyAppInstance;
+		m_table = newTable(16);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static <T> Node<T>[] newTable(int length) {
+		return new Node[length];
+	}
+
+	private static char fold(char c) {
+		if (c < 128)
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static String foldedKey(String key) {
+		char[] chars = new char[key.length()];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = fold(key.charAt(i));
+		return new String(chars);
+	}
+
+	private static int hash(String key) {
+		int h = 0;
+		for (int i = 0, len = key.length(); i < len; i++)
+			h = 31 * h + fold(key.charAt(i));
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public void clear() {
+		if (m_size > 0) {
+			for (int i = 0; i < m_table.length; i++)
+				m_table[i] = null;
+			m_size = 0;
+			m_modCount++;
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && node((String) key) != null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, T>> entrySet() {
+		if (m_entrySet == null)
+			m_entrySet = new AbstractSet<Map.Entry<String, T>>() {
+				@Override
+				public void clear() {
+					CaselessStringKeyMap.this.clear();
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, T>> iterator() {
+					return new NodeIterator();
+				}
+
+				@Override
+				public int size() {
+					return m_size;
+				}
+			};
+		return m_entrySet;
 	}
-	
+
+	@Override
+	public T get(Object key) {
+		return key instanceof String ? get((String) key) : null;
+	}
+
 	public T get(String key) {
-		return super.get(key.toLowerCase());
+		Node<T> node = node(key);
+		return node == null ? null : node.m_value;
 	}
 
 	public T getWithWarning(String key) {
@@ -57,21 +237,85 @@ public class CaselessStringKeyMap<T> extends HashMap<String, T> {
 		return elem;
 	}
 
+	private Node<T> node(String key) {
+		int hash = hash(key);
+		int len = key.length();
+		for (Node<T> node = m_table[hash & (m_table.length - 1)]; node != null; node = node.m_next)
+			if (node.m_hash == hash && node.m_key.length() == len && matches(node.m_key, key))
+				return node;
+		return null;
+	}
+
+	/** {@code foldedKey} is already folded: only the chars of {@code key} are folded. */
+	private static boolean matches(String foldedKey, String key) {
+		for (int i = 0, len = key.length(); i < len; i++)
+			if (foldedKey.charAt(i) != fold(key.charAt(i)))
+				return false;
+		return true;
+	}
+
 	@Override
 	public T put(String key, T value) {
-		String lcKey = key.toLowerCase();
-		if (!m_overwritable && get(lcKey) != null)
-			m_jotyMessanger.jotyMessage("In a map, the pre-exisiting slot for the key '" + key + "' is being overwritten !");
-		return super.put(lcKey, value);
+		Node<T> node = node(key);
+		if (node != null) {
+			if (!m_overwritable && node.m_value != null)
+				m_jotyMessanger.jotyMessage("In a map, the pre-exisiting slot for the key '" + key + "' is being overwritten !");
+			return node.setValue(value);
+		}
+		int hash = hash(key);
+		int index = hash & (m_table.length - 1);
+		m_table[index] = new Node<T>(foldedKey(key), hash, value, m_table[index]);
+		m_modCount++;
+		if (++m_size > m_table.length * 3 / 4)
+			resize();
+		return null;
 	}
 
 	@Override
 	public T remove(Object key) {
-		return super.remove(((String) key).toLowerCase());
+		Node<T> node = removeNode((String) key);
+		return node == null ? null : node.m_value;
+	}
+
+	private Node<T> removeNode(String key) {
+		int hash = hash(key);
+		int len = key.length();
+		int index = hash & (m_table.length - 1);
+		Node<T> prev = null;
+		for (Node<T> node = m_table[index]; node != null; prev = node, node = node.m_next)
+			if (node.m_hash == hash && node.m_key.length() == len && node.m_key.regionMatches(true, 0, key, 0, len)) {
+				if (prev == null)
+					m_table[index] = node.m_next;
+				else
+					prev.m_next = node.m_next;
+				m_size--;
+				m_modCount++;
+				return node;
+			}
+		return null;
+	}
+
+	private void resize() {
+		Node<T>[] oldTable = m_table;
+		m_table = newTable(oldTable.length * 2);
+		Node<T> next;
+		int index;
+		for (Node<T> node : oldTable)
+			for (; node != null; node = next) {
+				next = node.m_next;
+				index = node.m_hash & (m_table.length - 1);
+				node.m_next = m_table[index];
+				m_table[index] = node;
+			}
 	}
 
 	public void setOverWritable() {
 		m_overwritable = true;
 	}
 
-}
\ No newline at end of file
+	@Override
+	public int size() {
+		return m_size;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.common;
+
+/**
+ * An index that maps {@code int} keys on {@code int} values without boxing
+ * either of them.
+ * <p>
+ * The keys are widened and held by a {@code LongIntMap} instance, so that
+ * the open addressing table, with its resizing and its removal without
+ * tombstones, is implemented once: the price is four more bytes per slot,
+ * that is negligible for the row positions the class is meant for.
+ * <p>
+ * A look-up of an absent key returns the {@code missingValue} specified on
+ * construction, -1 by default, which fits the typical use of the class: the
+ * mapping of row positions between two orderings.
+ * 
+ * @see LongIntMap
+ */
+public class IntIntMap {
+
+	private final LongIntMap m_map;
+
+	public IntIntMap() {
+		m_map = new LongIntMap();
+	}
+
+	public IntIntMap(int expectedSize) {
+		m_map = new LongIntMap(expectedSize);
+	}
+
+	public IntIntMap(int expectedSize, int missingValue) {
+		m_map = new LongIntMap(expectedSize, missingValue);
+	}
+
+	public void clear() {
+		m_map.clear();
+	}
+
+	public boolean containsKey(int key) {
+		return m_map.containsKey(key);
+	}
+
+	/**
+	 * @return the value mapped on {@code key} or the {@code missingValue} of
+	 *         the instance if the key is absent.
+	 */
+	public int get(int key) {
+		return m_map.get(key);
+	}
+
+	public boolean isEmpty() {
+		return m_map.isEmpty();
+	}
+
+	public int missingValue() {
+		return m_map.missingValue();
+	}
+
+	/**
+	 * @return the value previously mapped on {@code key} or the
+	 *         {@code missingValue} of the instance.
+	 */
+	public int put(int key, int value) {
+		return m_map.put(key, value);
+	}
+
+	/**
+	 * @return the value that was mapped on {@code key} or the
+	 *         {@code missingValue} of the instance.
+	 */
+	public int remove(int key) {
+		return m_map.remove(key);
+	}
+
+	public int size() {
+		return m_map.size();
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.common;
+
+import java.util.Arrays;
+
+/**
+ * An index that maps {@code long} keys on {@code int} values without boxing
+ * either of them.
+ * <p>
+ * The entries live in two parallel arrays addressed by open addressing with
+ * linear probing, so that a look-up costs a hash, a few adjacent array reads
+ * and no object dereference. The table is kept at most half full and its
+ * capacity is a power of two; the removal shifts back the entries of the
+ * probe sequence that follows the vacated slot, so that no tombstone is
+ * needed.
+ * <p>
+ * The key 0 marks the free slots of the table, so its entry, if any, is held
+ * apart.
+ * <p>
+ * A look-up of an absent key returns the {@code missingValue} specified on
+ * construction, -1 by default, which fits the typical use of the class: the
+ * mapping of identifiers on positions.
+ * 
+ * @see IntIntMap
+ */
+public class LongIntMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] m_keys;
+	private int[] m_values;
+	private int m_mask;
+	private int m_size;
+	private boolean m_freeKeyPresent;
+	private int m_freeKeyValue;
+	private final int m_missingValue;
+
+	public LongIntMap() {
+		this(MIN_CAPACITY, -1);
+	}
+
+	public LongIntMap(int expectedSize) {
+		this(expectedSize, -1);
+	}
+
+	public LongIntMap(int expectedSize, int missingValue) {
+		m_missingValue = missingValue;
+		allocate(capacityFor(expectedSize));
+	}
+
+	private static int capacityFor(int size) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < size * 2)
+			capacity <<= 1;
+		return capacity;
+	}
+
+	private static int slot(long key, int mask) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		m_keys = new long[capacity];
+		m_values = new int[capacity];
+		m_mask = capacity - 1;
+	}
+
+	public void clear() {
+		if (m_size > 0)
+			Arrays.fill(m_keys, 0);
+		m_size = 0;
+		m_freeKeyPresent = false;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0)
+			return m_freeKeyPresent;
+		int idx = slot(key, m_mask);
+		long current;
+		while ((current = m_keys[idx]) != 0) {
+			if (current == key)
+				return true;
+			idx = (idx + 1) & m_mask;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the value mapped on {@code key} or the {@code missingValue} of
+	 *         the instance if the key is absent.
+	 */
+	public int get(long key) {
+		if (key == 0)
+			return m_freeKeyPresent ? m_freeKeyValue : m_missingValue;
+		int idx = slot(key, m_mask);
+		long current;
+		while ((current = m_keys[idx]) != 0) {
+			if (current == key)
+				return m_values[idx];
+			idx = (idx + 1) & m_mask;
+		}
+		return m_missingValue;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int missingValue() {
+		return m_missingValue;
+	}
+
+	/**
+	 * @return the value previously mapped on {@code key} or the
+	 *         {@code missingValue} of the instance.
+	 */
+	public int put(long key, int value) {
+		int oldValue;
+		if (key == 0) {
+			oldValue = m_freeKeyPresent ? m_freeKeyValue : m_missingValue;
+			m_freeKeyPresent = true;
+			m_freeKeyValue = value;
+			return oldValue;
+		}
+		int idx = slot(key, m_mask);
+		long current;
+		while ((current = m_keys[idx]) != 0) {
+			if (current == key) {
+				oldValue = m_values[idx];
+				m_values[idx] = value;
+				return oldValue;
+			}
+			idx = (idx + 1) & m_mask;
+		}
+		m_keys[idx] = key;
+		m_values[idx] = value;
+		if (++m_size * 2 > m_keys.length)
+			rehash(m_keys.length << 1);
+		return m_missingValue;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = m_keys;
+		int[] oldValues = m_values;
+		allocate(capacity);
+		int idx;
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != 0) {
+				idx = slot(oldKeys[i], m_mask);
+				while (m_keys[idx] != 0)
+					idx = (idx + 1) & m_mask;
+				m_keys[idx] = oldKeys[i];
+				m_values[idx] = oldValues[i];
+			}
+	}
+
+	/**
+	 * @return the value that was mapped on {@code key} or the
+	 *         {@code missingValue} of the instance.
+	 */
+	public int remove(long key) {
+		int oldValue;
+		if (key == 0) {
+			oldValue = m_freeKeyPresent ? m_freeKeyValue : m_missingValue;
+			m_freeKeyPresent = false;
+			return oldValue;
+		}
+		int idx = slot(key, m_mask);
+		long current;
+		while ((current = m_keys[idx]) != key) {
+			if (current == 0)
+				return m_missingValue;
+			idx = (idx + 1) & m_mask;
+		}
+		oldValue = m_values[idx];
+		m_size--;
+		int gap = idx, home;
+		while (true) {
+			idx = (idx + 1) & m_mask;
+			if ((current = m_keys[idx]) == 0)
+				break;
+			home = slot(current, m_mask);
+			if (((idx - home) & m_mask) >= ((idx - gap) & m_mask)) {
+				m_keys[gap] = current;
+				m_values[gap] = m_values[idx];
+				gap = idx;
+			}
+		}
+		m_keys[gap] = 0;
+		return oldValue;
+	}
+
+	public int size() {
+		return m_size + (m_freeKeyPresent ? 1 : 0);
+	}
+
+}
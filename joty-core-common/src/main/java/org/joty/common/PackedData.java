@@ -0,0 +1,128 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Defines the packed form of the 'Data' section of the Joty response, the
+ * alternative to the sequence of 'Record' nodes that the client can ask for by
+ * the 'packed' parameter of the 'query' command.
+ * <p>
+ * The records are written one after the other in a stream of bytes, without
+ * any separator, each of them as the sequence of its column values in the
+ * order of the 'Structure' section. Every value starts with a marker byte
+ * ({@code NULL_VALUE} or {@code VALUE}); in the latter case the marker is
+ * followed by the content, the form of which depends on the {@code JotyTypes}
+ * code of the column:
+ * <ul>
+ * <li>{@code _int}: 4 bytes; {@code _long}: 8 bytes; {@code _single}: 4
+ * bytes; {@code _double}: 8 bytes (java.io.DataOutput representations)</li>
+ * <li>{@code _date}, {@code _dateTime}: the calendar fields (see
+ * {@code writeDate})</li>
+ * <li>{@code _text}: the length (4 bytes) followed by the UTF-8 bytes</li>
+ * <li>{@code _blob}, {@code _smallBlob}: the length (4 bytes) followed by the
+ * raw bytes</li>
+ * <li>{@code _none}: always sent as {@code NULL_VALUE}</li>
+ * </ul>
+ * The stream is cut in blocks, each of them delivered, Base64 encoded, as the
+ * content of a 'Pack' node of the 'Data' section; the client concatenates
+ * them before reading.
+ */
+public class PackedData {
+	public static final byte NULL_VALUE = 0;
+	public static final byte VALUE = 1;
+
+	public static final String UTF8 = "UTF-8";
+
+	/**
+	 * Writes the date as its calendar fields, so that, like for the textual
+	 * format, the value is independent from the time zones of the two ends.
+	 */
+	public static void writeDate(DataOutputStream out, Calendar calendar, Date date) throws IOException {
+		calendar.setTime(date);
+		out.writeShort(calendar.get(Calendar.YEAR));
+		out.writeByte(calendar.get(Calendar.MONTH));
+		out.writeByte(calendar.get(Calendar.DAY_OF_MONTH));
+		out.writeByte(calendar.get(Calendar.HOUR_OF_DAY));
+		out.writeByte(calendar.get(Calendar.MINUTE));
+		out.writeByte(calendar.get(Calendar.SECOND));
+	}
+
+	/** @return the time in milliseconds of the date read */
+	public static long readDate(DataInputStream in, Calendar calendar) throws IOException {
+		calendar.clear();
+		calendar.set(in.readShort(), in.readByte(), in.readByte(), in.readByte(), in.readByte(), in.readByte());
+		return calendar.getTimeInMillis();
+	}
+
+	public static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] retVal = new byte[in.readInt()];
+		in.readFully(retVal);
+		return retVal;
+	}
+
+	public static void writeText(DataOutputStream out, String text) throws IOException {
+		writeBytes(out, text.getBytes(UTF8));
+	}
+
+	public static String readText(DataInputStream in) throws IOException {
+		return new String(readBytes(in), UTF8);
+	}
+
+	/**
+	 * Moves the stream beyond the value of a column, given the marker byte
+	 * has been already read and was {@code VALUE}.
+	 */
+	public static void skipValue(DataInputStream in, int type) throws IOException {
+		int len;
+		switch (type) {
+			case JotyTypes._int:
+			case JotyTypes._single:
+				len = 4;
+				break;
+			case JotyTypes._long:
+			case JotyTypes._double:
+				len = 8;
+				break;
+			case JotyTypes._date:
+			case JotyTypes._dateTime:
+				len = 7;
+				break;
+			case JotyTypes._text:
+			case JotyTypes._blob:
+			case JotyTypes._smallBlob:
+				len = in.readInt();
+				break;
+			default:
+				len = 0;
+		}
+		in.skipBytes(len);
+	}
+}
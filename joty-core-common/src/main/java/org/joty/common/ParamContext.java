@@ -19,8 +19,11 @@
 
 package org.joty.common;
 
+import java.util.Date;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 /**
@@ -78,6 +81,32 @@ public class ParamContext {
 		CTXP_NUM, CTXP_STR, CTXP_DATE, CTXP_DBL
 	}
 
+	/**
+	 * Hosts a date value received in the form of its sql expression, as it is
+	 * rendered by the {@code IJotyDate} implementation of the client: the
+	 * rendering returns the original expression, so that the textual use of
+	 * the parameter is not affected, while the {@code m_date} member makes the
+	 * value available for the binding to a prepared statement.
+	 */
+	public static class LiteralDate implements IJotyDate {
+		private static final Pattern m_isoDatePattern = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+		public String m_literal;
+		public java.sql.Date m_date;
+
+		public LiteralDate(String literal) {
+			m_literal = literal;
+			Matcher matcher = m_isoDatePattern.matcher(literal);
+			if (matcher.find())
+				m_date = java.sql.Date.valueOf(matcher.group());
+		}
+
+		@Override
+		public String render(boolean forSqlExpr, boolean withTime) {
+			return m_literal;
+		}
+	}
+
 	public CaselessStringKeyMap<ContextParam> m_paramsSet;
 
 	private void checkParamsSet() {
@@ -109,12 +138,40 @@ public class ParamContext {
 					retVal = storedQueryParam.m_dateVal.render(true, false);
 					break;
 				case CTXP_DBL:
-					retVal = String.valueOf(storedQueryParam.m_dblVal);
+					retVal = storedQueryParam.m_strVal == null ? String.valueOf(storedQueryParam.m_dblVal) : storedQueryParam.m_strVal;
 					break;
 			}
 		return retVal;
 	}
 
+	/**
+	 * Returns the value of the parameter as an object of the type that
+	 * corresponds to its {@code CTXP_type} (String, Long, Double or
+	 * java.sql.Date) or null if the parameter is missing.
+	 */
+	public Object contextParameterValue(String name) {
+		ContextParam storedQueryParam = m_paramsSet == null ? null : m_paramsSet.get(name);
+		if (storedQueryParam == null)
+			return null;
+		switch (storedQueryParam.m_type) {
+			case CTXP_STR:
+				return storedQueryParam.m_strVal;
+			case CTXP_NUM:
+				return storedQueryParam.m_lVal;
+			case CTXP_DATE:
+				IJotyDate dateVal = storedQueryParam.m_dateVal;
+				if (dateVal instanceof LiteralDate)
+					return ((LiteralDate) dateVal).m_date;
+				String rendering = dateVal == null ? null : dateVal.render(true, false);
+				return rendering == null || rendering.equalsIgnoreCase("NULL") || !(dateVal instanceof Date) ? 
+							null : 
+							new java.sql.Date(((Date) dateVal).getTime());
+			case CTXP_DBL:
+				return storedQueryParam.m_dblVal;
+		}
+		return null;
+	}
+
 	public void copy(Object callContext) {
 		checkParamsSet();
 		for (Iterator it = ((ParamContext) callContext).m_paramsSet.entrySet().iterator(); it.hasNext();) {
@@ -145,12 +202,31 @@ public class ParamContext {
 		m_paramsSet.put(varName, storedQueryParam);
 	}
 
+	/**
+	 * Sets a double parameter that keeps the literal it was received as:
+	 * {@code contextParameter} returns the literal, so that the textual use of
+	 * the parameter is not affected by the rendering of the Double object,
+	 * while {@code contextParameterValue} returns the typed value.
+	 */
+	public void setContextParam(String varName, Double valueExpr, String literal) {
+		ContextParam storedQueryParam = getContextParam(varName, CTXP_type.CTXP_DBL);
+		storedQueryParam.m_dblVal = valueExpr;
+		storedQueryParam.m_strVal = literal;
+		m_paramsSet.put(varName, storedQueryParam);
+	}
+
 	public void setContextParam(String varName, IJotyDate valueExpr) {
 		ContextParam storedQueryParam = getContextParam(varName, CTXP_type.CTXP_DATE);
 		storedQueryParam.m_dateVal = valueExpr;
 		m_paramsSet.put(varName, storedQueryParam);
 	}
 
+	public void setContextParam(String varName, Long valueExpr) {
+		ContextParam storedQueryParam = getContextParam(varName, CTXP_type.CTXP_NUM);
+		storedQueryParam.m_lVal = valueExpr;
+		m_paramsSet.put(varName, storedQueryParam);
+	}
+
 	public void setContextParam(String varName, long valueExpr) {
 		ContextParam storedQueryParam = getContextParam(varName, CTXP_type.CTXP_NUM);
 		storedQueryParam.m_lVal = valueExpr;
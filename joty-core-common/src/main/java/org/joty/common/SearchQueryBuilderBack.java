@@ -19,6 +19,8 @@
 
 package org.joty.common;
 
+import java.util.Locale;
+
 /**
  * The class builds the final query for the search process, using the dbms
  * dependent template, located in the configuration file, and the information
@@ -28,6 +30,16 @@ package org.joty.common;
  * {@code SearchQueryBuilderFront} object or by a {@code org.joty.access.Accessor.DataDef} instance,
  * returns the 'page' of result corresponding to the number of iteration
  * received as parameter.
+ * <p>
+ * In keyset mode the caller provides, instead of the number of iteration, the
+ * values that the columns of the sort clause have in the last row of the
+ * previous page: the page is selected by a 'seek' predicate on these columns,
+ * so that the dbms, helped by an index, doesn't have to walk through all the
+ * preceding rows. The template used is the one set by {@code setKeysetQuery}
+ * or, in its absence, the iteration based one, forced to the first page.
+ * Since a sort column may hold NULLs, which the dbms places before or after
+ * all the other values, the seek predicate includes them where the dbms puts
+ * them: this is told to the class by {@code setKeysetQuery} too.
  * 
  * @see org.joty.data.SearchQueryBuilderFront
  * 
@@ -35,13 +47,35 @@ package org.joty.common;
 public class SearchQueryBuilderBack {
 	String m_paginationQuery;
 	String m_paginationPageSize;
+	String m_keysetQuery;
+	boolean m_nullsFirstInAscOrder = true;
 
 	public String getQuery(String setDefinition, String whereClause, String orderByClause, int iteration, String sharingExpr) {
+		return getQuery(setDefinition, whereClause, orderByClause, iteration, sharingExpr, null);
+	}
+
+	/**
+	 * @param seekValues
+	 *            the sql literals of the values of the sort columns in the
+	 *            last row of the previous page; if null, or if the seek
+	 *            predicate cannot be built on the {@code orderByClause}, the
+	 *            page is selected by {@code iteration}
+	 * @see #seekPredicate(String, String[])
+	 */
+	public String getQuery(String setDefinition, String whereClause, String orderByClause, int iteration, String sharingExpr, String[] seekValues) {
 		String retVal = null;
+		String template = m_paginationQuery;
+		String seekPredicate = seekValues == null ? null : seekPredicate(orderByClause, seekValues, m_nullsFirstInAscOrder);
+		if (seekPredicate != null) {
+			whereClause = whereClause.length() == 0 ? seekPredicate : ("(" + whereClause + ") AND " + seekPredicate);
+			iteration = 0;
+			if (m_keysetQuery != null)
+				template = m_keysetQuery;
+		}
 		boolean setDefinitionAsManyWords = setDefinition != null && Utilities.isMoreThanOneWord(setDefinition);
 		if (sharingExpr != null)	
 			setDefinition +=  " Where " + sharingExpr;
-		retVal = m_paginationQuery;
+		retVal = template;
 		retVal = literalSubst(retVal, "openStm", setDefinitionAsManyWords ? "(" : "");
 		retVal = literalSubst(retVal, "set", setDefinition);
 		retVal = literalSubst(retVal, "whereConj", whereConj(whereClause, sharingExpr));
@@ -50,9 +84,73 @@ public class SearchQueryBuilderBack {
 		retVal = literalSubst(retVal, "closeStm", setDefinitionAsManyWords ? ") xx" : "");
 		retVal = literalSubst(retVal, "pageSize", m_paginationPageSize);
 		retVal = literalSubst(retVal, "iteration", String.valueOf(iteration));
+		if (retVal.indexOf("'<fetchSize>'") >= 0)
+			retVal = literalSubst(retVal, "fetchSize", String.valueOf(Integer.parseInt(m_paginationPageSize) + 1));
 		return retVal;
 	}
 
+	/**
+	 * Builds the predicate that selects the rows following, in the order
+	 * defined by {@code orderByClause}, the row having the {@code seekValues}
+	 * values. The sort clause must be made only by column names, each one
+	 * optionally followed by ASC or DESC, and no value can be null.
+	 * <p>
+	 * A row having NULL in a sort column follows the row of the values if the
+	 * dbms places NULLs after the other values in the direction of that
+	 * column: its comparison term is then extended by an IS NULL alternative.
+	 * 
+	 * @param nullsFirstInAscOrder
+	 *            true if the dbms places NULLs before any other value in
+	 *            ascending order (and then after them in descending order),
+	 *            as MySQL and SQL Server do; false for Oracle.
+	 * @return the predicate or null if it cannot be built
+	 */
+	public static String seekPredicate(String orderByClause, String[] seekValues, boolean nullsFirstInAscOrder) {
+		String[] columns = sortColumns(orderByClause);
+		if (columns == null || columns.length != seekValues.length)
+			return null;
+		for (String value : seekValues)
+			if (value == null || value.length() == 0 || value.equalsIgnoreCase("null"))
+				return null;
+		boolean[] descending = new boolean[columns.length];
+		String[] terms = orderByClause.split(",");
+		for (int i = 0; i < terms.length; i++)
+			descending[i] = terms[i].trim().toUpperCase(Locale.ROOT).endsWith(" DESC");
+		StringBuilder retVal = new StringBuilder();
+		boolean nullsAfter = descending[0] == nullsFirstInAscOrder;
+		if (nullsAfter)
+			retVal.append("(");
+		retVal.append(columns[0]).append(descending[0] ? " <= " : " >= ").append(seekValues[0]);
+		if (nullsAfter)
+			retVal.append(" OR ").append(columns[0]).append(" IS NULL)");
+		retVal.append(" AND (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0)
+				retVal.append(" OR ");
+			retVal.append("(");
+			for (int j = 0; j < i; j++)
+				retVal.append(columns[j]).append(" = ").append(seekValues[j]).append(" AND ");
+			nullsAfter = descending[i] == nullsFirstInAscOrder;
+			if (nullsAfter)
+				retVal.append("(");
+			retVal.append(columns[i]).append(descending[i] ? " < " : " > ").append(seekValues[i]);
+			if (nullsAfter)
+				retVal.append(" OR ").append(columns[i]).append(" IS NULL)");
+			retVal.append(")");
+		}
+		retVal.append(")");
+		return retVal.toString();
+	}
+
+	/**
+	 * @param nullsFirstInAscOrder
+	 *            see {@link #seekPredicate(String, String[], boolean)}
+	 */
+	public void setKeysetQuery(String query, boolean nullsFirstInAscOrder) {
+		m_keysetQuery = query;
+		m_nullsFirstInAscOrder = nullsFirstInAscOrder;
+	}
+
 	String literalSubst(String inString, String paramName, String valueStr) {
 		return literalSubst(inString, paramName, valueStr, -1);
 	}
@@ -93,6 +191,28 @@ public class SearchQueryBuilderBack {
 		m_paginationPageSize = pageSize;
 	}
 
+	/**
+	 * Returns the columns of the sort clause, as they are written there, or
+	 * null if the clause contains something different from column names and
+	 * ASC, DESC qualifiers.
+	 */
+	public static String[] sortColumns(String orderByClause) {
+		if (orderByClause == null || orderByClause.trim().length() == 0)
+			return null;
+		String[] terms = orderByClause.split(",");
+		String[] retVal = new String[terms.length];
+		String[] words;
+		for (int i = 0; i < terms.length; i++) {
+			words = terms[i].trim().split("\\s+");
+			if (words.length > 2 || 
+					words.length == 2 && !words[1].equalsIgnoreCase("ASC") && !words[1].equalsIgnoreCase("DESC") || 
+					!words[0].matches("[A-Za-z_][\\w$#]*(\\.[A-Za-z_][\\w$#]*)?"))
+				return null;
+			retVal[i] = words[0];
+		}
+		return retVal;
+	}
+
 	private String whereConj(String whereClause, String sharingExpr) {
 	    return whereClause.length() > 0 ? (sharingExpr == null ? "WHERE" : "AND") : "";
 	}
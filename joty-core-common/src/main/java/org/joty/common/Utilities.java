@@ -24,6 +24,7 @@ import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.StringTokenizer;
 import java.util.Vector;
@@ -198,12 +199,19 @@ public class Utilities {
      * @param xmlText source text
      * @return the Document object
      */
+    /** created once: building a factory means looking the implementation up */
+    private static DocumentBuilderFactory m_documentBuilderFactory;
+
     public static Document getXmlDocument(String xmlText) {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
         DocumentBuilder builder = null;
         try {
-            builder = factory.newDocumentBuilder();
+            synchronized (Utilities.class) {
+                if (m_documentBuilderFactory == null) {
+                    m_documentBuilderFactory = DocumentBuilderFactory.newInstance();
+                    m_documentBuilderFactory.setNamespaceAware(true);
+                }
+                builder = m_documentBuilderFactory.newDocumentBuilder();
+            }
         } catch (ParserConfigurationException e) {
             m_jotyMessanger.jotyMessage(e);
         }
@@ -299,14 +307,24 @@ public class Utilities {
         return labString.toString();
     }
 
+    public static byte[] bytesFromInputStream(InputStream is) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int len;
+        while ((len = is.read(buffer)) != -1)
+            content.write(buffer, 0, len);
+        is.close();
+        return content.toByteArray();
+    }
+
     public static String stringFromInputStream(InputStream fin, String encoding, boolean silent) {
-        StringBuffer content = new StringBuffer("");
+        StringBuilder content = new StringBuilder();
         try {
-            InputStreamReader isr = encoding == null ? new InputStreamReader(fin) : new InputStreamReader(fin, encoding);
-            Reader in = new BufferedReader(isr);
-            int ch;
-            while ((ch = in.read()) != -1)
-                content.append((char) ch);
+            Reader in = encoding == null ? new InputStreamReader(fin) : new InputStreamReader(fin, encoding);
+            char[] buffer = new char[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1)
+                content.append(buffer, 0, len);
             in.close();
         } catch (IOException e) {
             if (!silent)
@@ -332,12 +350,21 @@ public class Utilities {
     }
 
     public static boolean xsdValidate(Document xmlDoc, Source schemaSource, String direction) {
+        Schema schema = null;
+        try {
+            schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaSource);
+        } catch (SAXException e) {
+            m_jotyMessanger.jotyWarning(direction + " : schema validation failed !\n" + e.getMessage());
+            return false;
+        }
+        return xsdValidate(xmlDoc, schema, direction);
+    }
+
+    public static boolean xsdValidate(Document xmlDoc, Schema schema, String direction) {
         boolean retVal = false;
         DOMSource xmlSource = new DOMSource(xmlDoc);
-        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         Exception exc = null;
         try {
-            Schema schema = schemaFactory.newSchema(schemaSource);
             Validator validator = schema.newValidator();
             validator.validate(xmlSource);
             retVal = true;
@@ -355,14 +382,28 @@ public class Utilities {
         return xsdValidate(xmlDoc, new StreamSource(new File(schemaFile)), direction);
     }
 
+    /** the schemas compiled by {@code xsdValidate(Document, URL, String)}, by url */
+    private static HashMap<String, Schema> m_schemas = new HashMap<String, Schema>();
+
+    /** The schema is compiled only at the first use of the url. */
     public static boolean xsdValidate(Document xmlDoc, URL schemaFileUrl, String direction) {
-        boolean retVal = false;
-        try {
-            retVal = xsdValidate(xmlDoc, new StreamSource(schemaFileUrl.openStream()), direction);
-        } catch (IOException e) {
-            m_jotyMessanger.jotyWarning(direction + " : schema file opening failed !\n");
+        Schema schema;
+        synchronized (m_schemas) {
+            schema = m_schemas.get(schemaFileUrl.toString());
+            if (schema == null) {
+                try {
+                    schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(schemaFileUrl.openStream()));
+                } catch (IOException e) {
+                    m_jotyMessanger.jotyWarning(direction + " : schema file opening failed !\n");
+                    return false;
+                } catch (SAXException e) {
+                    m_jotyMessanger.jotyWarning(direction + " : schema validation failed !\n" + e.getMessage());
+                    return false;
+                }
+                m_schemas.put(schemaFileUrl.toString(), schema);
+            }
         }
-        return retVal;
+        return xsdValidate(xmlDoc, schema, direction);
     }
 
     public final static String m_singleByteEncoding = "ISO-8859-1";
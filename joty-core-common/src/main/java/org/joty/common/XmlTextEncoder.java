@@ -64,6 +64,22 @@ public abstract class XmlTextEncoder {
 		return retVal;
 	}
 
+	/**
+	 * Decodes binary content directly, without the transit through a String
+	 * object hosting it.
+	 */
+	public byte[] decodeBytes(String srcTxt) {
+		return srcTxt == null ? null : base64decode(srcTxt);
+	}
+
+	/**
+	 * Encodes binary content directly, without the transit through a String
+	 * object hosting it.
+	 */
+	public String encode(byte[] src) {
+		return src == null || src.length == 0 ? null : base64encode(src);
+	}
+
 	public String encode(String srcTxt, Boolean forBinary) {
 		if (srcTxt == null)
 			return null;
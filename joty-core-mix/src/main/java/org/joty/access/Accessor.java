@@ -20,6 +20,10 @@
 package org.joty.access;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
 import java.util.Vector;
 
 import org.joty.access.DbManager.DbConnectionGrabber;
@@ -77,6 +81,14 @@ import org.joty.common.ConfigFile.ConfigException;
  * suited to the definition of the statements/methods/computations that it can
  * hold inside, and at the same time provides methods to retrieve those
  * implementation objects.
+ * <p>
+ * A statement defined by means of {@link DataDef#setPreparedSql(String)}
+ * carries '?' place holders instead of the format specifiers: if the instance
+ * has the parameter binding enabled (see {@link #setParamBinding(boolean)}),
+ * as the Joty Server does, the text of the statement doesn't change with the
+ * values of the parameters, that are collected, typed, for the binding to the
+ * {@code PreparedStatement} object (see {@link #bindParams(PreparedStatement)});
+ * otherwise the values are rendered inside the text as sql literals.
  *
  
  * @see ParamContext
@@ -129,6 +141,7 @@ public class Accessor {
 		public Vector<ParamHolder> m_paramHolders;
 		private String m_sharingAlias;
 		private boolean m_noSharingClause;
+		private boolean m_preparedSql;
 
 		public DataDef() {
 			m_paramHolders = new Vector<ParamHolder>();
@@ -177,14 +190,26 @@ public class Accessor {
 		}
 
 		public String getSearchSql(String whereClause, String orderByClause, int iteration, String mode, String sharingExpr) {
-			return m_searchQueryBuilder.getQuery(getStatement(mode) == null ? 
+			return getSearchSql(whereClause, orderByClause, iteration, null, mode, sharingExpr);
+		}
+
+		/**
+		 * @param seekValues
+		 *            if not null the page is selected in keyset mode (see
+		 *            {@link SearchQueryBuilderBack})
+		 */
+		public String getSearchSql(String whereClause, String orderByClause, int iteration, String[] seekValues, String mode, String sharingExpr) {
+			String statement = getStatement(mode);
+			return m_searchQueryBuilder.getQuery(statement == null ? 
 													getUpdatableSet(mode) : 
-													getStatement(mode),
-												whereClause, orderByClause, iteration, sharingExpr);
+													statement,
+												whereClause, orderByClause, iteration, sharingExpr, seekValues);
 		}
 
 		public String getStatement(String mode) {
 			if (m_statementHolder == null) {
+				if (m_preparedSql)
+					return getPreparedStatement();
 				String[] valueArray = new String[m_paramHolders.size()];
 				int i = 0;
 				for (ParamHolder paramHolder : m_paramHolders) {
@@ -200,6 +225,37 @@ public class Accessor {
 				return m_statementHolder.getSql(mode);
 		}
 
+		/**
+		 * Collects the values of the parameters in the {@code m_bindValues}
+		 * member of the accessor and returns the statement text: as it is, if
+		 * the binding is enabled, otherwise with the values rendered in place
+		 * of the place holders.
+		 */
+		private String getPreparedStatement() {
+			m_bindValues.clear();
+			if (m_sql == null)
+				return null;
+			String[] literals = m_paramBinding ? null : new String[m_paramHolders.size()];
+			Object value;
+			int i = 0;
+			for (ParamHolder paramHolder : m_paramHolders) {
+				if (paramHolder.m_paramActuator == null && paramHolder.m_contextParamName != null) {
+					value = m_paramContext.contextParameterValue(paramHolder.m_contextParamName);
+					if (literals != null)
+						literals[i] = value == null || value instanceof String ? 
+										sqlLiteral((String) value) : 
+										m_paramContext.contextParameter(paramHolder.m_contextParamName);
+				} else {
+					value = paramHolder.m_paramActuator != null ? paramHolder.m_paramActuator.getValue() : paramHolder.m_value;
+					if (literals != null)
+						literals[i] = sqlLiteral((String) value);
+				}
+				m_bindValues.add(value);
+				i++;
+			}
+			return literals == null ? m_sql : inlineParams(m_sql, literals);
+		}
+
 		public String getUpdatableSet(String mode) {
 			return m_updatableSetHolder == null ? m_updatableSet : m_updatableSetHolder.getSql(mode);
 		}
@@ -230,6 +286,18 @@ public class Accessor {
 
 		public void setStatementSql(String sql) {
 			m_sql = sql;
+			m_preparedSql = false;
+		}
+
+		/**
+		 * Like {@link #setStatementSql(String)} but the statement uses a '?'
+		 * place holder for each param holder, in the same order, instead of a
+		 * format specifier. The values of string parameters must not be
+		 * enclosed in quotes by the statement text.
+		 */
+		public void setPreparedSql(String sql) {
+			m_sql = sql;
+			m_preparedSql = true;
 		}
 
 		public void setUpdatableSet(String text) {
@@ -310,10 +378,13 @@ public class Accessor {
 	JotyMessenger m_jotyMessanger;
 
 	private String m_sharingKey;
+	private boolean m_paramBinding;
+	private Vector<Object> m_bindValues = new Vector<Object>();
 
 	private boolean m_sharingViolation;
 
 	protected LangLiteralRetCodeMapper m_langLiteralRetCodeMapper;
+	protected ReportCache m_reportCache;
 
 	public void init(JotyMessenger jotyMessanger) {
 		m_jotyMessanger = jotyMessanger;
@@ -323,6 +394,43 @@ public class Accessor {
 		m_paramContext = new ParamContext(m_jotyMessanger);
 	}
 
+	/**
+	 * Binds the values collected by the last {@code DataDef} defined by
+	 * {@code setPreparedSql} that has been asked for its statement.
+	 * 
+	 * @return the number of the parameters bound
+	 */
+	public int bindParams(PreparedStatement stmnt) throws SQLException {
+		return bindParams(stmnt, m_bindValues);
+	}
+
+	/**
+	 * Binds the values, in order, by the setter corresponding to their type.
+	 * 
+	 * @see ParamContext#contextParameterValue(String)
+	 */
+	public static int bindParams(PreparedStatement stmnt, List<Object> values) throws SQLException {
+		int index = 1;
+		for (Object value : values) {
+			if (value == null)
+				stmnt.setNull(index, Types.VARCHAR);
+			else if (value instanceof Long)
+				stmnt.setLong(index, (Long) value);
+			else if (value instanceof Double)
+				stmnt.setDouble(index, (Double) value);
+			else if (value instanceof java.sql.Date)
+				stmnt.setDate(index, (java.sql.Date) value);
+			else
+				stmnt.setString(index, value.toString());
+			index++;
+		}
+		return values.size();
+	}
+
+	public Vector<Object> bindValues() {
+		return m_bindValues;
+	}
+
 	public void clearParamContext() {
 		m_paramContext.clear();
 	}
@@ -426,6 +534,8 @@ public class Accessor {
 						});
 						// - OR - B2 (only if dialog is opened with no modes)
 						setStatementSql("< panel Sql text >");
+						// - OR - B3 (as B2 but with '?' place holders)
+						setPreparedSql("< panel Sql text >");
 						addContextParamName("< a ContextParam name >");
 						addParamActuator(new ParamActuator() {
 							public String getValue() {
@@ -447,6 +557,46 @@ public class Accessor {
 		---------------------------------------------------------------------------------------------------------*/		
 	}
 
+	/**
+	 * Replaces, in order, the '?' place holders found outside quoted literals
+	 * with the {@code literals} elements.
+	 */
+	static String inlineParams(String sql, String[] literals) {
+		StringBuilder builder = new StringBuilder(sql.length() + 16 * literals.length);
+		boolean quoted = false;
+		int paramIdx = 0;
+		char c;
+		for (int i = 0; i < sql.length(); i++) {
+			c = sql.charAt(i);
+			if (c == '\'')
+				quoted = !quoted;
+			if (c == '?' && !quoted && paramIdx < literals.length)
+				builder.append(literals[paramIdx++]);
+			else
+				builder.append(c);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * To be invoked by the methods that modify the data a report is built on:
+	 * the outputs of the report kept by the report cache, if any, are
+	 * discarded.
+	 * 
+	 * @param reportName
+	 *            the name of the report design; if null all the outputs are
+	 *            discarded
+	 * @see ReportCache
+	 */
+	protected void invalidateReports(String reportName) {
+		if (m_reportCache != null) {
+			if (reportName == null)
+				m_reportCache.invalidate();
+			else
+				m_reportCache.invalidate(reportName);
+		}
+	}
+
 	public boolean isMissingContextParam(String name) {
 		return m_paramContext.isMissingParam(name);
 	}
@@ -465,6 +615,23 @@ public class Accessor {
 		m_langLiteralRetCodeMapper = mapper;
 	}
 
+	public void setReportCache(ReportCache reportCache) {
+		m_reportCache = reportCache;
+	}
+
+	/**
+	 * Enables the binding of the parameters of the statements defined by
+	 * {@code DataDef.setPreparedSql}: the caller becomes responsible of invoking
+	 * {@link #bindParams(PreparedStatement)} on the statement it prepares.
+	 */
+	public void setParamBinding(boolean paramBinding) {
+		m_paramBinding = paramBinding;
+	}
+
+	public void setKeysetQuery(String query, boolean nullsFirstInAscOrder) {
+		m_searchQueryBuilder.setKeysetQuery(query, nullsFirstInAscOrder);
+	}
+
 	public void setPaginationQuery(String query, String pageSize) {
 		m_searchQueryBuilder.setPaginationQuery(query, pageSize);
 	}
@@ -475,6 +642,7 @@ public class Accessor {
 
 	public void setPostStatement(PostStatement postStatement, boolean inTransaction) {
 		m_postStatement = postStatement;
+		m_bindValues.clear();
 		if (m_postStatement != null)
 			m_postStatement.loadParamContext(m_paramContext, !inTransaction);
 	}
@@ -500,6 +668,10 @@ public class Accessor {
 		return m_sharingKeyField + " = '" + filterValue + "'";
 	}
 
+	static String sqlLiteral(String value) {
+		return value == null ? "NULL" : ("'" + value.replace("'", "''") + "'");
+	}
+
 	public boolean sharingViolation() {
 		return m_sharingViolation;
 	}
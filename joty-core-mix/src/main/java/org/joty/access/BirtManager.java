@@ -19,8 +19,15 @@
 
 package org.joty.access;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
 import org.eclipse.birt.core.framework.Platform;
 import org.eclipse.birt.report.engine.api.EngineConfig;
 import org.eclipse.birt.report.engine.api.EngineConstants;
@@ -58,12 +65,25 @@ import org.joty.common.ReportManager.Parameter;
  *  depending on the application running in web mode or not.
  * <p>
  * {@code buildReport} is the most significant method.
+ * <p>
+ * An instance holds the state of the report being built: for building
+ * reports concurrently, a distinct instance sharing the engine is obtained for
+ * each of them by means of {@code jobManager}.
+ * <p>
+ * The report designs, once parsed, are kept in memory and shared by the
+ * instances: a design is parsed again only if its file is modified. The
+ * designs can be loaded in advance by {@code preloadDesigns}.
  * 
  * @see #buildReport(String, String, boolean)
  * 
  */
 public class BirtManager {
 
+	private static class DesignEntry {
+		IReportRunnable m_design;
+		long m_lastModified;
+	}
+
 	public String m_rptDesignsPath;
 	public String m_rptDocumentsPath;
 	public String m_rptOutputsPath;
@@ -85,6 +105,16 @@ public class BirtManager {
 	private ReportManager m_reportManager;
 	private String m_language;
 	private Object m_app;
+	/** if set, the directory for both the intermediate document and the output */
+	private String m_jobDir;
+	private ReportCache m_reportCache;
+	/** the parsed designs, keyed by the path of the file */
+	private ConcurrentHashMap<String, DesignEntry> m_designs = new ConcurrentHashMap<String, DesignEntry>();
+	/**
+	 * the size in bytes under which the intermediate document of the two
+	 * process mode is kept in memory (0 means always on disk)
+	 */
+	private long m_memoryDocumentSize;
 
 	public BirtManager(ReportManager reportManager, Object app) {
 		m_reportManager = reportManager;
@@ -100,12 +130,9 @@ public class BirtManager {
 
 
 	protected IRenderOption buildOptions(String reportName, String renderType) {
-		String fileExtension = renderType;
-		if (renderType.compareToIgnoreCase("postscript") == 0)
-			fileExtension = "ps";
 		IRenderOption options = new RenderOption();
 		options.setOutputFormat(renderType);
-		options.setOutputFileName(outputFileDir() + reportName + "." + fileExtension);
+		options.setOutputFileName(outputFileDir() + reportName + "." + fileExtension(renderType));
 		if (renderType.compareToIgnoreCase("pdf") == 0) {
 			options.setOption(IPDFRenderOption.PAGE_OVERFLOW, new Integer(IPDFRenderOption.OUTPUT_TO_MULTIPLE_PAGES));
 			options.setOption(IPDFRenderOption.CLOSE_OUTPUTSTREAM_ON_EXIT, new Boolean(true));
@@ -139,10 +166,19 @@ public class BirtManager {
 			if (m_app != null)
 				((JotyMessenger) m_app).beforeReportRender();
 			m_exception = null;
-			if (twoProcess)
-				runThenRenderReport(name, renderType);
-			else
-				runAndRenderReport(name, renderType);
+			String cacheKey = m_reportCache != null && ReportCache.cacheable(renderType) ? 
+					ReportCache.key(name, renderType, m_language, m_user, m_reportManager) : null;
+			File outputFile = new File(outputFileDir() + name + "." + fileExtension(renderType));
+			if (cacheKey == null || !m_reportCache.fetch(cacheKey, outputFile)) {
+				long cacheGeneration = cacheKey == null ? 0 : m_reportCache.generation();
+				boolean success;
+				if (twoProcess)
+					success = runThenRenderReport(name, renderType);
+				else
+					success = runAndRenderReport(name, renderType);
+				if (success && cacheKey != null)
+					m_reportCache.store(cacheKey, name, outputFile, cacheGeneration);
+			}
 			if (m_app != null)
 				((JotyMessenger) m_app).afterReportRender(outputFileDir() + name + "." + renderType);
 		} else
@@ -153,8 +189,7 @@ public class BirtManager {
 		IEngineTask task = null;
 		boolean success = true;
 		try {
-			IReportRunnable design;
-			design = m_engine.openReportDesign(makePath(m_rptDesignsPath) + m_language + "/" + reportName + ".rptdesign");
+			IReportRunnable design = design(reportName);
 			task = forAnOnlyProcess ? m_engine.createRunAndRenderTask(design) : m_engine.createRunTask(design);
 			manageAppContext(task);
 			task.setParameterValue("DbUrl", m_dbUrl);
@@ -189,6 +224,28 @@ public class BirtManager {
 		return task;
 	}
 
+	/**
+	 * Returns the parsed design of the report for the current language,
+	 * parsing it only if it is not yet in memory or if its file has been
+	 * modified.
+	 */
+	private IReportRunnable design(String reportName) throws EngineException {
+		String fileName = makePath(m_rptDesignsPath) + m_language + "/" + reportName + ".rptdesign";
+		long lastModified = new File(fileName).lastModified();
+		DesignEntry entry = m_designs.get(fileName);
+		if (entry == null || entry.m_lastModified != lastModified) {
+			entry = new DesignEntry();
+			entry.m_design = m_engine.openReportDesign(fileName);
+			entry.m_lastModified = lastModified;
+			m_designs.put(fileName, entry);
+		}
+		return entry.m_design;
+	}
+
+	private String documentFileDir() {
+		return m_jobDir == null ? makePath(m_rptDocumentsPath, true) : m_jobDir;
+	}
+
 	public void end() {
 		m_engine.destroy();
 		Platform.shutdown();
@@ -196,6 +253,10 @@ public class BirtManager {
 	}
 
 
+	public static String fileExtension(String renderType) {
+		return renderType.compareToIgnoreCase("postscript") == 0 ? "ps" : renderType;
+	}
+
 	public void init() {
 		if (m_initied) {
 			try {
@@ -226,6 +287,33 @@ public class BirtManager {
 		return m_initied;
 	}
 
+	/**
+	 * Returns a new instance that shares the engine and the configuration of
+	 * this one and that has its own state, so that it can be used to build a
+	 * report concurrently with other ones.
+	 * 
+	 * @param jobDir
+	 *            the directory, ending with the separator, that receives both
+	 *            the intermediate document and the output of the engine
+	 */
+	public BirtManager jobManager(String jobDir) {
+		BirtManager retVal = new BirtManager(null, null);
+		retVal.m_rptDesignsPath = m_rptDesignsPath;
+		retVal.m_rptDocumentsPath = m_rptDocumentsPath;
+		retVal.m_rptOutputsPath = m_rptOutputsPath;
+		retVal.m_rptLogsPath = m_rptLogsPath;
+		retVal.m_realPath = m_realPath;
+		retVal.m_engine = m_engine;
+		retVal.m_dbUrl = m_dbUrl;
+		retVal.m_jdbcDriverClass = m_jdbcDriverClass;
+		retVal.m_initied = m_initied;
+		retVal.m_jobDir = jobDir;
+		retVal.m_reportCache = m_reportCache;
+		retVal.m_designs = m_designs;
+		retVal.m_memoryDocumentSize = m_memoryDocumentSize;
+		return retVal;
+	}
+
 	private String makePath(String path) {
 		return makePath(path, false);
 	}
@@ -244,34 +332,71 @@ public class BirtManager {
 	}
 
 	public String outputFileDir() {
-		return makePath(m_rptOutputsPath, true);
+		return m_jobDir == null ? makePath(m_rptOutputsPath, true) : m_jobDir;
+	}
+
+	/**
+	 * Parses in advance all the report designs found in the language
+	 * specific sub-directories of the designs directory and creates a task on
+	 * one of them, so that both the classes of the engine and the designs are
+	 * loaded before the first report is requested.
+	 * 
+	 * @return the number of the designs loaded
+	 */
+	public int preloadDesigns() {
+		int retVal = 0;
+		if (m_initied) {
+			File[] languageDirs = new File(makePath(m_rptDesignsPath)).listFiles();
+			if (languageDirs != null)
+				for (File languageDir : languageDirs) {
+					File[] files = languageDir.isDirectory() ? languageDir.listFiles() : null;
+					if (files != null)
+						for (File file : files)
+							if (file.getName().endsWith(".rptdesign"))
+								try {
+									DesignEntry entry = new DesignEntry();
+									entry.m_lastModified = file.lastModified();
+									entry.m_design = m_engine.openReportDesign(file.getPath());
+									m_designs.put(makePath(m_rptDesignsPath) + languageDir.getName() + "/" + file.getName(), entry);
+									if (retVal++ == 0)
+										m_engine.createRunTask(entry.m_design).close();
+								} catch (EngineException e) {
+									manageException(e);
+								}
+				}
+		}
+		return retVal;
 	}
 
 	public boolean renderReport(String reportName, String renderType) {
 		boolean retVal = false;
 		IReportDocument iReportDocument = null;
-		IRenderTask task = null;
 		try {
-			iReportDocument = m_engine.openReportDocument(makePath(m_rptDocumentsPath, true) + reportName + ".rptdocument");
+			iReportDocument = m_engine.openReportDocument(documentFileDir() + reportName + ".rptdocument");
 			retVal = true;
 		} catch (EngineException e) {
 			manageException(e);
 		}
-		if (iReportDocument != null) {
-			task = m_engine.createRenderTask(iReportDocument);
-			if (task != null) {
-				manageAppContext(task);
-				task.setRenderOption(buildOptions(reportName, renderType));
-				try {
-					task.render();
-				} catch (EngineException e) {
-					retVal = false;
-					manageException(e);
-				}
-				task.close();
+		if (iReportDocument != null)
+			retVal = renderDocument(iReportDocument, reportName, renderType);
+		return retVal;
+	}
+
+	private boolean renderDocument(IReportDocument iReportDocument, String reportName, String renderType) {
+		boolean retVal = true;
+		IRenderTask task = m_engine.createRenderTask(iReportDocument);
+		if (task != null) {
+			manageAppContext(task);
+			task.setRenderOption(buildOptions(reportName, renderType));
+			try {
+				task.render();
+			} catch (EngineException e) {
+				retVal = false;
+				manageException(e);
 			}
-			iReportDocument.close();
+			task.close();
 		}
+		iReportDocument.close();
 		return retVal;
 	}
 
@@ -297,7 +422,7 @@ public class BirtManager {
 		if (m_runTask != null) {
 			manageAppContext(m_runTask);
 			try {
-				m_runTask.run(makePath(m_rptDocumentsPath, true) + reportName + ".rptdocument");
+				m_runTask.run(documentFileDir() + reportName + ".rptdocument");
 				retVal = true;
 			} catch (EngineException e) {
 				manageException(e);
@@ -307,7 +432,48 @@ public class BirtManager {
 		return retVal;
 	}
 
+	/**
+	 * The intermediate document is hosted by a transient archive that stays in
+	 * memory until its size exceeds {@code m_memoryDocumentSize}, and only the
+	 * exceeding part reaches the disk.
+	 */
+	private boolean runThenRenderInMemory(String reportName, String renderType) {
+		boolean retVal = false;
+		ArchiveFile archive = null;
+		try {
+			archive = new ArchiveFile(documentFileDir() + reportName + ".rptdocument", "rwt");
+			archive.setCacheSize(m_memoryDocumentSize);
+			m_runTask = (IRunTask) createTaskOnDesign(reportName, false);
+			if (m_runTask != null) {
+				manageAppContext(m_runTask);
+				try {
+					m_runTask.run(new ArchiveWriter(archive));
+					retVal = true;
+				} catch (EngineException e) {
+					manageException(e);
+				}
+				m_runTask.close();
+			}
+			if (retVal)
+				retVal = renderDocument(m_engine.openReportDocument(reportName, new ArchiveReader(archive), new HashMap<Object, Object>()), 
+										reportName, renderType);
+		} catch (IOException | EngineException e) {
+			manageException(e);
+			retVal = false;
+		} finally {
+			if (archive != null)
+				try {
+					archive.close();
+				} catch (IOException e) {
+					Logger.exceptionToHostLog(e);
+				}
+		}
+		return retVal;
+	}
+
 	public boolean runThenRenderReport(String reportName, String renderType) {
+		if (m_memoryDocumentSize > 0)
+			return runThenRenderInMemory(reportName, renderType);
 		boolean retVal = runReport(reportName);
 		if (retVal)
 			retVal = renderReport(reportName, renderType);
@@ -326,10 +492,32 @@ public class BirtManager {
 		m_language = language;
 	}
 
+	/**
+	 * @param size
+	 *            the size in bytes under which the intermediate document of
+	 *            the two process mode is kept in memory (0 means always on
+	 *            disk)
+	 */
+	public void setMemoryDocumentSize(long size) {
+		m_memoryDocumentSize = size;
+	}
+
 	public void setPassword(String password) {
 		m_password = password;
 	}
 
+	public void setReportManager(ReportManager reportManager) {
+		m_reportManager = reportManager;
+	}
+
+	/**
+	 * When set, the outputs of {@code buildReport} are taken from and stored
+	 * into the cache, instead of being built every time.
+	 */
+	public void setReportCache(ReportCache reportCache) {
+		m_reportCache = reportCache;
+	}
+
 	public void setRealPath(String path) {
 		m_realPath = path;
 	}
@@ -20,15 +20,27 @@
 package org.joty.access;
 
 import java.beans.Beans;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.joty.common.ApplMessenger;
 import org.joty.common.Utilities;
@@ -57,6 +69,16 @@ import org.joty.common.Utilities;
  * 'debug' mode (see Configuration files), on the client side it uses the
  * {@code Application#JotyMsg} method to intercept logging activity for direct
  * delivering of information to the tester/developer.
+ * <p>
+ * By default every entry is written synchronously, by the calling thread,
+ * serialized with the other writers so that entries coming from concurrent
+ * threads don't interleave. The {@link #startAsyncMode} method switches the
+ * class to an asynchronous behavior: the entries are queued in a bounded ring
+ * buffer and a background thread drains it, writing all the entries found
+ * there in a single write for each target file (group commit), by means of a
+ * channel that stays open until the date stamp of the file name changes (daily
+ * rollover). What happens when the buffer is full is decided by the
+ * {@link OverflowPolicy} value.
  * 
  * 
  * @see Application#checkWBE(java.awt.Container)
@@ -68,6 +90,162 @@ import org.joty.common.Utilities;
  */
 public class Logger {
 
+	/**
+	 * Decides what happens to an entry in asynchronous mode when the ring
+	 * buffer is full: {@code BLOCK} makes the calling thread wait for room,
+	 * {@code DROP} discards the entry (the count of the discarded entries is
+	 * reported in the host log as soon as possible), {@code SYNC} writes the
+	 * entry directly from the calling thread.
+	 */
+	public enum OverflowPolicy {
+		BLOCK, DROP, SYNC
+	}
+
+	private static class LogEntry {
+		String m_fileName;
+		String m_text;
+		StackTraceElement[] m_stackTrace;
+		String m_user;
+		boolean m_finalName;
+		long m_time;
+
+		LogEntry(String fileName, String text, StackTraceElement[] stackTrace, String user, boolean finalName, long time) {
+			m_fileName = fileName;
+			m_text = text;
+			m_stackTrace = stackTrace;
+			m_user = user;
+			m_finalName = finalName;
+			m_time = time;
+		}
+	}
+
+	/**
+	 * The date stamp used in the name of the log files, valid for the time
+	 * interval [m_start, m_end).
+	 */
+	private static class DayStamp {
+		long m_start;
+		long m_end;
+		String m_text;
+
+		DayStamp(long time) {
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(time);
+			m_text = String.format("%1$04d-%2$02d-%3$02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+			calendar.set(Calendar.HOUR_OF_DAY, 0);
+			calendar.set(Calendar.MINUTE, 0);
+			calendar.set(Calendar.SECOND, 0);
+			calendar.set(Calendar.MILLISECOND, 0);
+			m_start = calendar.getTimeInMillis();
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+			m_end = calendar.getTimeInMillis();
+		}
+
+		boolean covers(long time) {
+			return time >= m_start && time < m_end;
+		}
+	}
+
+	/**
+	 * Drains the ring buffer. Each round takes all the entries available,
+	 * groups their text by target file and performs one write for each file
+	 * involved. The channels are kept open and are replaced when the actual
+	 * name of the file, for the same log, changes.
+	 */
+	private static class LogWriter extends Thread {
+		ArrayBlockingQueue<LogEntry> m_queue;
+		Map<String, String> m_openNames = new HashMap<String, String>();
+		Map<String, FileChannel> m_channels = new HashMap<String, FileChannel>();
+
+		LogWriter(ArrayBlockingQueue<LogEntry> queue) {
+			super("JotyLogWriter");
+			m_queue = queue;
+			setDaemon(true);
+		}
+
+		void close(String logName) {
+			FileChannel channel = m_channels.remove(logName);
+			m_openNames.remove(logName);
+			if (channel != null)
+				try {
+					channel.close();
+				} catch (IOException e) {}
+		}
+
+		void commit(List<LogEntry> batch) {
+			Map<String, StringBuilder> groups = new LinkedHashMap<String, StringBuilder>();
+			Map<String, String> actualNames = new HashMap<String, String>();
+			long dropped = m_dropped.getAndSet(0);
+			if (dropped > 0 && m_hostLogName != null)
+				batch.add(new LogEntry(m_hostLogName, dropped + " log entries discarded for log buffer overflow !", null, null, false, System.currentTimeMillis()));
+			StringBuilder group;
+			for (LogEntry entry : batch) {
+				if (entry == m_stopEntry)
+					continue;
+				group = groups.get(entry.m_fileName);
+				if (group == null) {
+					group = new StringBuilder();
+					groups.put(entry.m_fileName, group);
+					actualNames.put(entry.m_fileName, actualFileName(entry.m_fileName, entry.m_finalName, entry.m_time));
+				} else {
+					String actualName = actualFileName(entry.m_fileName, entry.m_finalName, entry.m_time);
+					if (!actualName.equals(actualNames.get(entry.m_fileName))) {
+						write(entry.m_fileName, actualNames.get(entry.m_fileName), group);
+						group.setLength(0);
+						actualNames.put(entry.m_fileName, actualName);
+					}
+				}
+				formatEntry(group, entry);
+			}
+			for (Map.Entry<String, StringBuilder> item : groups.entrySet())
+				write(item.getKey(), actualNames.get(item.getKey()), item.getValue());
+		}
+
+		@Override
+		public void run() {
+			List<LogEntry> batch = new ArrayList<LogEntry>();
+			boolean stop = false;
+			while (!stop) {
+				try {
+					batch.add(m_queue.take());
+				} catch (InterruptedException e) {
+					stop = true;
+				}
+				m_queue.drainTo(batch);
+				if (batch.contains(m_stopEntry)) {
+					stop = true;
+					m_queue.drainTo(batch);
+				}
+				commit(batch);
+				batch.clear();
+			}
+			for (String logName : new ArrayList<String>(m_channels.keySet()))
+				close(logName);
+		}
+
+		void write(String logName, String actualName, StringBuilder text) {
+			if (text.length() == 0)
+				return;
+			if (!actualName.equals(m_openNames.get(logName)))
+				close(logName);
+			try {
+				FileChannel channel = m_channels.get(logName);
+				if (channel == null) {
+					channel = FileChannel.open(Paths.get(actualName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+					m_channels.put(logName, channel);
+					m_openNames.put(logName, actualName);
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(m_charset));
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			} catch (IOException e) {
+				close(logName);
+				if (!m_serverSide)
+					m_app.JotyMsg(null, "It has not been possible to access the log file :\n\n" + (new File(actualName)).getAbsolutePath() + "\n\nReason : " + e.toString());
+			}
+		}
+	}
+
 	static String m_hostLogName;
 	static String m_hostLogDirName;
 	static boolean m_serverSide = true;
@@ -75,6 +253,16 @@ public class Logger {
 	private static boolean m_silent;
 	public static ApplMessenger m_app;
 
+	private static final Object m_writeLock = new Object();
+	private static final Charset m_charset = Charset.defaultCharset();
+	private static final String m_lineSeparator = System.getProperty("line.separator");
+	private static final LogEntry m_stopEntry = new LogEntry(null, null, null, null, false, 0);
+	private static final AtomicLong m_dropped = new AtomicLong();
+	private static volatile DayStamp m_dayStamp;
+	private static volatile ArrayBlockingQueue<LogEntry> m_queue;
+	private static OverflowPolicy m_overflowPolicy;
+	private static LogWriter m_logWriter;
+
 	public static void appendToHostLog(String text) {
 		appendToHostLog(text, false);
 	}
@@ -93,36 +281,22 @@ public class Logger {
 	}
 
 	public static void appendToLog(String fileName, String text, Boolean stackTraceToo, String user, boolean finalName) {
-		PrintWriter writer = null;
-		String actualFileName;
+		LogEntry entry = new LogEntry(fileName, text, stackTraceToo ? Thread.currentThread().getStackTrace() : null, user, finalName, System.currentTimeMillis());
+		ArrayBlockingQueue<LogEntry> queue = m_queue;
+		boolean written = queue != null && enqueue(queue, entry) || writeEntry(entry);
+		if (written && !m_serverSide && m_debug && !m_silent)
+			m_app.JotyMsg(null, text);
+	}
+
+	private static String actualFileName(String fileName, boolean finalName, long time) {
 		if (finalName)
-			actualFileName = fileName;
-		else {
-			Calendar calendar = Calendar.getInstance();
-			actualFileName = realDirName(m_hostLogDirName) + "/" + fileName + "_" + String.format("%1$04d-", calendar.get(Calendar.YEAR)) + String.format("%1$02d-", calendar.get(Calendar.MONTH) + 1) + String.format("%1$02d", calendar.get(Calendar.DAY_OF_MONTH)) + ".log";
-		}
-		try {
-			StringBuilder labString = null;
-			if (!designState()) {
-				labString = new StringBuilder();
-				labString.append(user == null ? "" : "USER : " + user + " ");
-				labString.append((new Date().toString()));
-				labString.append("\n");
-				labString.append(text);
-				labString.append("\n");
-			}
-			writer = new PrintWriter(new BufferedWriter(new FileWriter(actualFileName, true)));
-			if (text.length() > 0)
-				writer.println(designState() ? text : labString.toString());
-			if (stackTraceToo)
-				printStackTrace(writer);
-			writer.close();
-			if (!m_serverSide && m_debug && !m_silent)
-				m_app.JotyMsg(null, text);
-		} catch (IOException e) {
-			if (!m_serverSide)
-				m_app.JotyMsg(null, "It has not been possible to access the log file :\n\n" + (new File(actualFileName)).getAbsolutePath() + "\n\nReason : " + e.toString());
+			return fileName;
+		DayStamp dayStamp = m_dayStamp;
+		if (dayStamp == null || !dayStamp.covers(time)) {
+			dayStamp = new DayStamp(time);
+			m_dayStamp = dayStamp;
 		}
+		return realDirName(m_hostLogDirName) + "/" + fileName + "_" + dayStamp.m_text + ".log";
 	}
 
 	public static void appInit() {
@@ -134,6 +308,29 @@ public class Logger {
 		return !m_serverSide && Beans.isDesignTime();
 	}
 
+	/**
+	 * Returns false if the entry has to be written synchronously.
+	 */
+	private static boolean enqueue(ArrayBlockingQueue<LogEntry> queue, LogEntry entry) {
+		if (queue.offer(entry))
+			return true;
+		switch (m_overflowPolicy) {
+			case BLOCK:
+				try {
+					queue.put(entry);
+					return true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			case DROP:
+				m_dropped.incrementAndGet();
+				return true;
+			default:
+				return false;
+		}
+	}
+
 	public static void exceptionToHostLog(Exception e) {
 		if (!m_serverSide)
 			m_app.getCommon().resetRemoteTransactionBuilding();
@@ -142,6 +339,24 @@ public class Logger {
 			appendToHostLog(logtext, true);
 	}
 
+	private static void formatEntry(StringBuilder builder, LogEntry entry) {
+		if (entry.m_text.length() > 0) {
+			if (!designState()) {
+				if (entry.m_user != null)
+					builder.append("USER : ").append(entry.m_user).append(" ");
+				builder.append(new Date(entry.m_time).toString());
+				builder.append("\n");
+				builder.append(entry.m_text);
+				builder.append("\n");
+			} else
+				builder.append(entry.m_text);
+			builder.append(m_lineSeparator);
+		}
+		if (entry.m_stackTrace != null)
+			for (StackTraceElement stackTraceElement : entry.m_stackTrace)
+				builder.append("     ").append(stackTraceElement.toString()).append(m_lineSeparator);
+	}
+
 	public static void printStackTrace(PrintWriter writer) {
 		StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
 		for (StackTraceElement stackTraceElement : stackTraceElements)
@@ -162,6 +377,41 @@ public class Logger {
 		Utilities.checkDirectory(realDirName(m_hostLogDirName));
 	}
 
+	/**
+	 * Switches to the asynchronous mode: the entries are queued in a ring
+	 * buffer of {@code capacity} entries and written by a background thread.
+	 * The method has no effect if the mode is already active.
+	 * 
+	 * @see #stopAsyncMode()
+	 */
+	public static synchronized void startAsyncMode(int capacity, OverflowPolicy overflowPolicy) {
+		if (m_queue != null)
+			return;
+		m_overflowPolicy = overflowPolicy;
+		ArrayBlockingQueue<LogEntry> queue = new ArrayBlockingQueue<LogEntry>(capacity);
+		m_logWriter = new LogWriter(queue);
+		m_logWriter.start();
+		m_queue = queue;
+	}
+
+	/**
+	 * Restores the synchronous mode after the background writer has written
+	 * the entries still in the buffer and has closed its channels.
+	 */
+	public static synchronized void stopAsyncMode() {
+		ArrayBlockingQueue<LogEntry> queue = m_queue;
+		if (queue == null)
+			return;
+		m_queue = null;
+		try {
+			queue.put(m_stopEntry);
+			m_logWriter.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		m_logWriter = null;
+	}
+
 	public static void stackTraceToHostLog(String text) {
 		appendToHostLog("", true);
 	}
@@ -173,6 +423,27 @@ public class Logger {
 			Logger.appendToHostLog(th.toString());
 	}
 
+	private static boolean writeEntry(LogEntry entry) {
+		String actualFileName = actualFileName(entry.m_fileName, entry.m_finalName, entry.m_time);
+		StringBuilder builder = new StringBuilder();
+		formatEntry(builder, entry);
+		try {
+			synchronized (m_writeLock) {
+				FileWriter writer = new FileWriter(actualFileName, true);
+				try {
+					writer.write(builder.toString());
+				} finally {
+					writer.close();
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			if (!m_serverSide)
+				m_app.JotyMsg(null, "It has not been possible to access the log file :\n\n" + (new File(actualFileName)).getAbsolutePath() + "\n\nReason : " + e.toString());
+			return false;
+		}
+	}
+
 	public static void writeToLog(String fileName, String text) {
 		FileOutputStream fos = null;
 		try {
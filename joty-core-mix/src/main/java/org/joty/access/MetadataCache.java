@@ -0,0 +1,262 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.access;
+
+import java.sql.Connection;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joty.common.JotyTypes;
+
+/**
+ * Keeps the description of the columns of the result sets, so that the
+ * properties of the {@code ResultSetMetaData} object are read, and the jdbc
+ * types are mapped to the {@code JotyTypes} codes, only once for each shape of
+ * the set.
+ * <p>
+ * The shape is identified either by the text of the sql statement (see
+ * {@link #statementColumns}) or by the name of a database table (see
+ * {@link #tableColumns}). The cache holds at most {@code m_maxSize} entries,
+ * the least recently used being discarded, and an entry expires after
+ * {@code m_ttl} milliseconds (0 means never), so that changes in the database
+ * structure are eventually observed; the {@code invalidate...} methods allow
+ * a caller aware of such changes, or of failures possibly caused by them, to
+ * discard entries immediately.
+ * <p>
+ * The binary columns are described as {@code JotyTypes._blob}: whether they are
+ * to be treated as small blobs depends on the request and is decided by the
+ * consumer by means of {@link ColumnMetadata#jotyType(boolean)}.
+ * <p>
+ * The class is thread safe: the column descriptions are not modified after
+ * they have been built.
+ * 
+ * @see JotyTypes
+ * 
+ */
+public class MetadataCache {
+
+	public static class ColumnMetadata {
+		public String m_label;
+		public int m_sqlType;
+		public int m_precision;
+		public int m_scale;
+		/** the {@code JotyTypes} code, {@code _blob} for any binary column */
+		public int m_jotyType;
+		public boolean m_binary;
+		/** false if the column is read only or its value is generated by the dbms */
+		public boolean m_insertable;
+
+		public int jotyType(boolean smallBlob) {
+			return m_binary && smallBlob ? JotyTypes._smallBlob : m_jotyType;
+		}
+	}
+
+	private static class CacheEntry {
+		ColumnMetadata[] m_columns;
+		long m_loadTime;
+	}
+
+	private LinkedHashMap<String, CacheEntry> m_entries;
+	private int m_maxSize;
+	private long m_ttl;
+	private int m_intDigitDim;
+
+	public AtomicLong m_hits = new AtomicLong();
+	public AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * @param intDigitDim
+	 *            the number of digits beyond which an integer column is mapped
+	 *            to {@code JotyTypes._long}
+	 * @param maxSize
+	 *            the maximum number of entries
+	 * @param ttl
+	 *            the time to live of an entry in seconds (0 means never
+	 *            expiring)
+	 */
+	public MetadataCache(int intDigitDim, int maxSize, int ttl) {
+		m_intDigitDim = intDigitDim;
+		m_maxSize = maxSize;
+		m_ttl = ttl * 1000L;
+		m_entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				return size() > m_maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Builds the description of the columns from the metadata object.
+	 */
+	public ColumnMetadata[] describe(ResultSetMetaData metadata) throws SQLException {
+		ColumnMetadata[] retVal = new ColumnMetadata[metadata.getColumnCount()];
+		ColumnMetadata column;
+		int index;
+		for (int i = 0; i < retVal.length; i++) {
+			index = i + 1;
+			column = new ColumnMetadata();
+			column.m_label = metadata.getColumnLabel(index);
+			column.m_sqlType = metadata.getColumnType(index);
+			column.m_precision = metadata.getPrecision(index);
+			column.m_scale = metadata.getScale(index);
+			column.m_jotyType = jotyType(column.m_sqlType, column.m_precision, column.m_scale, m_intDigitDim);
+			column.m_binary = column.m_jotyType == JotyTypes._blob;
+			column.m_insertable = !metadata.isAutoIncrement(index) && !metadata.isReadOnly(index);
+			retVal[i] = column;
+		}
+		return retVal;
+	}
+
+	private ColumnMetadata[] get(String key) {
+		CacheEntry entry;
+		synchronized (m_entries) {
+			entry = m_entries.get(key);
+			if (entry != null && m_ttl > 0 && System.currentTimeMillis() - entry.m_loadTime > m_ttl) {
+				m_entries.remove(key);
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			m_misses.incrementAndGet();
+			return null;
+		} else {
+			m_hits.incrementAndGet();
+			return entry.m_columns;
+		}
+	}
+
+	public void invalidate() {
+		synchronized (m_entries) {
+			m_entries.clear();
+		}
+	}
+
+	public void invalidateStatement(String sql) {
+		synchronized (m_entries) {
+			m_entries.remove(statementKey(sql));
+		}
+	}
+
+	public void invalidateTable(String table) {
+		synchronized (m_entries) {
+			m_entries.remove(tableKey(table));
+		}
+	}
+
+	/**
+	 * Maps the jdbc type to the {@code JotyTypes} code: it is the mapping that
+	 * the framework has always applied to the result sets.
+	 */
+	public static int jotyType(int sqlType, int precision, int scale, int intDigitDim) {
+		switch (sqlType) {
+			case Types.CHAR:
+			case Types.VARCHAR:
+				return JotyTypes._text;
+			case Types.FLOAT:
+				return JotyTypes._single;
+			case Types.DOUBLE:
+				return JotyTypes._double;
+			case Types.REAL:
+			case Types.NUMERIC:
+			case Types.BIGINT:
+				if (scale == 0 || scale == -127)
+					return precision > intDigitDim ? JotyTypes._long : JotyTypes._int;
+				else
+					return JotyTypes._double;
+			case Types.INTEGER:
+				return JotyTypes._long;
+			case Types.SMALLINT:
+				return JotyTypes._int;
+			case 11:
+			case Types.DATE:
+				return JotyTypes._date;
+			case Types.TIMESTAMP:
+				return JotyTypes._dateTime;
+			case Types.BLOB:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				return JotyTypes._blob;
+			default:
+				return sqlType == Types.LONGVARCHAR && precision > 255 && scale == 0 ? JotyTypes._text : JotyTypes._none;
+		}
+	}
+
+	private void put(String key, ColumnMetadata[] columns) {
+		CacheEntry entry = new CacheEntry();
+		entry.m_columns = columns;
+		entry.m_loadTime = System.currentTimeMillis();
+		synchronized (m_entries) {
+			m_entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Returns the description of the columns of the result set produced by the
+	 * statement, building it from {@code metadata} if it is not cached.
+	 */
+	public ColumnMetadata[] statementColumns(String sql, ResultSetMetaData metadata) throws SQLException {
+		String key = statementKey(sql);
+		ColumnMetadata[] retVal = get(key);
+		if (retVal == null) {
+			retVal = describe(metadata);
+			put(key, retVal);
+		}
+		return retVal;
+	}
+
+	private String statementKey(String sql) {
+		return "S\n" + sql;
+	}
+
+	public String statistics() {
+		return String.format("Metadata cache : hits = %1$d, misses = %2$d", m_hits.get(), m_misses.get());
+	}
+
+	/**
+	 * Returns the description of the columns of the table, querying the
+	 * database, by a statement that returns no record, if it is not cached.
+	 */
+	public ColumnMetadata[] tableColumns(Connection conn, String table) throws SQLException {
+		String key = tableKey(table);
+		ColumnMetadata[] retVal = get(key);
+		if (retVal == null) {
+			Statement statement = conn.createStatement();
+			try {
+				retVal = describe(statement.executeQuery(String.format("Select %1$s.* from %1$s where 1 = 0", table)).getMetaData());
+			} finally {
+				statement.close();
+			}
+			put(key, retVal);
+		}
+		return retVal;
+	}
+
+	private String tableKey(String table) {
+		return "T\n" + table.toUpperCase(Locale.ROOT);
+	}
+
+}
@@ -19,9 +19,12 @@
 
 package org.joty.access;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.sql.Connection;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joty.access.DbManager.DbConnectionGrabber;
 import org.joty.common.BasicPostStatement;
@@ -44,6 +47,11 @@ import org.joty.common.BasicPostStatement.Item;
  * <p>
  * The actual returned value of the store method is added as last value in the
  * vector.
+ * <p>
+ * The method is resolved by reflection only the first time it is addressed
+ * with a given signature: the {@code MethodHandle} object derived from it is
+ * kept, for the class of the Accessor object, in the {@code m_handles} map and
+ * it is used for all the following invocations.
  * 
  * @see BasicPostStatement
  * @see Accessor
@@ -51,6 +59,18 @@ import org.joty.common.BasicPostStatement.Item;
  * 
  */
 public class MethodExecutor {
+	/**
+	 * the invokers of the methods already addressed, by class of the Accessor
+	 * object and by signature (see {@link #signature})
+	 */
+	private static ClassValue<ConcurrentHashMap<String, MethodHandle>> m_handles = new ClassValue<ConcurrentHashMap<String, MethodHandle>>() {
+		@Override
+		protected ConcurrentHashMap<String, MethodHandle> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<String, MethodHandle>();
+		}
+	};
+	private static final MethodType m_invokerType = MethodType.methodType(Object.class, Object.class, Object[].class);
+
 	Accessor m_accessor;
 	ErrorCarrier m_errorCarrier;
 	Vector<String> m_returnedValues;
@@ -68,7 +88,7 @@ public class MethodExecutor {
 		Object[] itemsValues = null;
 		boolean success = false;
 		m_accessor.setConn(dbConn);
-		Method method = null;
+		MethodHandle method = null;
 		Throwable throwable = null;	
 		Vector<Item> outParams = null;
 		int outParamsQty = postedStmnt.m_outParamsQty.length() == 0 ? 0 : Integer.parseInt(postedStmnt.m_outParamsQty);
@@ -94,7 +114,7 @@ public class MethodExecutor {
 					itemsValues[index] = outParams;
 				}
 			}
-			method = m_accessor.getClass().getMethod(postedStmnt.m_method, itemsTypes);
+			method = methodHandle(postedStmnt.m_method, itemsTypes);
 			success = true;
 		} catch (Throwable t) {
 			throwable = t;
@@ -105,7 +125,7 @@ public class MethodExecutor {
 				if (atomic && m_dbConnGrabber != null)
 					dbConn = m_dbConnGrabber.acquireConnection(true);
 				m_accessor.setConn(dbConn);
-				Object methodRetVal = method.invoke(m_accessor, itemsValues);
+				Object methodRetVal = method.invokeExact((Object) m_accessor, itemsValues);
 				if (atomic && m_dbConnGrabber != null)
 					m_dbConnGrabber.releaseConnection();
 				success = true;
@@ -142,4 +162,30 @@ public class MethodExecutor {
 		return success;
 	}
 
+	/**
+	 * Returns the invoker of the method of the Accessor object having the
+	 * specified name and parameter types: the invoker accepts the Accessor
+	 * object and the array of the actual parameters and returns the value
+	 * returned by the method (null for a void method).
+	 */
+	private MethodHandle methodHandle(String name, Class<?>[] types) throws NoSuchMethodException, IllegalAccessException {
+		ConcurrentHashMap<String, MethodHandle> classHandles = m_handles.get(m_accessor.getClass());
+		String signature = signature(name, types);
+		MethodHandle retVal = classHandles.get(signature);
+		if (retVal == null) {
+			retVal = MethodHandles.lookup().unreflect(m_accessor.getClass().getMethod(name, types))
+											.asSpreader(Object[].class, types.length)
+											.asType(m_invokerType);
+			classHandles.put(signature, retVal);
+		}
+		return retVal;
+	}
+
+	private String signature(String name, Class<?>[] types) {
+		StringBuilder retVal = new StringBuilder(name).append('(');
+		for (Class<?> type : types)
+			retVal.append(type.getName()).append(';');
+		return retVal.append(')').toString();
+	}
+
 }
@@ -31,6 +31,7 @@ import org.joty.common.ParamContext;
 import org.joty.common.Utilities;
 import org.joty.common.BasicPostStatement.Item;
 import org.joty.common.ParamContext.ContextParam;
+import org.joty.common.ParamContext.LiteralDate;
 
 /**
  * It is the overriding that allows the direct interaction with the Accessor object.
@@ -73,7 +74,7 @@ public class PostStatement extends BasicPostStatement {
 			if (accessor.m_shared && (m_termName == null || m_termName.length() == 0) && !dataDef.noSharingClause())
 				sharingExpr = (sharedAlias == null ? "" : (sharedAlias + ".")) + accessor.sharingClause();			
 			if (m_iteration != null && m_iteration.length() > 0 && Integer.parseInt(m_iteration) > -1)
-				retVal.append(dataDef.getSearchSql(m_mainFilter, m_sortExpr, Integer.parseInt(m_iteration), m_method, sharingExpr));
+				retVal.append(dataDef.getSearchSql(m_mainFilter, m_sortExpr, Integer.parseInt(m_iteration), m_seekValues, m_method, sharingExpr));
 			else {
 				retVal.append(dataDef.getStatement(m_method));
 				Utilities.composeSelectClauses(retVal, m_mainFilter, sharingExpr, m_sortExpr);
@@ -82,11 +83,43 @@ public class PostStatement extends BasicPostStatement {
 		return retVal.toString();
 	}
 	
+	/**
+	 * Feeds the {@code ParamContext} object with the items of the instance.
+	 * Numeric and date items recover the type of the context parameter they
+	 * come from so that the value can be bound to a prepared statement; if the
+	 * literal cannot be parsed the item is loaded as text. Dates and doubles
+	 * keep their literal for the textual use of the parameter.
+	 */
 	public void loadParamContext(ParamContext paramContext, boolean clearFirst) {
 		if (clearFirst)
 			paramContext.clear();
 		for (Item item : m_items)
-			paramContext.setContextParam(item.name, item.valueLiteral);
+			loadParam(paramContext, item);
+	}
+
+	private void loadParam(ParamContext paramContext, Item item) {
+		String literal = item.valueLiteral;
+		boolean nullLiteral = literal == null || literal.equalsIgnoreCase("null");
+		try {
+			switch (item.type) {
+				case Item._long:
+					paramContext.setContextParam(item.name, nullLiteral ? null : Long.valueOf(literal.trim()));
+					return;
+				case Item._double:
+					if (literal != null) {
+						paramContext.setContextParam(item.name, nullLiteral ? null : Double.valueOf(literal.trim()), literal);
+						return;
+					}
+					break;
+				case Item._date:
+					if (literal != null) {
+						paramContext.setContextParam(item.name, new LiteralDate(literal));
+						return;
+					}
+					break;
+			}
+		} catch (IllegalArgumentException e) {}
+		paramContext.setContextParam(item.name, literal);
 	}
 
 	public String nameSubst(Accessor accessor, String sql) {
@@ -0,0 +1,255 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.access;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joty.common.JotyTypes;
+import org.joty.common.ReportManager;
+import org.joty.common.ReportManager.Parameter;
+
+/**
+ * Keeps on disk the outputs of the report engine, so that a report requested
+ * again with the same render type, language and parameters is delivered
+ * without running the engine at all.
+ * <p>
+ * The total size of the files is bounded by {@code m_maxSize}, the least
+ * recently used ones being discarded, and an output expires after
+ * {@code m_ttl} milliseconds (0 means never). Since the cache does not know
+ * when the data a report is built on changes, the code that modifies them
+ * (typically a method of the {@code Accessor} object, see
+ * {@link Accessor#invalidateReports(String)}) should invalidate the reports
+ * involved. For this reason the server keeps no cache unless the
+ * {@code reportCacheSize} configuration item is set.
+ * <p>
+ * The user that requests a report is part of the identity of the output,
+ * because the engine builds the report with the database credentials of the
+ * user: an output is never delivered to a user different from the one it was
+ * built for. The html render type is not cached because its output is made of
+ * more files.
+ * <p>
+ * A build that started before an invalidation must not store its output
+ * after it: the builder reads {@code generation()} before running the
+ * engine and passes the value to {@code store}, which drops the output if an
+ * invalidation took place in the meanwhile.
+ * <p>
+ * The directory is emptied at construction: the outputs don't survive the
+ * instance.
+ * 
+ * @see BirtManager#setReportCache(ReportCache)
+ */
+public class ReportCache {
+
+	private static class Entry {
+		String m_reportName;
+		File m_file;
+		long m_size;
+		long m_storeTime;
+	}
+
+	private File m_dir;
+	private long m_maxSize;
+	private long m_ttl;
+	private long m_size;
+	private long m_generation;
+	private LinkedHashMap<String, Entry> m_entries;
+
+	public AtomicLong m_hits = new AtomicLong();
+	public AtomicLong m_misses = new AtomicLong();
+
+	/**
+	 * @param dirName
+	 *            the directory hosting the files
+	 * @param maxSize
+	 *            the maximum total size of the files in bytes
+	 * @param ttl
+	 *            the time to live of an output in seconds (0 means never
+	 *            expiring)
+	 */
+	public ReportCache(String dirName, long maxSize, int ttl) {
+		m_dir = new File(dirName);
+		m_dir.mkdirs();
+		File[] files = m_dir.listFiles();
+		if (files != null)
+			for (File file : files)
+				file.delete();
+		m_maxSize = maxSize;
+		m_ttl = ttl * 1000L;
+		m_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	}
+
+	public static boolean cacheable(String renderType) {
+		return renderType.compareToIgnoreCase("html") != 0;
+	}
+
+	private void discard(Entry entry) {
+		m_size -= entry.m_size;
+		entry.m_file.delete();
+	}
+
+	/**
+	 * Copies the cached output, if any, into {@code target}.
+	 * 
+	 * @return true on cache hit
+	 */
+	public synchronized boolean fetch(String key, File target) {
+		Entry entry = m_entries.get(key);
+		if (entry != null && m_ttl > 0 && System.currentTimeMillis() - entry.m_storeTime > m_ttl) {
+			m_entries.remove(key);
+			discard(entry);
+			entry = null;
+		}
+		boolean retVal = false;
+		if (entry != null)
+			try {
+				target.getParentFile().mkdirs();
+				Files.copy(entry.m_file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				retVal = true;
+			} catch (IOException e) {
+				Logger.exceptionToHostLog(e);
+			}
+		if (retVal)
+			m_hits.incrementAndGet();
+		else
+			m_misses.incrementAndGet();
+		return retVal;
+	}
+
+	/**
+	 * Returns the current generation of the cache: it changes at any
+	 * invalidation.
+	 * 
+	 * @see #store(String, String, File, long)
+	 */
+	public synchronized long generation() {
+		return m_generation;
+	}
+
+	/**
+	 * Discards all the outputs.
+	 */
+	public synchronized void invalidate() {
+		m_generation++;
+		for (Entry entry : m_entries.values())
+			discard(entry);
+		m_entries.clear();
+	}
+
+	/**
+	 * Discards the outputs of the report, whatever the parameters were.
+	 */
+	public synchronized void invalidate(String reportName) {
+		m_generation++;
+		Entry entry;
+		for (Iterator<Entry> iterator = m_entries.values().iterator(); iterator.hasNext();) {
+			entry = iterator.next();
+			if (entry.m_reportName.equalsIgnoreCase(reportName)) {
+				iterator.remove();
+				discard(entry);
+			}
+		}
+	}
+
+	/**
+	 * Builds the identity of the output: it is the digest of the text made by
+	 * the name, the render type, the language, the user and the parameters of
+	 * the report, so that it can be used as a file name.
+	 */
+	public static String key(String reportName, String renderType, String language, String user, ReportManager reportManager) {
+		StringBuilder text = new StringBuilder(reportName).append('\n').append(renderType.toLowerCase()).append('\n').append(language)
+									.append('\n').append(user);
+		if (reportManager != null)
+			for (Parameter param : reportManager.m_params)
+				text.append('\n').append(param.name).append('=').append(param.type).append(':')
+						.append(param.type == JotyTypes._int ? String.valueOf(param.intVal) : param.strVal);
+		StringBuilder retVal = new StringBuilder();
+		try {
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(text.toString().getBytes(StandardCharsets.UTF_8)))
+				retVal.append(String.format("%02x", b));
+		} catch (NoSuchAlgorithmException e) {
+			retVal.append(Integer.toHexString(text.toString().hashCode()));
+		}
+		return retVal.toString();
+	}
+
+	public String statistics() {
+		return String.format("Report cache : hits = %1$d, misses = %2$d, size = %3$d bytes", m_hits.get(), m_misses.get(), m_size);
+	}
+
+	/**
+	 * Adds the output to the cache, possibly discarding the least recently
+	 * used outputs to respect the maximum size.
+	 * 
+	 * @param generation
+	 *            the value returned by {@code generation()} before the build
+	 *            of the output started: if the cache has been invalidated
+	 *            since, the output is not stored.
+	 */
+	public void store(String key, String reportName, File source, long generation) {
+		long size = source.length();
+		if (size == 0 || size > m_maxSize)
+			return;
+		File file = new File(m_dir, key + "." + Thread.currentThread().getId());
+		try {
+			Files.copy(source.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Logger.exceptionToHostLog(e);
+			file.delete();
+			return;
+		}
+		Entry entry = new Entry();
+		entry.m_reportName = reportName;
+		entry.m_size = size;
+		entry.m_storeTime = System.currentTimeMillis();
+		synchronized (this) {
+			if (generation != m_generation) {
+				file.delete();
+				return;
+			}
+			Entry oldEntry = m_entries.remove(key);
+			if (oldEntry != null)
+				discard(oldEntry);
+			entry.m_file = new File(m_dir, key);
+			if (!file.renameTo(entry.m_file)) {
+				file.delete();
+				return;
+			}
+			m_entries.put(key, entry);
+			m_size += size;
+			Iterator<Entry> iterator = m_entries.values().iterator();
+			Entry eldest;
+			while (m_size > m_maxSize && iterator.hasNext()) {
+				eldest = iterator.next();
+				iterator.remove();
+				discard(eldest);
+			}
+		}
+	}
+
+}
@@ -56,7 +56,7 @@ public class JotyCursor extends BasicJotyCursor implements android.database.Curs
 
     @Override
     public int getCount() {
-        return m_container.m_recNodeList.getLength();
+        return m_container.recordCount();
     }
 
     @Override
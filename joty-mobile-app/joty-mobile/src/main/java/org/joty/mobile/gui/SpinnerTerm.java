@@ -172,7 +172,13 @@ public class SpinnerTerm extends Term {
 
     public int setSelectionBasedOnData(Long lonVal, String strVal) {
         int retVal = -1;
-        Integer posIdx = lonVal == null ? m_literalStruct.m_strKeyRevMap.get(strVal) : m_literalStruct.m_descrReverseMap.get(lonVal);
+        Integer posIdx;
+        if (lonVal == null)
+            posIdx = m_literalStruct.m_strKeyRevMap.get(strVal);
+        else {
+            int descrPos = m_literalStruct.m_descrReverseMap.get(lonVal);
+            posIdx = descrPos < 0 ? null : descrPos;
+        }
         if (posIdx == null)
             m_spinner.setSelection(-1);
         else {
@@ -28,9 +28,7 @@ import org.joty.app.Common;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.security.KeyManagementException;
@@ -104,17 +102,16 @@ public class WebConn extends AbstractWebConn {
                     m_respManager.m_exceptionalResponse = false;
                 m_app.m_currentRespHandlersManager = m_respManager;
                 if (m_post) {
-                    OutputStreamWriter out = new OutputStreamWriter(m_conn.getOutputStream());
                     if (doIt())
-                        out.write(m_postContent);
-                    out.close();
+                        writePostContent();
+                    else
+                        m_conn.getOutputStream().close();
                 } else
                     m_conn.connect();
 
                 if (doIt()) {
                     responseCode = m_conn.getResponseCode();
-                    InputStream is = m_conn.getInputStream();
-                    responseText = getResp(is);
+                    responseText = getResp(responseStream());
                 }
             } catch (IOException e1) {
                 if (e1 instanceof SSLHandshakeException)
@@ -0,0 +1,254 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+import org.joty.common.JotyTypes;
+import org.joty.common.PackedData;
+import org.joty.common.XmlTextEncoder;
+
+/**
+ * Renders the value of a column of the current record of a ResultSet as the
+ * 'c' xml node of the 'Data' section of the Joty response.
+ * <p>
+ * An instance is chosen once for each column, by means of the {@code create}
+ * method, depending on the {@code JotyTypes} code of the column; then, for
+ * each record, the {@code encode} method reads the value only once, by the
+ * column index, and appends the node directly to the target buffer, without
+ * building intermediate strings.
+ * <p>
+ * The {@code encodePacked} method does the same for the packed form of the
+ * 'Data' section, writing the value in its binary representation.
+ * 
+ * @see JotyServer#renderResultSetAsXml
+ * @see PackedData
+ * 
+ */
+public abstract class ColumnEncoder {
+
+	/** Appends the value as it is returned by the jdbc driver. */
+	static class PlainEncoder extends ColumnEncoder {
+		@Override
+		public void encode(ResultSet result, StringBuilder target) throws SQLException {
+			appendValue(result.getString(m_index), target);
+		}
+
+		@Override
+		public void encodePacked(ResultSet result, DataOutputStream target) throws SQLException, IOException {
+			switch (m_type) {
+				case JotyTypes._int:
+					int intVal = result.getInt(m_index);
+					if (valueMarker(!result.wasNull(), target))
+						target.writeInt(intVal);
+					break;
+				case JotyTypes._long:
+					long longVal = result.getLong(m_index);
+					if (valueMarker(!result.wasNull(), target))
+						target.writeLong(longVal);
+					break;
+				case JotyTypes._single:
+					float floatVal = result.getFloat(m_index);
+					if (valueMarker(!result.wasNull(), target))
+						target.writeFloat(floatVal);
+					break;
+				case JotyTypes._double:
+					double doubleVal = result.getDouble(m_index);
+					if (valueMarker(!result.wasNull(), target))
+						target.writeDouble(doubleVal);
+					break;
+				default:
+					target.writeByte(PackedData.NULL_VALUE);
+			}
+		}
+	}
+
+	/** Appends the Base64 encoding of the UTF-8 text. */
+	static class TextEncoder extends ColumnEncoder {
+		@Override
+		public void encode(ResultSet result, StringBuilder target) throws SQLException {
+			String value = result.getString(m_index);
+			appendValue(value == null || value.isEmpty() ? null : m_xmlEncoder.encode(value, false), target);
+		}
+
+		@Override
+		public void encodePacked(ResultSet result, DataOutputStream target) throws SQLException, IOException {
+			String value = result.getString(m_index);
+			if (valueMarker(value != null && !value.isEmpty(), target))
+				PackedData.writeText(target, value);
+		}
+	}
+
+	static class DateEncoder extends ColumnEncoder {
+		Calendar m_calendar;
+
+		@Override
+		public void encode(ResultSet result, StringBuilder target) throws SQLException {
+			java.util.Date value = getDate(result);
+			appendValue(value == null ? null : m_dateFormat.format(value), target);
+		}
+
+		@Override
+		public void encodePacked(ResultSet result, DataOutputStream target) throws SQLException, IOException {
+			java.util.Date value = getDate(result);
+			if (valueMarker(value != null, target)) {
+				if (m_calendar == null)
+					m_calendar = Calendar.getInstance();
+				PackedData.writeDate(target, m_calendar, value);
+			}
+		}
+
+		private java.util.Date getDate(ResultSet result) throws SQLException {
+			return m_type == JotyTypes._dateTime ? result.getTimestamp(m_index) : result.getDate(m_index);
+		}
+	}
+
+	/** Appends the Base64 encoding of the binary content. */
+	static class BlobEncoder extends ColumnEncoder {
+		@Override
+		public void encode(ResultSet result, StringBuilder target) throws SQLException {
+			Blob blob = result.getBlob(m_index);
+			if (blob == null)
+				target.append(m_nullTag);
+			else {
+				target.append(m_openTag);
+				target.append(m_xmlEncoder.encode(blob.getBytes(1, (int) blob.length())));
+				target.append(m_closeTag);
+			}
+		}
+
+		@Override
+		public void encodePacked(ResultSet result, DataOutputStream target) throws SQLException, IOException {
+			Blob blob = result.getBlob(m_index);
+			byte[] bytes = blob == null ? null : blob.getBytes(1, (int) blob.length());
+			if (valueMarker(bytes != null && bytes.length > 0, target))
+				PackedData.writeBytes(target, bytes);
+		}
+	}
+
+	/** Stands for a blob not to be delivered with the record. */
+	static class BlobPlaceHolder extends ColumnEncoder {
+		@Override
+		public void encode(ResultSet result, StringBuilder target) {
+			target.append(m_openTag).append('0').append(m_closeTag);
+		}
+
+		@Override
+		public void encodePacked(ResultSet result, DataOutputStream target) throws IOException {
+			target.writeByte(PackedData.VALUE);
+			target.writeInt(0);
+		}
+	}
+
+	/**
+	 * Chooses the encoder for a column.
+	 * 
+	 * @param type
+	 *            the {@code JotyTypes} code of the column
+	 * @param index
+	 *            the 1-based index of the column in the ResultSet
+	 * @param fieldOrdinality
+	 *            if true the index of the column is part of the node name
+	 * @param withBinaries
+	 *            if true the content of the {@code JotyTypes._blob} columns is
+	 *            delivered
+	 * @param xmlEncoder
+	 *            the Base64 encoder
+	 * @param dateFormat
+	 *            the format for the date values
+	 */
+	public static ColumnEncoder create(int type, int index, boolean fieldOrdinality, boolean withBinaries, XmlTextEncoder xmlEncoder, SimpleDateFormat dateFormat) {
+		ColumnEncoder retVal;
+		switch (type) {
+			case JotyTypes._text:
+				retVal = new TextEncoder();
+				break;
+			case JotyTypes._date:
+			case JotyTypes._dateTime:
+				retVal = new DateEncoder();
+				break;
+			case JotyTypes._blob:
+				retVal = withBinaries ? new BlobEncoder() : new BlobPlaceHolder();
+				break;
+			case JotyTypes._smallBlob:
+				retVal = new BlobEncoder();
+				break;
+			default:
+				retVal = new PlainEncoder();
+		}
+		retVal.m_type = type;
+		retVal.m_index = index;
+		retVal.m_xmlEncoder = xmlEncoder;
+		retVal.m_dateFormat = dateFormat;
+		String nodeName = "c" + (fieldOrdinality ? String.valueOf(index) : "");
+		retVal.m_openTag = "<" + nodeName + ">";
+		retVal.m_closeTag = "</" + nodeName + ">";
+		retVal.m_nullTag = "<" + nodeName + "/>";
+		return retVal;
+	}
+
+	protected int m_type;
+	protected int m_index;
+	protected String m_openTag;
+	protected String m_closeTag;
+	protected String m_nullTag;
+	protected XmlTextEncoder m_xmlEncoder;
+	protected SimpleDateFormat m_dateFormat;
+
+	/**
+	 * Appends the node for the value, the null node if the value is null or
+	 * empty.
+	 */
+	protected void appendValue(String value, StringBuilder target) {
+		if (value == null || value.isEmpty())
+			target.append(m_nullTag);
+		else
+			target.append(m_openTag).append(value).append(m_closeTag);
+	}
+
+	/**
+	 * Reads the value of the column from the current record of the ResultSet
+	 * and appends the corresponding xml node to the target.
+	 */
+	public abstract void encode(ResultSet result, StringBuilder target) throws SQLException;
+
+	/**
+	 * Reads the value of the column from the current record of the ResultSet
+	 * and writes it, in the packed form, to the target.
+	 */
+	public abstract void encodePacked(ResultSet result, DataOutputStream target) throws SQLException, IOException;
+
+	/**
+	 * Writes the marker byte of the value.
+	 * 
+	 * @return the value of {@code present}
+	 */
+	protected boolean valueMarker(boolean present, DataOutputStream target) throws IOException {
+		target.writeByte(present ? PackedData.VALUE : PackedData.NULL_VALUE);
+		return present;
+	}
+
+}
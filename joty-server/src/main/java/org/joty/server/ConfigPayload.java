@@ -0,0 +1,186 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Holds the response to the 'config' command for a configuration file, built
+ * once by {@code JotyServer.init} since the file does not change while the
+ * servlet runs.
+ * <p>
+ * The invariant part of the response (everything but the session id and the
+ * closing of the root node) is kept as UTF-8 bytes and, if its size reaches
+ * the compression threshold, also compressed: its deflate blocks, ended by a
+ * sync flush, are kept so that the variable tail only has to be compressed,
+ * as the final block, at each request. The tail compressor is primed with
+ * the end of the invariant part as dictionary, so that the blocks form one
+ * deflate stream, and the response is sent as a single gzip member: the
+ * clients, the Android ones included, need not support multi-member gzip.
+ * <p>
+ * The entity tag is derived from the digest of the invariant part and it is
+ * distinguished for the gzip representation.
+ * 
+ * @see JotyServer#doGet
+ */
+class ConfigPayload {
+	String m_etag;
+	String m_gzipEtag;
+	byte[] m_content;
+	/** the deflate blocks of {@code m_content}, not final */
+	byte[] m_deflated;
+
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * @param content
+	 *            the invariant part of the response
+	 * @param compressionThreshold
+	 *            the size in bytes beyond which the gzip representation is
+	 *            prepared (0 means never)
+	 */
+	ConfigPayload(String content, int compressionThreshold) throws IOException {
+		m_content = content.getBytes("UTF-8");
+		String digest;
+		try {
+			StringBuilder hex = new StringBuilder();
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(m_content);
+			for (int i = 0; i < 16; i++)
+				hex.append(String.format("%02x", hash[i]));
+			digest = hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			digest = Integer.toHexString(content.hashCode()) + Integer.toHexString(m_content.length);
+		}
+		m_etag = "\"" + digest + "\"";
+		m_gzipEtag = "\"" + digest + "-gz\"";
+		if (compressionThreshold > 0 && m_content.length >= compressionThreshold)
+			m_deflated = deflate(m_content);
+	}
+
+	private static byte[] deflate(byte[] content) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int length;
+		try {
+			deflater.setInput(content);
+			do {
+				length = deflater.deflate(chunk, 0, chunk.length, Deflater.SYNC_FLUSH);
+				buffer.write(chunk, 0, length);
+			} while (length == chunk.length);
+		} finally {
+			deflater.end();
+		}
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Returns the gzip member made of the compressed invariant part followed
+	 * by {@code tail}.
+	 */
+	private byte[] gzip(byte[] tail) {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(m_deflated.length + tail.length + 32);
+		writeShort(buffer, GZIP_MAGIC);
+		buffer.write(Deflater.DEFLATED);
+		for (int i = 0; i < 7; i++)
+			buffer.write(0);
+		buffer.write(m_deflated, 0, m_deflated.length);
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		byte[] chunk = new byte[1024];
+		try {
+			int dictionarySize = Math.min(m_content.length, DICTIONARY_SIZE);
+			deflater.setDictionary(m_content, m_content.length - dictionarySize, dictionarySize);
+			deflater.setInput(tail);
+			deflater.finish();
+			while (!deflater.finished())
+				buffer.write(chunk, 0, deflater.deflate(chunk));
+		} finally {
+			deflater.end();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(m_content);
+		crc.update(tail);
+		writeInt(buffer, (int) crc.getValue());
+		writeInt(buffer, m_content.length + tail.length);
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Checks the value of the 'If-None-Match' request header against the
+	 * entity tags of the payload.
+	 */
+	boolean matches(String ifNoneMatch) {
+		if (ifNoneMatch == null)
+			return false;
+		String tag;
+		for (String item : ifNoneMatch.split(",")) {
+			tag = item.trim();
+			if (tag.startsWith("W/"))
+				tag = tag.substring(2);
+			if (tag.equals("*") || tag.equals(m_etag) || tag.equals(m_gzipEtag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the payload followed by {@code tail} as the response content.
+	 * 
+	 * @param gzipAccepted
+	 *            true if the client accepts a gzip content: it is used only if
+	 *            the gzip representation is available
+	 */
+	void write(HttpServletResponse response, boolean gzipAccepted, String tail) throws IOException {
+		boolean gzipped = gzipAccepted && m_deflated != null;
+		response.setHeader("ETag", gzipped ? m_gzipEtag : m_etag);
+		response.setHeader("Cache-Control", "no-cache");
+		response.addHeader("Vary", "Accept-Encoding");
+		if (gzipped)
+			response.setHeader("Content-Encoding", "gzip");
+		OutputStream out = response.getOutputStream();
+		if (gzipped)
+			out.write(gzip(tail.getBytes("UTF-8")));
+		else {
+			out.write(m_content);
+			out.write(tail.getBytes("UTF-8"));
+		}
+		out.close();
+	}
+
+	private static void writeInt(ByteArrayOutputStream buffer, int value) {
+		writeShort(buffer, value & 0xffff);
+		writeShort(buffer, value >>> 16);
+	}
+
+	private static void writeShort(ByteArrayOutputStream buffer, int value) {
+		buffer.write(value & 0xff);
+		buffer.write((value >>> 8) & 0xff);
+	}
+
+}
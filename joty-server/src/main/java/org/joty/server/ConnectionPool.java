@@ -0,0 +1,508 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.joty.common.JotyMessenger;
+
+/**
+ * Keeps, for each pair of credentials, a set of warm database connections
+ * obtained from the container {@code DataSource}.
+ * <p>
+ * The {@code DataSource} object is looked up by JNDI only once and then
+ * cached; the connections are created with the dbms session preset statement
+ * already executed on them, so that the serving of a request does not pay
+ * neither the lookup nor the preset execution.
+ * <p>
+ * The pool of each user is bounded by {@code m_maxSize}: when all its
+ * connections are borrowed the requesting thread waits up to
+ * {@code m_borrowTimeout} milliseconds for a connection to be given back. A
+ * connection that has been idle for more than {@code m_idleTimeout}
+ * milliseconds is closed by a background task, and, if
+ * {@code m_validateOnBorrow} is true, the connection is checked to be still
+ * valid before being handed out.
+ * <p>
+ * Since a pool is kept for each pair of credentials, the connections of all
+ * the pools together are bounded by {@code m_maxTotalSize}, if positive:
+ * when the bound is reached, a new connection is made room for by closing
+ * the least recently used idle connection of another user; if none is idle
+ * the requesting thread waits, within the same borrowing timeout, for a
+ * connection to be closed. With a non positive value the total is bounded
+ * only by {@code m_maxSize} times the number of the users served at the same
+ * time.
+ * <p>
+ * The class maintains some counters about the borrowing activity, the
+ * content of which is rendered by the {@code statistics} method.
+ * <p>
+ * A maximum size of zero disables the pooling: the connections are created
+ * and closed for each request as it happened before, but the
+ * {@code DataSource} object is cached anyway.
+ * <p>
+ * Since a pooled connection outlives the request, the class associates to
+ * each of them a {@code StatementCache} object, if {@code m_stmntCacheSize}
+ * is positive; the cache is dropped, and its statements closed, together with
+ * the connection.
+ * 
+ * @see JotyServer
+ * 
+ */
+public class ConnectionPool {
+
+	class PooledConnection {
+		Connection m_conn;
+		long m_lastUse;
+
+		PooledConnection(Connection conn) {
+			m_conn = conn;
+			m_lastUse = System.currentTimeMillis();
+		}
+	}
+
+	class UserPool {
+		LinkedList<PooledConnection> m_idle = new LinkedList<PooledConnection>();
+		int m_size;
+	}
+
+	private String m_dataSourceName;
+	private String m_sessionPreset;
+	private volatile DataSource m_dataSource;
+	private HashMap<String, UserPool> m_userPools;
+	private int m_maxSize;
+	private int m_maxTotalSize;
+	private AtomicInteger m_totalSize = new AtomicInteger();
+	/** the time (ms) after which a thread waiting for the total bound looks again for an idle connection */
+	private long m_totalWaitSlice = 50;
+	private long m_idleTimeout;
+	private long m_borrowTimeout;
+	private boolean m_validateOnBorrow;
+	private int m_validationTimeout = 5;
+	private int m_stmntCacheSize;
+	private IdentityHashMap<Connection, StatementCache> m_statementCaches = new IdentityHashMap<Connection, StatementCache>();
+	private ScheduledExecutorService m_evictor;
+	private JotyMessenger m_jotyMessanger;
+
+	public AtomicLong m_borrowCount = new AtomicLong();
+	public AtomicLong m_borrowWaitNanos = new AtomicLong();
+	public AtomicLong m_maxBorrowWaitNanos = new AtomicLong();
+	public AtomicLong m_borrowTimeouts = new AtomicLong();
+	public AtomicLong m_createdCount = new AtomicLong();
+	public AtomicLong m_evictedCount = new AtomicLong();
+	public AtomicLong m_invalidCount = new AtomicLong();
+	public AtomicLong m_stmntCacheHits = new AtomicLong();
+	public AtomicLong m_stmntCacheMisses = new AtomicLong();
+
+	/**
+	 * @param jotyMessanger
+	 *            the messenger for logging
+	 * @param dataSourceName
+	 *            the name of the container data source (relative to the
+	 *            'java:/comp/env/' context)
+	 * @param sessionPreset
+	 *            the statement to be executed on each new connection (may be
+	 *            null)
+	 * @param maxSize
+	 *            the maximum number of connections for each user
+	 * @param maxTotalSize
+	 *            the maximum number of connections of all the users together
+	 *            (0 means no bound other than {@code maxSize} for each user)
+	 * @param idleTimeout
+	 *            the idle time (seconds) after which a connection is closed
+	 * @param borrowTimeout
+	 *            the maximum waiting time (seconds) for a connection
+	 * @param validateOnBorrow
+	 *            if true the connection is validated before being handed out
+	 * @param stmntCacheSize
+	 *            the maximum number of prepared statements kept for each
+	 *            connection (0 disables the caching)
+	 */
+	public ConnectionPool(JotyMessenger jotyMessanger, String dataSourceName, String sessionPreset, int maxSize, int maxTotalSize, int idleTimeout, int borrowTimeout, boolean validateOnBorrow, int stmntCacheSize) {
+		m_jotyMessanger = jotyMessanger;
+		m_dataSourceName = dataSourceName;
+		m_sessionPreset = sessionPreset;
+		m_maxSize = maxSize;
+		m_maxTotalSize = maxTotalSize;
+		m_idleTimeout = idleTimeout * 1000L;
+		m_borrowTimeout = borrowTimeout * 1000L;
+		m_validateOnBorrow = validateOnBorrow;
+		m_stmntCacheSize = stmntCacheSize;
+		m_userPools = new HashMap<String, UserPool>();
+		if (m_maxSize > 0 && m_idleTimeout > 0) {
+			m_evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "JotyConnectionPoolEvictor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			long period = Math.max(m_idleTimeout / 2, 1000);
+			m_evictor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					evictIdle();
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Waits on the pool of the user, for a connection to be given back, up to
+	 * the deadline of the borrowing and no longer than {@code maxWait}
+	 * milliseconds. To be invoked holding the lock of the pool.
+	 */
+	private void awaitConnection(UserPool userPool, long deadline, long maxWait, String user) throws SQLException {
+		long toWait = deadline - System.currentTimeMillis();
+		if (toWait <= 0) {
+			m_borrowTimeouts.incrementAndGet();
+			throw new SQLException("Joty connection pool exhausted for user " + user + " !");
+		}
+		try {
+			userPool.wait(Math.min(toWait, maxWait));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a pooled connection");
+		}
+	}
+
+	/**
+	 * Gets a connection for the user: an idle one if available, a new one if
+	 * the pool of the user has not reached its maximum size (and the pools
+	 * together their total bound), otherwise the method waits for a
+	 * connection to be given back.
+	 * 
+	 * @throws SQLException
+	 *             if the waiting time expires or the dbms refuses the
+	 *             connection
+	 */
+	public Connection borrow(String user, String password, boolean autoCommit) throws SQLException, NamingException {
+		if (m_maxSize <= 0)
+			return newConnection(user, password, autoCommit);
+		long start = System.nanoTime();
+		UserPool userPool = userPool(user, password);
+		PooledConnection pooled = null;
+		boolean create = false;
+		boolean totalReached;
+		long deadline = System.currentTimeMillis() + m_borrowTimeout;
+		while (pooled == null && !create) {
+			totalReached = false;
+			synchronized (userPool) {
+				if (userPool.m_idle.size() > 0)
+					pooled = userPool.m_idle.removeFirst();
+				else if (userPool.m_size < m_maxSize && reserveTotal()) {
+					userPool.m_size++;
+					create = true;
+				} else if (userPool.m_size < m_maxSize)
+					totalReached = true;
+				else
+					awaitConnection(userPool, deadline, Long.MAX_VALUE, user);
+			}
+			if (totalReached && !releaseIdle(userPool))
+				synchronized (userPool) {
+					awaitConnection(userPool, deadline, m_totalWaitSlice, user);
+				}
+		}
+		Connection retVal = null;
+		try {
+			if (pooled != null && m_validateOnBorrow && !isValid(pooled.m_conn)) {
+				m_invalidCount.incrementAndGet();
+				closeQuietly(pooled.m_conn);
+				pooled = null;
+			}
+			retVal = pooled == null ? newConnection(user, password, autoCommit) : pooled.m_conn;
+			if (pooled != null && retVal.getAutoCommit() != autoCommit)
+				retVal.setAutoCommit(autoCommit);
+		} catch (SQLException e) {
+			shrink(userPool);
+			throw e;
+		} catch (NamingException e) {
+			shrink(userPool);
+			throw e;
+		} catch (RuntimeException e) {
+			shrink(userPool);
+			throw e;
+		}
+		long waited = System.nanoTime() - start;
+		m_borrowCount.incrementAndGet();
+		m_borrowWaitNanos.addAndGet(waited);
+		long max;
+		while (waited > (max = m_maxBorrowWaitNanos.get()) && !m_maxBorrowWaitNanos.compareAndSet(max, waited))
+			;
+		return retVal;
+	}
+
+	public void close() {
+		if (m_evictor != null)
+			m_evictor.shutdownNow();
+		synchronized (m_userPools) {
+			for (UserPool userPool : m_userPools.values())
+				synchronized (userPool) {
+					for (PooledConnection pooled : userPool.m_idle)
+						closeQuietly(pooled.m_conn);
+					userPool.m_size -= userPool.m_idle.size();
+					m_totalSize.addAndGet(-userPool.m_idle.size());
+					userPool.m_idle.clear();
+				}
+		}
+	}
+
+	private void closeQuietly(Connection conn) {
+		StatementCache statementCache;
+		synchronized (m_statementCaches) {
+			statementCache = m_statementCaches.remove(conn);
+		}
+		if (statementCache != null)
+			statementCache.close();
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			m_jotyMessanger.jotyMessage(e);
+		}
+	}
+
+	/**
+	 * Returns the cached {@code DataSource} object, looking it up on the first
+	 * invocation.
+	 */
+	public DataSource dataSource() throws NamingException {
+		DataSource retVal = m_dataSource;
+		if (retVal == null)
+			synchronized (this) {
+				if (m_dataSource == null)
+					m_dataSource = (DataSource) new InitialContext().lookup("java:/comp/env/" + m_dataSourceName);
+				retVal = m_dataSource;
+			}
+		return retVal;
+	}
+
+	/**
+	 * Closes the connections that have been idle for more than the idle timeout.
+	 */
+	public void evictIdle() {
+		long limit = System.currentTimeMillis() - m_idleTimeout;
+		UserPool[] userPools;
+		synchronized (m_userPools) {
+			userPools = m_userPools.values().toArray(new UserPool[m_userPools.size()]);
+		}
+		for (UserPool userPool : userPools) {
+			LinkedList<PooledConnection> expired = new LinkedList<PooledConnection>();
+			synchronized (userPool) {
+				for (Iterator<PooledConnection> it = userPool.m_idle.iterator(); it.hasNext();) {
+					PooledConnection pooled = it.next();
+					if (pooled.m_lastUse < limit) {
+						it.remove();
+						userPool.m_size--;
+						expired.add(pooled);
+					}
+				}
+				if (expired.size() > 0)
+					userPool.notifyAll();
+			}
+			for (PooledConnection pooled : expired) {
+				closeQuietly(pooled.m_conn);
+				m_totalSize.decrementAndGet();
+				m_evictedCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Gives the connection back to the pool of the user. Any pending work not
+	 * committed is rolled back; if this fails the connection is discarded.
+	 */
+	public void giveBack(String user, String password, Connection conn) {
+		if (conn == null)
+			return;
+		if (m_maxSize <= 0) {
+			closeQuietly(conn);
+			return;
+		}
+		UserPool userPool = userPool(user, password);
+		boolean reusable = true;
+		try {
+			if (conn.isClosed())
+				reusable = false;
+			else if (!conn.getAutoCommit())
+				conn.rollback();
+		} catch (SQLException e) {
+			reusable = false;
+		}
+		if (reusable)
+			synchronized (userPool) {
+				userPool.m_idle.addFirst(new PooledConnection(conn));
+				userPool.notify();
+			}
+		else {
+			closeQuietly(conn);
+			shrink(userPool);
+		}
+	}
+
+	private boolean isValid(Connection conn) {
+		try {
+			return conn.isValid(m_validationTimeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a new connection, out of the pool accounting, with the session
+	 * preset statement already executed.
+	 */
+	public Connection newConnection(String user, String password, boolean autoCommit) throws SQLException, NamingException {
+		Connection retVal = dataSource().getConnection(user, password);
+		try {
+			retVal.setAutoCommit(autoCommit);
+			if (m_sessionPreset != null) {
+				Statement stmnt = retVal.createStatement();
+				try {
+					stmnt.execute(m_sessionPreset);
+				} finally {
+					stmnt.close();
+				}
+			}
+		} catch (SQLException e) {
+			closeQuietly(retVal);
+			throw e;
+		}
+		m_createdCount.incrementAndGet();
+		return retVal;
+	}
+
+	/**
+	 * Closes the least recently used idle connection of a pool other than
+	 * {@code except}, so that the total bound leaves room for a new
+	 * connection.
+	 * 
+	 * @return false if no idle connection has been found
+	 */
+	private boolean releaseIdle(UserPool except) {
+		UserPool[] userPools;
+		synchronized (m_userPools) {
+			userPools = m_userPools.values().toArray(new UserPool[m_userPools.size()]);
+		}
+		PooledConnection pooled;
+		for (UserPool userPool : userPools) {
+			if (userPool == except)
+				continue;
+			pooled = null;
+			synchronized (userPool) {
+				if (userPool.m_idle.size() > 0) {
+					pooled = userPool.m_idle.removeLast();
+					userPool.m_size--;
+					userPool.notify();
+				}
+			}
+			if (pooled != null) {
+				closeQuietly(pooled.m_conn);
+				m_totalSize.decrementAndGet();
+				m_evictedCount.incrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Accounts a new connection in the total of the pools.
+	 * 
+	 * @return false if the total bound has been reached
+	 */
+	private boolean reserveTotal() {
+		int total;
+		do {
+			total = m_totalSize.get();
+			if (m_maxTotalSize > 0 && total >= m_maxTotalSize)
+				return false;
+		} while (!m_totalSize.compareAndSet(total, total + 1));
+		return true;
+	}
+
+	private void shrink(UserPool userPool) {
+		synchronized (userPool) {
+			userPool.m_size--;
+			m_totalSize.decrementAndGet();
+			userPool.notify();
+		}
+	}
+
+	/**
+	 * Returns the statement cache of the connection, creating it on the
+	 * first request, or null if the caching is disabled or the connection
+	 * doesn't outlive the request.
+	 */
+	public StatementCache statementCache(Connection conn) {
+		if (m_stmntCacheSize <= 0 || m_maxSize <= 0 || conn == null)
+			return null;
+		synchronized (m_statementCaches) {
+			StatementCache retVal = m_statementCaches.get(conn);
+			if (retVal == null) {
+				retVal = new StatementCache(this, conn, m_stmntCacheSize, m_jotyMessanger);
+				m_statementCaches.put(conn, retVal);
+			}
+			return retVal;
+		}
+	}
+
+	public String statistics() {
+		long borrowCount = m_borrowCount.get();
+		return String.format("Connection pool : borrowed = %1$d, average wait = %2$.3f ms, max wait = %3$.3f ms, timeouts = %4$d, created = %5$d, evicted = %6$d, invalid = %7$d, statement cache hits = %8$d, misses = %9$d", 
+								borrowCount, 
+								borrowCount == 0 ? 0.0 : m_borrowWaitNanos.get() / 1e6 / borrowCount, 
+								m_maxBorrowWaitNanos.get() / 1e6, 
+								m_borrowTimeouts.get(), 
+								m_createdCount.get(), 
+								m_evictedCount.get(), 
+								m_invalidCount.get(), 
+								m_stmntCacheHits.get(), 
+								m_stmntCacheMisses.get());
+	}
+
+	private UserPool userPool(String user, String password) {
+		String key = user + "\n" + password;
+		UserPool retVal;
+		synchronized (m_userPools) {
+			retVal = m_userPools.get(key);
+			if (retVal == null) {
+				retVal = new UserPool();
+				m_userPools.put(key, retVal);
+			}
+		}
+		return retVal;
+	}
+
+}
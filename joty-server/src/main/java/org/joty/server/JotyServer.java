@@ -20,37 +20,50 @@
 package org.joty.server;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.sql.*;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
-import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.sql.DataSource;
+import javax.xml.XMLConstants;
 import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import org.joty.access.Accessor;
 import org.joty.access.BirtManager;
 import org.joty.access.DbManager;
 import org.joty.access.Instantiator;
 import org.joty.access.Logger;
+import org.joty.access.MetadataCache;
+import org.joty.access.MetadataCache.ColumnMetadata;
 import org.joty.access.MethodExecutor;
 import org.joty.access.PostStatement;
+import org.joty.access.ReportCache;
 import org.joty.access.DbManager.DbConnectionGrabber;
 import org.joty.common.*;
 import org.joty.common.ConfigFile.ConfigException;
 import org.joty.common.BasicPostStatement.Item;
-import org.joty.common.ReportManager.Parameter;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
+import org.joty.server.ReportJobQueue.ReportJob;
+import org.xml.sax.SAXException;
 
 /**
  * It is the Joty Server implementation.
@@ -62,16 +75,27 @@ import org.w3c.dom.Node;
  * <p>
  * the server looks in the requesting Url for the query string parameter
  * 'command' that can worth as follow: when the request is
- * forwarded as http GET admitted values are {config, end}, when the request is
- * a http POST possible values are {query, exec, trans, report}.
+ * forwarded as http GET admitted values are {config, end, reportStatus,
+ * reportFetch}, when the request is a http POST possible values are {query,
+ * exec, trans, report, reportSubmit}.
  * <p>
  * In the case of 'config' value for the Joty command another query string
  * parameter comes in to play: 'type' = {conf, confX, jotyLang, appLang}. Even
  * for other Joty commands other query string parameters play a role: this can
- * be encountered along the {@code doPost} implementation.
+ * be encountered along the {@code doPost} implementation. The responses for
+ * the types conf, jotyLang and appLang are prepared at initialization time
+ * and carry an entity tag, so that the client can revalidate the copy it
+ * holds (see {@link ConfigPayload}).
  * <p>
  * As the WebClient the server uses UTF8 encoding a part from binary content for
  * which a single byte encoding is used.
+ * <p>
+ * The servlet instance is shared by the concurrent requests: the members of
+ * the class hold only the configuration and the objects built at
+ * initialization time, whereas all the state of a request lives in a
+ * {@code RequestContext} object that is passed along the serving methods.
+ * 
+ * @see RequestContext
  * 
  */
 public class JotyServer extends HttpServlet implements JotyMessenger {
@@ -81,22 +105,181 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * for the {@code PrintWriter} used that adds a StringBuilder as further
 	 * delegate, that will grow in its content as the PrintWriter object receives content.
 	 */
-	class OutPrinterWrapper {
+	protected class OutPrinterWrapper {
 		PrintWriter m_writer;
+		StringBuilder m_responseText;
 
-		OutPrinterWrapper() {
-			m_writer = null;
-		};
-
-		OutPrinterWrapper(PrintWriter val) {
-			m_writer = val;
+		OutPrinterWrapper(RequestContext ctx) {
+			m_writer = ctx.m_outWriter;
+			m_responseText = ctx.m_responseText;
 		};
 
-		void append(String text) {
+		void append(CharSequence text) {
 			m_writer.append(text);
 			if (m_debug)
 				m_responseText.append(text);
 		}
+
+		/**
+		 * Appends the content of the chunk and, if it is large enough, sends
+		 * it to the client and empties it.
+		 * 
+		 * @return true if the chunk has been sent
+		 */
+		boolean appendChunk(StringBuilder chunk, boolean force) {
+			boolean retVal = force || chunk.length() >= m_responseChunkSize;
+			if (retVal) {
+				append(chunk);
+				m_writer.flush();
+				chunk.setLength(0);
+			}
+			return retVal;
+		}
+	}
+
+	/**
+	 * The {@code DbConnectionGrabber} implementation bound to a single request:
+	 * the connection acquired is stored in the {@code m_conn} member of the
+	 * {@code RequestContext} object and the credentials are taken from there.
+	 * <p>
+	 * The connection referenced by the request context is borrowed from the
+	 * {@code ConnectionPool} object and given back to it on release, whereas
+	 * a connection requested without setting the container reference is a
+	 * fresh one, the life of which is up to the caller.
+	 * 
+	 * @see ConnectionPool
+	 */
+	class RequestConnGrabber implements DbConnectionGrabber {
+		RequestContext m_ctx;
+
+		RequestConnGrabber(RequestContext ctx) {
+			m_ctx = ctx;
+		}
+
+		@Override
+		public Connection acquireConnection() throws SQLException, NamingException {
+			return acquireConnection(false);
+		}
+
+		@Override
+		public Connection acquireConnection(boolean autoCommit) throws SQLException, NamingException {
+			return acquireConnection(autoCommit, true);
+		}
+
+		@Override
+		public Connection acquireConnection(boolean autoCommit, boolean setContainerReference) throws SQLException, NamingException {
+			if (! setContainerReference)
+				return m_connectionPool.newConnection(m_ctx.m_user, m_ctx.m_password, autoCommit);
+			if (m_ctx.m_conn == null)
+				m_ctx.m_conn = m_connectionPool.borrow(m_ctx.m_user, m_ctx.m_password, autoCommit);
+			return m_ctx.m_conn;
+		}
+
+		@Override
+		public void releaseConnection() {
+			if (m_ctx.m_conn != null) {
+				m_connectionPool.giveBack(m_ctx.m_user, m_ctx.m_password, m_ctx.m_conn);
+				m_ctx.m_conn = null;
+			}
+		}
+	}
+
+	/**
+	 * Collects consecutive statements of a 'trans' request so that they reach
+	 * the dbms by a single {@code executeBatch} invocation. Statements having
+	 * values to be bound are grouped only if their text is the same, so that
+	 * they share a single {@code PreparedStatement} object; statements with no
+	 * values (that is the sql built by the client) are grouped in the batch of
+	 * a plain {@code Statement} object.
+	 * 
+	 * @see JotyServer#dbExecute(RequestContext)
+	 */
+	class StatementBatch {
+		RequestContext m_ctx;
+		String m_preparedSql;
+		Vector<String> m_sqls = new Vector<String>();
+		Vector<List<Object>> m_bindValues = new Vector<List<Object>>();
+
+		StatementBatch(RequestContext ctx) {
+			m_ctx = ctx;
+		}
+
+		/**
+		 * Adds the statement to the batch; the pending statements are executed
+		 * first if they have a different shape or if the batch is full.
+		 * 
+		 * @return false if the execution of the pending statements has failed
+		 */
+		boolean add(String sql, List<Object> bindValues) {
+			boolean prepared = bindValues != null && bindValues.size() > 0;
+			if (m_sqls.size() > 0 && (prepared ? !sql.equals(m_preparedSql) : m_preparedSql != null))
+				if (!flush())
+					return false;
+			m_sqls.add(sql);
+			if (prepared) {
+				m_preparedSql = sql;
+				m_bindValues.add(new ArrayList<Object>(bindValues));
+			}
+			return m_sqls.size() < m_stmntBatchSize || flush();
+		}
+
+		/**
+		 * Executes the pending statements.
+		 * 
+		 * @return true if all the statements have been executed with success
+		 */
+		boolean flush() {
+			int size = m_sqls.size();
+			if (size == 0)
+				return true;
+			boolean success = true;
+			long start = System.nanoTime();
+			Statement stmnt = null;
+			try {
+				if (m_logDbActions)
+					for (int i = 0; i < size; i++)
+						Logger.appendToLog(m_dbLogName, m_preparedSql == null ? m_sqls.get(i) : (m_sqls.get(i) + "\n    bound values : " + m_bindValues.get(i)), false, m_ctx.m_user, false);
+				if (m_preparedSql == null) {
+					stmnt = m_ctx.m_conn.createStatement();
+					for (String sql : m_sqls)
+						stmnt.addBatch(sql);
+				} else {
+					PreparedStatement prepared = prepareStatement(m_ctx, m_preparedSql, null);
+					stmnt = prepared;
+					for (List<Object> values : m_bindValues) {
+						Accessor.bindParams(prepared, values);
+						prepared.addBatch();
+					}
+				}
+				for (int count : stmnt.executeBatch())
+					if (count == Statement.EXECUTE_FAILED)
+						success = false;
+				if (!success)
+					m_ctx.m_errorCarrier.m_exceptionMsg.append("Statement batch execution failed !");
+			} catch (SQLException e) {
+				jotyWarning("Sql batch : \n " + m_sqls.toString());
+				jotyMessage(e);
+				m_ctx.m_errorCarrier.setSqlException(e);
+				success = false;
+			} finally {
+				if (stmnt != null) {
+					if (m_preparedSql == null)
+						try {
+							stmnt.close();
+						} catch (SQLException e) {
+							jotyMessage(e);
+						}
+					else
+						releaseStatement(m_ctx, (PreparedStatement) stmnt, m_preparedSql, null, success);
+				}
+			}
+			if (m_logDbActions)
+				Logger.appendToLog(m_dbLogName, String.format("Batch of %1$d statements %2$s in %3$.3f ms", size, success ? "executed" : "failed", (System.nanoTime() - start) / 1e6), false, m_ctx.m_user, false);
+			m_sqls.clear();
+			m_bindValues.clear();
+			m_preparedSql = null;
+			return success;
+		}
 	}
 
 	final String MY_USERUSERNAME = "me.userName";
@@ -104,29 +287,18 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	final String MY_SHK = "me.sharingKey";
 	private static final long serialVersionUID = 1L;
 	final String m_genIDtheme = "GenID";
-	private PrintWriter m_outWriter;
-	protected Connection m_conn;
-	private String m_user;
-	private String m_password;
-
-	protected String m_command;
-	protected Vector<PostStatement> m_postStatements;
-	protected PostStatement m_queryDefPostStatement;
-	protected Vector<byte[]> m_bytesElems;
-	protected boolean m_success;
-	protected ErrorCarrier m_errorCarrier;
-	/**
-	 * holds the generated values resulting by the execution of {@link #dbExecute()}
-	 */
-	protected Vector<String> m_returnedValues;
-	private String m_sessionID;
-	private byte[] m_bytes;
 	protected ConfigFile m_configuration;
 	protected ConfigFile m_serverConfig;
-	private long m_autoIdVal;
-	private String m_autoId;
 	private DbManager m_dbManager;
+	protected ConnectionPool m_connectionPool;
 	private String m_dbmsSessionPreset;
+	protected int m_responseChunkSize;
+	protected int m_queryFetchSize;
+	protected int m_compressionThreshold;
+	/** the maximum number of statements executed by a single jdbc batch in a 'trans' request (less than 2 disables the batching) */
+	protected int m_stmntBatchSize;
+	/** the compiled JotyRequest.xsd, available in debug mode */
+	protected Schema m_requestSchema;
 	private int m_intDigitDim;
 	private boolean m_configurationLoaded;
 	private boolean m_fieldOrdinality;
@@ -137,24 +309,37 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	protected String m_dbLogName;
 	protected boolean m_use_BIRT;
 	protected BirtManager m_BirtManager;
-	private ReportManager m_reportManager;
-	CaselessStringKeyMap<Integer> m_smallBlobs;
-	private int m_statementIndex;
-	StringBuilder m_responseText;
-	protected Accessor m_accessor;
+	/** the builder of the reports submitted by the 'reportSubmit' command */
+	protected ReportJobQueue m_reportJobs;
+	/** the outputs of the reports, reused for the identical launches */
+	protected ReportCache m_reportCache;
+	/**
+	 * the idle {@code Accessor} instances: each request borrows one of them for
+	 * the time of its serving.
+	 * 
+	 * @see #acquireAccessor(RequestContext)
+	 */
+	protected ConcurrentLinkedQueue<Accessor> m_accessorPool;
+	/**
+	 * the description of the columns of the result sets rendered and of the
+	 * tables in which {@code addNewAndGetID} inserts records
+	 */
+	protected MetadataCache m_metadataCache;
+	private Boolean m_generatedKeysSupport;
+	protected boolean m_accessorAvailable;
 	protected boolean m_remoteAccessor;
-	protected ParamContext m_queryDefParamContext;
 	private String m_paginationPageSize;
 	private String m_paginationQuery;
-	protected DbConnectionGrabber m_connGrabber;
-	protected MethodExecutor m_methodExecutor;
+	private String m_keysetQuery;
+	private boolean m_nullsFirstInAscOrder;
 	private CaselessStringKeyMap<ConfigFile> m_JotyLangs;
 	private CaselessStringKeyMap<ConfigFile> m_JotyAppLangs;
+	/** the prepared responses to the 'config' command, by {@link #configPayloadKey} */
+	private HashMap<String, ConfigPayload> m_configPayloads;
 	private String m_languages;
 	private Vector<String> m_langVector;
 	private boolean m_shared;
 	private String m_sharingKeyField;
-	private String m_sharingKey;
 	private LangLiteralRetCodeMapper m_langLiteralRetCodeMapper;
 	protected boolean m_msSqlServer;
 	private boolean m_hostLogNameSet;
@@ -162,36 +347,178 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 
 	public JotyServer() {
 		super();
-		m_postStatements = new Vector<PostStatement>();
-		m_bytesElems = new Vector<byte[]>();
-		m_returnedValues = new Vector<String>();
-		m_smallBlobs = new CaselessStringKeyMap<Integer>(this);
-		m_sessionID = "";
-		m_queryDefPostStatement = new PostStatement(this);
+		m_accessorPool = new ConcurrentLinkedQueue<Accessor>();
 		Utilities.setMessanger(this);
 	}
 
+	/**
+	 * Makes an {@code Accessor} instance available for the request: an idle
+	 * instance is taken from the pool if any, otherwise a new one is created.
+	 * In both cases the instance is bound to the error carrier and to the
+	 * connection grabber of the request.
+	 * 
+	 * @see #releaseAccessor(RequestContext)
+	 */
+	protected Accessor acquireAccessor(RequestContext ctx) throws ClassNotFoundException {
+		Accessor accessor = m_accessorPool.poll();
+		if (accessor == null)
+			accessor = createAccessor(ctx.m_errorCarrier, ctx.m_connGrabber);
+		else {
+			accessor.m_errorCarrier = ctx.m_errorCarrier;
+			accessor.setDbConnectionGrabber(ctx.m_connGrabber);
+		}
+		if (accessor != null)
+			accessor.setSharingKey(null);
+		ctx.m_accessor = accessor;
+		return accessor;
+	}
+
 	/**
 	 * This method manages the creation of a record when no Insert sql statement
 	 * has been rendered by the client but only the table and the
-	 * auto-incrementing id field are indicated and, furthermore, the jdbc
-	 * driver is expected to support the creation of records by means of
-	 * {@code moveToInsertRow} and {@code insertRow} invocations of the
-	 * ResultSet object, built on the specified database table.
+	 * auto-incrementing id field are indicated.
+	 * <p>
+	 * If the jdbc driver supports the retrieving of generated keys, a
+	 * parameterized insert statement is built on the items matching the
+	 * columns of the table, the values are bound according to the sql type of
+	 * the column and the id is got by {@code getGeneratedKeys}. The columns of
+	 * the table are retrieved only once, by a query that returns no record.
+	 * <p>
+	 * Otherwise the method falls back to {@code addNewAndGetIDByResultSet}.
 	 * 
+	 * @param ctx
+	 *            the request context
 	 * @param postedStmnt
 	 *            the BasicPostStatement object containing needed information
 	 * @return the auto generated id long value.
 	 * @throws SQLException
 	 * @throws NamingException
 	 * 
-	 * @see #dbExecute()
+	 * @see #dbExecute(RequestContext)
+	 */
+	private long addNewAndGetID(RequestContext ctx, BasicPostStatement postedStmnt) throws SQLException, NamingException {
+		boolean ownConnection = ctx.m_conn == null;
+		ctx.m_connGrabber.acquireConnection();
+		try {
+			if (m_generatedKeysSupport == null)
+				m_generatedKeysSupport = ctx.m_conn.getMetaData().supportsGetGeneratedKeys();
+			return m_generatedKeysSupport ? addNewAndGetIDByGeneratedKeys(ctx, postedStmnt) : addNewAndGetIDByResultSet(ctx, postedStmnt);
+		} finally {
+			if (ownConnection)
+				ctx.m_connGrabber.releaseConnection();
+		}
+	}
+
+	private long addNewAndGetIDByGeneratedKeys(RequestContext ctx, BasicPostStatement postedStmnt) throws SQLException, NamingException {
+		CaselessStringKeyMap<String> setFields = new CaselessStringKeyMap<String>(this);
+		for (Item item : postedStmnt.m_items)
+			setFields.put(item.name, item.valueLiteral);
+		Vector<ColumnMetadata> columns = new Vector<ColumnMetadata>();
+		StringBuilder sql = new StringBuilder("Insert into ").append(postedStmnt.m_genTable).append(" (");
+		StringBuilder values = new StringBuilder(") values (");
+		for (ColumnMetadata column : m_metadataCache.tableColumns(ctx.m_conn, postedStmnt.m_genTable))
+			if (column.m_insertable && setFields.get(column.m_label) != null && insertSetter(column) != null) {
+				if (columns.size() > 0) {
+					sql.append(", ");
+					values.append(", ");
+				}
+				sql.append(column.m_label);
+				values.append("?");
+				columns.add(column);
+			}
+		if (columns.size() == 0)
+			return addNewAndGetIDByResultSet(ctx, postedStmnt);
+		sql.append(values).append(")");
+		long retVal = 0;
+		String sqlText = sql.toString();
+		boolean success = false;
+		PreparedStatement stmnt = prepareStatement(ctx, sqlText, ctx.m_autoId);
+		try {
+			int index = 1;
+			for (ColumnMetadata column : columns)
+				setInsertParam(stmnt, index++, column, setFields.get(column.m_label));
+			if (m_logDbActions)
+				Logger.appendToLog(m_dbLogName, sqlText, false, ctx.m_user, false);
+			stmnt.executeUpdate();
+			ResultSet rset = stmnt.getGeneratedKeys();
+			if (rset.next())
+				retVal = rset.getLong(1);
+			rset.close();
+			success = true;
+		} finally {
+			releaseStatement(ctx, stmnt, sqlText, ctx.m_autoId, success);
+			if (!success)
+				m_metadataCache.invalidateTable(postedStmnt.m_genTable);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Classifies the column as {@code addNewAndGetIDByResultSet} does in
+	 * choosing the updating method.
+	 * 
+	 * @return the class of the value to be bound or null if the type is not
+	 *         managed
+	 */
+	private Class<?> insertSetter(ColumnMetadata column) {
+		switch (column.m_jotyType) {
+			case JotyTypes._text:
+				return String.class;
+			case JotyTypes._single:
+				return Float.class;
+			case JotyTypes._double:
+				return Double.class;
+			case JotyTypes._long:
+				return Long.class;
+			case JotyTypes._int:
+				return Integer.class;
+			case JotyTypes._date:
+			case JotyTypes._dateTime:
+				return Date.class;
+		}
+		return null;
+	}
+
+	private void setInsertParam(PreparedStatement stmnt, int index, ColumnMetadata column, String valueStr) throws SQLException {
+		if (valueStr.compareToIgnoreCase("null") == 0) {
+			stmnt.setNull(index, column.m_sqlType);
+			return;
+		}
+		Class<?> setter = insertSetter(column);
+		if (setter == String.class)
+			stmnt.setString(index, valueStr);
+		else if (setter == Float.class)
+			stmnt.setFloat(index, Float.parseFloat(valueStr));
+		else if (setter == Double.class)
+			stmnt.setDouble(index, Double.parseDouble(valueStr));
+		else if (setter == Long.class)
+			stmnt.setLong(index, Long.parseLong(valueStr));
+		else if (setter == Integer.class)
+			stmnt.setInt(index, Integer.parseInt(valueStr));
+		else
+			stmnt.setDate(index, Date.valueOf(valueStr));
+	}
+
+	/**
+	 * The fall back of {@code addNewAndGetID} for the drivers that don't
+	 * support the retrieving of generated keys: the record is created by means
+	 * of {@code moveToInsertRow} and {@code insertRow} invocations of the
+	 * ResultSet object, built on the specified database table.
 	 */
-	private long addNewAndGetID(BasicPostStatement postedStmnt) throws SQLException, NamingException {
+	private long addNewAndGetIDByResultSet(RequestContext ctx, BasicPostStatement postedStmnt) throws SQLException, NamingException {
 		Statement statement;
 		long retVal = 0;
-		m_connGrabber.acquireConnection();
-		statement = m_conn.createStatement();
+		statement = ctx.m_conn.createStatement();
+		try {
+			retVal = insertByResultSet(ctx, postedStmnt, statement);
+		} finally {
+			statement.close();
+		}
+		return retVal;
+	}
+
+	private long insertByResultSet(RequestContext ctx, BasicPostStatement postedStmnt, Statement statement) throws SQLException {
+		long retVal = 0;
 		String sql = String.format("Select %1$s.* from %1$s", postedStmnt.m_genTable);
 		ResultSet result = statement.executeQuery(sql);
 		ResultSetMetaData metadata = result.getMetaData();
@@ -257,9 +584,7 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		}
 		result.insertRow();
 		result.last();
-		retVal = result.getInt(m_autoId);
-		statement.close();
-		m_connGrabber.releaseConnection();
+		retVal = result.getInt(ctx.m_autoId);
 		return retVal;
 	}
 
@@ -268,41 +593,41 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		return valueStr == null ? defTruth : valueStr.equals("y");
 	}
 
-	protected void beginTrans() throws SQLException, NamingException {
-		m_connGrabber.acquireConnection();
+	protected void beginTrans(RequestContext ctx) throws SQLException, NamingException {
+		ctx.m_connGrabber.acquireConnection();
 	}
 
 	/**
-	 * Envelopes the content of the {@code m_returnedValues} member in a convenient xml structure.
+	 * Envelopes the content of the {@code m_returnedValues} member of the request context in a convenient xml structure.
 	 * 
 	 * @return the rendered xml text.
 	 *
-	 * @see #dbExecute()
-	 * @see #m_returnedValues
+	 * @see #dbExecute(RequestContext)
+	 * @see RequestContext#m_returnedValues
 	 */
-	protected String buildXmlResult() {
+	protected String buildXmlResult(RequestContext ctx) {
 		StringBuilder retVal = new StringBuilder();
 		retVal.append("<Result><Value>");
-		retVal.append(m_success ? "Ok" : "Nok");
+		retVal.append(ctx.m_success ? "Ok" : "Nok");
 		retVal.append("</Value><Reason>");
-		retVal.append(m_xmlEncoder.encode(m_errorCarrier.m_exceptionMsg.toString(), false));
+		retVal.append(m_xmlEncoder.encode(ctx.m_errorCarrier.m_exceptionMsg.toString(), false));
 		retVal.append("</Reason>");
 		String openTag, closeTag;
-		if (m_success) {
+		if (ctx.m_success) {
 			retVal.append(String.format("<%1$s>", m_genIDtheme + "s"));
-			for (int i = 0; i < m_returnedValues.size(); i++) {
+			for (int i = 0; i < ctx.m_returnedValues.size(); i++) {
 				openTag = String.format("<%1$s>", m_genIDtheme);
 				closeTag = String.format("</%1$s>", m_genIDtheme);
 				retVal.append(openTag);
-				retVal.append(String.valueOf(m_returnedValues.get(i)));
+				retVal.append(String.valueOf(ctx.m_returnedValues.get(i)));
 				retVal.append(closeTag);
 			}
 			retVal.append(String.format("</%1$s>", m_genIDtheme + "s"));
 		} else
-			retVal.append("<Code>" + m_errorCarrier.code + "</Code>");
+			retVal.append("<Code>" + ctx.m_errorCarrier.code + "</Code>");
 		retVal.append("</Result>");
-		if (!m_success)
-			logUncodedFailureReport(m_errorCarrier.m_exceptionMsg.toString());
+		if (!ctx.m_success)
+			logUncodedFailureReport(ctx.m_errorCarrier.m_exceptionMsg.toString());
 		return retVal.toString();
 	}
 
@@ -315,44 +640,69 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		return m_configurationLoaded;
 	}
 
-	protected boolean checkCredentials(HttpServletRequest request, String command, boolean sessionIsALive) throws IOException {
+	protected boolean checkCredentials(RequestContext ctx, HttpServletRequest request, String command, boolean sessionIsALive) throws IOException {
 		HttpSession session = request.getSession(true);
-		m_user = null;
-		m_password = null;
+		ctx.m_user = null;
+		ctx.m_password = null;
 		if (sessionIsALive) {
-			m_user = (String) session.getAttribute(MY_USERUSERNAME);
-			m_password = (String) session.getAttribute(MY_PWD);
+			ctx.m_user = (String) session.getAttribute(MY_USERUSERNAME);
+			ctx.m_password = (String) session.getAttribute(MY_PWD);
 			if (m_shared)
-				m_sharingKey = (String) session.getAttribute(MY_SHK);
+				ctx.m_sharingKey = (String) session.getAttribute(MY_SHK);
 		}
 		if (command != null && command.equals("login")) {
-			m_user = request.getParameter("user");
-			m_password = request.getParameter("pwd");
-			session.setAttribute(MY_USERUSERNAME, m_user);
-			session.setAttribute(MY_PWD, m_password);
+			ctx.m_user = request.getParameter("user");
+			ctx.m_password = request.getParameter("pwd");
+			session.setAttribute(MY_USERUSERNAME, ctx.m_user);
+			session.setAttribute(MY_PWD, ctx.m_password);
 			if (m_shared) {
-				m_sharingKey = request.getParameter("shK");
-				session.setAttribute(MY_SHK, m_sharingKey);
+				ctx.m_sharingKey = request.getParameter("shK");
+				session.setAttribute(MY_SHK, ctx.m_sharingKey);
 			}
 		}
-		return m_user != null && !m_user.isEmpty();
+		return ctx.m_user != null && !ctx.m_user.isEmpty();
 	}
 
-	private boolean checkDbManager() {
+	/**
+	 * Checks that the {@code DbManager} class has been instantiated at start
+	 * up and, if so, provides the request with its own instance of it.
+	 */
+	private boolean checkDbManager(RequestContext ctx) {
 		boolean retVal = m_dbManager != null;
+		if (retVal && ctx.m_dbManager == null)
+			try {
+				ctx.m_dbManager = Instantiator.createDbManager(ctx.m_errorCarrier, m_configuration);
+				retVal = ctx.m_dbManager != null;
+			} catch (ClassNotFoundException e) {
+				jotyMessage(e);
+				retVal = false;
+			}
 		if (!retVal) {
-			m_errorCarrier.m_exceptionMsg.append("DbManager object not instantiated - check the log about the server start up");
-			m_success = false;
+			ctx.m_errorCarrier.m_exceptionMsg.append("DbManager object not instantiated - check the log about the server start up");
+			ctx.m_success = false;
 		}
 		return retVal;
 	}
 
-	protected boolean checkRequestPostContent(String postedContent) {
-		boolean retVal = Utilities.xsdValidate(Utilities.getXmlDocument(postedContent), 
-												getServletContext().getRealPath("/JotyRequest.xsd"), 
-												"request");
+	/**
+	 * Validates the request body against the JotyRequest.xsd schema, compiled
+	 * once at the start up.
+	 */
+	protected boolean checkRequestPostContent(RequestContext ctx, byte[] postedContent) {
+		boolean retVal = false;
+		if (m_requestSchema == null)
+			jotyWarning("request : schema not available !");
+		else
+			try {
+				m_requestSchema.newValidator().validate(new StreamSource(new ByteArrayInputStream(postedContent)));
+				retVal = true;
+			} catch (SAXException e) {
+				jotyWarning("request : schema validation failed !\n" + e.getMessage());
+			} catch (IOException e) {
+				jotyMessage(e);
+			}
 		if (!retVal)
-			m_errorCarrier.m_exceptionMsg.append("Invalid request format");
+			ctx.m_errorCarrier.m_exceptionMsg.append("Invalid request format");
 		return retVal;
 	}
 
@@ -363,46 +713,84 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * returned, later (see {@code renderXmlFooter}), to the client for future
 	 * session-identifying requests.
 	 * 
+	 * @param ctx
+	 *            the request context
 	 * @param request
 	 *            the request object
 	 * @return true if session is still alive
 	 * @throws IOException
 	 */
-	private boolean checkSession(HttpServletRequest request) throws IOException {
+	private boolean checkSession(RequestContext ctx, HttpServletRequest request) throws IOException {
 		HttpSession session = request.getSession(true);
 		boolean expiredOrNew = session.isNew();
 		if (!request.isRequestedSessionIdFromCookie())
-			m_sessionID = session.getId();
+			ctx.m_sessionID = session.getId();
 		return !expiredOrNew;
 	}
 
-	protected boolean commit() {
+	protected boolean commit(RequestContext ctx) {
 		boolean retVal = false;
 		Exception exception = null;
 		try {
-			m_conn.commit();
+			ctx.m_conn.commit();
 			retVal = true;
 		} catch (SecurityException e) {
 			exception = e;
 		} catch (IllegalStateException e) {
 			exception = e;
 		} catch (SQLException e) {
-			m_errorCarrier.setSqlErrorCode(e);
+			ctx.m_errorCarrier.setSqlErrorCode(e);
 			exception = e;
 		}
 		if (!retVal) {
 			if (exception != null) {
 				jotyMessage(exception);
-				m_errorCarrier.m_exceptionMsg.append(exception.getMessage());
+				ctx.m_errorCarrier.m_exceptionMsg.append(exception.getMessage());
 			}
-			rollback();
+			rollback(ctx);
 		}
 		return retVal;
 	}
 
+	/**
+	 * Creates a new {@code Accessor} instance, ready to be used in the
+	 * serving of requests.
+	 */
+	protected Accessor createAccessor(ErrorCarrier errorCarrier, DbConnectionGrabber connGrabber) throws ClassNotFoundException {
+		Accessor accessor = Instantiator.createAccessor(this, errorCarrier, m_serverConfig, m_configuration, connGrabber);
+		if (accessor != null) {
+			accessor.setPaginationQuery(m_paginationQuery, m_paginationPageSize);
+			accessor.setKeysetQuery(m_keysetQuery, m_nullsFirstInAscOrder);
+			accessor.setLangLiteralRetCodeMapper(m_langLiteralRetCodeMapper);
+			accessor.setParamBinding(true);
+			accessor.setReportCache(m_reportCache);
+		}
+		return accessor;
+	}
+
+	/**
+	 * Creates the context for the request being served and provides it with
+	 * the objects that cannot be shared among concurrent requests.
+	 * <p>
+	 * If the 'compressionThreshold' item of the 'JotyServer.xml' file is
+	 * positive and the client accepts a compressed content, the writer of the
+	 * response is based on a {@code ResponseOutputStream} object.
+	 */
+	protected RequestContext createRequestContext(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String encoding = m_compressionThreshold > 0 ? ResponseOutputStream.chooseEncoding(request.getHeader("Accept-Encoding")) : null;
+		PrintWriter writer = encoding == null ? 
+								response.getWriter() : 
+								new PrintWriter(new OutputStreamWriter(new ResponseOutputStream(response, encoding, m_compressionThreshold), "UTF-8"));
+		RequestContext ctx = new RequestContext(this, writer);
+		ctx.m_connGrabber = new RequestConnGrabber(ctx);
+		ctx.m_reportManager = new ReportManager();
+		ctx.m_reportManager.setXmlEncoder(m_xmlEncoder);
+		return ctx;
+	}
+
 	/**
 	 * Performs the execution of the statements held by the
-	 * {@code m_postStatements} member either the transaction is the case or a
+	 * {@code m_postStatements} member of the request context either the transaction is the case or a
 	 * single statement is to be executed. For each PostStatement object found
 	 * in the vector, it calls
 	 * {@link org.joty.access.Accessor#setPostStatement(PostStatement, boolean)} by means of
@@ -422,97 +810,142 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * <p>
 	 * In all other case suitable actions take place; these cases manage old
 	 * features of the previous version of Joty that have been made surviving.
+	 * <p>
+	 * In a transaction, consecutive statements that only need to be executed
+	 * (no method, no id generation, no verification, no binary content and no
+	 * non-managed rollback action) are collected by a {@code StatementBatch}
+	 * object, that is flushed before any other statement is served: this
+	 * keeps the order of the 'gen-id' substitutions and leaves the
+	 * non-managed rollback actions working statement by statement.
 	 * 
+	 * @param ctx
+	 *            the request context
 	 * @throws SQLException
 	 * @throws NamingException
 	 * 
 	 * @see MethodExecutor
-	 * @see #executeSql(String)
+	 * @see #executeSql(RequestContext, String)
 	 * @see PostStatement#nameSubst(Accessor, String)
-	 * @see #idSqlSubst(String)
+	 * @see #idSqlSubst(RequestContext, String)
 	 */
-	protected void dbExecute() throws SQLException, NamingException {
-		if (m_command.equals("trans"))
-			beginTrans();
+	protected void dbExecute(RequestContext ctx) throws SQLException, NamingException {
+		if (ctx.m_command.equals("trans"))
+			beginTrans(ctx);
 		String getTable;
 		String sqlStmnt;
 		String verifyExpr;
 		PostStatement postedStmnt = null;
 		HashSet<Integer> nonManagedRollbackIndexes = new HashSet<Integer>();
-		m_statementIndex = 0;
-		if (m_accessor != null)
-			m_accessor.clearParamContext();
-		for (int i = 0; i < m_postStatements.size(); i++) {
-			postedStmnt = (PostStatement) m_postStatements.get(i);
+		Accessor accessor = ctx.m_accessor;
+		ctx.m_statementIndex = 0;
+		if (accessor != null)
+			accessor.clearParamContext();
+		StatementBatch batch = createStatementBatch(ctx);
+		boolean batchable;
+		for (int i = 0; i < ctx.m_postStatements.size(); i++) {
+			postedStmnt = (PostStatement) ctx.m_postStatements.get(i);
 			if (postedStmnt.m_nonManagedRollbackActionIden >= 0) {					
-				if (m_accessor != null)
-					m_accessor.setPostStatement(postedStmnt, true);
+				batchable = batch != null && isBatchable(ctx, postedStmnt);
+				if (batch != null && !batchable) {
+					ctx.m_success = batch.flush();
+					if (!ctx.m_success)
+						break;
+				}
+				if (accessor != null)
+					accessor.setPostStatement(postedStmnt, true);
 				getTable = postedStmnt.m_genTable;
 				verifyExpr = postedStmnt.m_verifyExpr;
 				sqlStmnt = postedStmnt.m_sql;
-				m_autoId = postedStmnt.m_autoId;
+				ctx.m_autoId = postedStmnt.m_autoId;
 				if (postedStmnt.m_method.length() > 0 && postedStmnt.m_AccessorContext.length() == 0)
-					m_success = m_methodExecutor.exec(postedStmnt, m_command.equals("exec"), m_conn);
+					ctx.m_success = methodExecutor(ctx).exec(postedStmnt, ctx.m_command.equals("exec"), ctx.m_conn);
 				else if (postedStmnt.m_autoId.length() > 0) {
 					long id;
 					if (sqlStmnt.length() > 0) {
-						m_autoIdVal = 0;
-						m_success = executeSql(idSqlSubst(postedStmnt.nameSubst(m_accessor, sqlStmnt)));
-						id = m_autoIdVal;
+						ctx.m_autoIdVal = 0;
+						ctx.m_success = executeSql(ctx, idSqlSubst(ctx, postedStmnt.nameSubst(accessor, sqlStmnt)));
+						id = ctx.m_autoIdVal;
 					} else
-						id = addNewAndGetID(postedStmnt);
-					m_success &= id != 0;
-					if (!m_success)
-						m_errorCarrier.m_exceptionMsg.append(" - Failure on getting auto-increment ID !");
-					m_returnedValues.add(String.valueOf(id));
-				} else if (checkDbManager()) {
+						id = addNewAndGetID(ctx, postedStmnt);
+					ctx.m_success &= id != 0;
+					if (!ctx.m_success)
+						ctx.m_errorCarrier.m_exceptionMsg.append(" - Failure on getting auto-increment ID !");
+					ctx.m_returnedValues.add(String.valueOf(id));
+				} else if (checkDbManager(ctx)) {
 					if (getTable.length() > 0) {
-						m_dbManager.setConn(m_conn);
-						m_success = true;
-						if (m_success) {
-							long idGot = m_dbManager.getId(sqlStmnt);
+						ctx.m_dbManager.setConn(ctx.m_conn);
+						ctx.m_success = true;
+						if (ctx.m_success) {
+							long idGot = ctx.m_dbManager.getId(sqlStmnt);
 							if (idGot == 0) {
-								m_success = false;
-								m_errorCarrier.m_exceptionMsg.append(" - Failure on getting table generated ID !");
+								ctx.m_success = false;
+								ctx.m_errorCarrier.m_exceptionMsg.append(" - Failure on getting table generated ID !");
 							} else
-								m_returnedValues.add(String.valueOf(idGot));
+								ctx.m_returnedValues.add(String.valueOf(idGot));
 						}
 					} else {
 						if (verifyExpr.length() > 0) {
-							m_dbManager.setConn(m_conn);
-							m_success = true;
-							if (m_success)
-								m_success = m_dbManager.validate(verifyExpr);
+							ctx.m_dbManager.setConn(ctx.m_conn);
+							ctx.m_success = true;
+							if (ctx.m_success)
+								ctx.m_success = ctx.m_dbManager.validate(verifyExpr);
+						}
+						if (ctx.m_success && sqlStmnt.length() > 0) {
+							String sql = idSqlSubst(ctx, postedStmnt.nameSubst(accessor, sqlStmnt));
+							ctx.m_success = batchable ? 
+												batch.add(sql, accessor == null ? null : accessor.bindValues()) : 
+												executeSql(ctx, sql);
 						}
-						if (m_success && sqlStmnt.length() > 0)
-							m_success = executeSql(idSqlSubst(postedStmnt.nameSubst(m_accessor, sqlStmnt)));
 					}
 				}
 			}
-			if (m_success) {
+			if (ctx.m_success) {
 				if (postedStmnt.m_nonManagedRollbackActionIden > 0)
 					nonManagedRollbackIndexes.add(postedStmnt.m_nonManagedRollbackActionIden);
 			} else
 				break;
 		}
-		if ( ! m_success) {
-			for (int i = 0; i < m_postStatements.size(); i++) {
-				postedStmnt = (PostStatement) m_postStatements.get(i);
+		if (ctx.m_success && batch != null)
+			ctx.m_success = batch.flush();
+		if ( ! ctx.m_success) {
+			for (int i = 0; i < ctx.m_postStatements.size(); i++) {
+				postedStmnt = (PostStatement) ctx.m_postStatements.get(i);
 				if (postedStmnt.m_nonManagedRollbackActionIden < 0 && nonManagedRollbackIndexes.contains(-postedStmnt.m_nonManagedRollbackActionIden)) {					
-					if (m_accessor != null)
-						m_accessor.setPostStatement(postedStmnt, true);
+					if (accessor != null)
+						accessor.setPostStatement(postedStmnt, true);
 					sqlStmnt = postedStmnt.m_sql;
 					if (sqlStmnt.length() > 0)
-						executeSql(postedStmnt.nameSubst(m_accessor, sqlStmnt));
+						executeSql(ctx, postedStmnt.nameSubst(accessor, sqlStmnt));
 				}
 			}
-			m_success = false;
+			ctx.m_success = false;
 		}
-		if (m_command.equals("trans"))
-			endTrans();
+		if (ctx.m_command.equals("trans"))
+			endTrans(ctx);
 	}
 
 	
+	/**
+	 * Returns a {@code StatementBatch} object if the request is a transaction
+	 * with more than one statement, the batching is enabled and the jdbc
+	 * driver supports it.
+	 */
+	private StatementBatch createStatementBatch(RequestContext ctx) throws SQLException {
+		if (!ctx.m_command.equals("trans") || m_stmntBatchSize < 2 || ctx.m_postStatements.size() < 2 || ctx.m_conn == null)
+			return null;
+		return ctx.m_conn.getMetaData().supportsBatchUpdates() ? new StatementBatch(ctx) : null;
+	}
+
+	private boolean isBatchable(RequestContext ctx, PostStatement postedStmnt) {
+		return postedStmnt.m_nonManagedRollbackActionIden == 0 && 
+				postedStmnt.m_method.length() == 0 && 
+				postedStmnt.m_autoId.length() == 0 && 
+				postedStmnt.m_genTable.length() == 0 && 
+				postedStmnt.m_verifyExpr.length() == 0 && 
+				postedStmnt.m_sql.length() > 0 && 
+				ctx.m_bytesElems.size() == 0;
+	}
+
 	/**
 	 * It is responsible of building the Joty response for the request of configuration
 	 * data and for the request of ending the session.
@@ -521,11 +954,16 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		try {
 			String command = request.getParameter("command");
-			OutPrinterWrapper outPrinterWrapper = new OutPrinterWrapper(m_outWriter);
+			if (command != null && command.equals("config") && renderConfigPayload(request, response))
+				return;
+			if (command != null && command.equals("reportFetch") && renderReportJobFile(request, response))
+				return;
+			RequestContext ctx = createRequestContext(request, response);
+			OutPrinterWrapper outPrinterWrapper = new OutPrinterWrapper(ctx);
 			if (command == null)
 				outPrinterWrapper.append("<html><body>Hi,<br><br>this is Joty Server (v. 2.0.3) !<br><br>www.joty.org</body></html>");
 			else {
-				boolean sessionWasAlive = checkSession(request);
+				boolean sessionWasAlive = checkSession(ctx, request);
 				renderXmlHeader(outPrinterWrapper);
 				if (command.equals("end")) {
 					if (sessionWasAlive) {
@@ -534,7 +972,7 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 						session.removeAttribute(MY_USERUSERNAME);
 						session.removeAttribute(MY_PWD);
 						session.invalidate();
-						jotyWarning("    User " + userName + " exited (session id = " + m_sessionID + ")");
+						jotyWarning("    User " + userName + " exited (session id = " + ctx.m_sessionID + ")");
 					}
 					outPrinterWrapper.append("<Result><Value>Ok</Value></Result>");
 				} else if (command.equals("config")) {
@@ -561,11 +999,19 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 						}
 					if (!m_configurationLoaded)
 						renderError(outPrinterWrapper, "At least one configuration source is missing on the server !");
+				} else if (sessionWasAlive && (command.equals("reportStatus") || command.equals("reportFetch"))) {
+					ReportJob job = m_reportJobs == null ? null : m_reportJobs.job(request.getParameter("id"), request.getSession(true).getId());
+					if (job == null)
+						renderError(outPrinterWrapper, "Report job not found !");
+					else if (command.equals("reportStatus"))
+						outPrinterWrapper.append(reportJobXml(job));
+					else
+						renderError(outPrinterWrapper, job.m_state == ReportJobQueue.State.FAILED ? job.m_failure : "Report not yet available !");
 				} else if (sessionWasAlive)
 					renderError(outPrinterWrapper, "Illegal Joty server invocation : GET/" + command);
 				else
 					renderSessExpXml(outPrinterWrapper);
-				renderXmlFooter(outPrinterWrapper);
+				renderXmlFooter(ctx, outPrinterWrapper);
 			}
 			endWriter(outPrinterWrapper);
 		} catch (Exception e) {
@@ -576,9 +1022,10 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	/**
 	 * Builds the most part of the responses since almost all the Joty web
 	 * commands are dispatched through an http post command, because they
-	 * require a body to be delivered. It invokes {@code getPostedBodyElements}
-	 * for loading into convenient structures the data present in the request
-	 * body.
+	 * require a body to be delivered. Before anything else it makes a
+	 * {@code RequestParser} object load the data present in the request body
+	 * into convenient structures, reading it straight from the request stream
+	 * (in debug mode the body is buffered to be logged and validated).
 	 * <p>
 	 * then, again depending on the particular Joty web command, the task is
 	 * dispatched to other serving methods to be accomplished.
@@ -588,9 +1035,9 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * either for picking the effective statements up in order to be executed or to apply
 	 * literals substitution on the statements coming from the request.
 	 * 
-	 * @see #getPostedBodyElements
-	 * @see #getXmlFromDb
-	 * @see #getResponseFromLogin
+	 * @see RequestParser
+	 * @see #renderXmlFromDb
+	 * @see #renderResponseFromLogin
 	 * @see #getReportXml
 	 * @see #dbExecute
 	 * @see Accessor
@@ -600,106 +1047,132 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 
 	@Override
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		RequestContext ctx = null;
 		try {
-			String postedContent = getPostedContent(request);
-			if (m_debug)
-				jotyWarning("    Posted content : \n    " + postedContent);
-			m_errorCarrier.clear();
+			ctx = createRequestContext(request, response);
+			InputStream postedStream = getPostedStream(request);
+			String postedContent = null;
 			boolean tryReturnInvalidReqFormat = false;
-			if (m_debug)
-				tryReturnInvalidReqFormat = !checkRequestPostContent(postedContent);
+			if (m_debug) {
+				byte[] postedBytes = Utilities.bytesFromInputStream(postedStream);
+				postedContent = new String(postedBytes, "UTF-8");
+				jotyWarning("    Posted content : \n    " + postedContent);
+				tryReturnInvalidReqFormat = !checkRequestPostContent(ctx, postedBytes);
+				postedStream = new ByteArrayInputStream(postedBytes);
+			}
+			String mainSqlStmnt = null;
+			if (!tryReturnInvalidReqFormat)
+				try {
+					mainSqlStmnt = new RequestParser(this, ctx, m_BirtManager != null).parse(postedStream);
+				} catch (XMLStreamException e) {
+					jotyMessage(e);
+					ctx.m_errorCarrier.m_exceptionMsg.append("Invalid request format");
+					tryReturnInvalidReqFormat = true;
+				}
 			String command = request.getParameter("command");
-			OutPrinterWrapper outPrinterWrapper = new OutPrinterWrapper(m_outWriter);
-			boolean credentialsAvailable = checkCredentials(request, command, checkSession(request));
+			OutPrinterWrapper outPrinterWrapper = new OutPrinterWrapper(ctx);
+			boolean credentialsAvailable = checkCredentials(ctx, request, command, checkSession(ctx, request));
 			if (command == null) {
-				outPrinterWrapper.append("<html><body>Hi,<br><br>this is Joty Server !<br><br>You posted: " + 
-											postedContent + "</body></html>");
+				outPrinterWrapper.append("<html><body>Hi,<br><br>this is Joty Server !" + 
+											(postedContent == null ? "" : "<br><br>You posted: " + postedContent) + "</body></html>");
 			} else {
-				m_command = command;
+				ctx.m_command = command;
 				if (outPrinterWrapper.m_writer != null)
 					renderXmlHeader(outPrinterWrapper);
 				if (credentialsAvailable) {
-					m_success = !tryReturnInvalidReqFormat;
-					if (m_success)
+					ctx.m_success = !tryReturnInvalidReqFormat;
+					if (ctx.m_success)
 						try {
-							String mainSqlStmnt = getPostedBodyElements(postedContent);
-							boolean login = m_command.equals("login");
-							if (m_command.equals("query") || login) {
-								m_connGrabber.acquireConnection();
+							if (m_accessorAvailable && m_remoteAccessor)
+								acquireAccessor(ctx);
+							boolean login = ctx.m_command.equals("login");
+							if (ctx.m_command.equals("query") || login) {
+								ctx.m_connGrabber.acquireConnection();
 								String sql = null;
 								if (mainSqlStmnt == null) {
-									m_success = false;
-									if (m_accessor == null && !login)
-										m_errorCarrier.m_exceptionMsg.append("Accessor missing !");
+									ctx.m_success = false;
+									if (ctx.m_accessor == null && !login)
+										ctx.m_errorCarrier.m_exceptionMsg.append("Accessor missing !");
 									else {
 										if (login) {
 											sql = "select 1 as joty" + (m_msSqlServer ? "" : " from dual");
-											m_success = true;
+											ctx.m_success = true;
 										} else {
-											m_accessor.setPostStatement(m_queryDefPostStatement);
+											Accessor accessor = ctx.m_accessor;
+											accessor.setPostStatement(ctx.m_queryDefPostStatement);
 											if (m_shared)
-												m_accessor.setSharingKey(m_sharingKey);
-											sql = m_accessor.getQueryFromPostStatement();
-											if (!m_shared || !m_accessor.sharingViolation()) {
-												if (m_accessor.dataDefFound() || m_accessor.substitutingLiteral())
-													m_success = true;
+												accessor.setSharingKey(ctx.m_sharingKey);
+											sql = accessor.getQueryFromPostStatement();
+											if (!m_shared || !accessor.sharingViolation()) {
+												if (accessor.dataDefFound() || accessor.substitutingLiteral())
+													ctx.m_success = true;
 												else
-													m_errorCarrier.m_exceptionMsg.append(m_accessor.m_ddNotFoundMsg);
+													ctx.m_errorCarrier.m_exceptionMsg.append(accessor.m_ddNotFoundMsg);
 											}
 										}
 									}
 								} else
 									sql = mainSqlStmnt;
-								if (m_success) {
-									String xml = m_command.equals("query") ? 
-													getXmlFromDb(sql, !attributePredicate(request, "data", true), attributePredicate(request, "bin", false)) : 
-													getResponseFromLogin(m_user, m_password, sql);
-									m_connGrabber.releaseConnection();
-									outPrinterWrapper.append(xml);
+								if (ctx.m_success) {
+									if (ctx.m_command.equals("query"))
+										renderXmlFromDb(ctx, outPrinterWrapper, sql, !attributePredicate(request, "data", true), attributePredicate(request, "bin", false), attributePredicate(request, "packed", false));
+									else
+										renderResponseFromLogin(ctx, outPrinterWrapper, ctx.m_user, ctx.m_password, sql);
+									ctx.m_connGrabber.releaseConnection();
 								}
-							} else if (m_command.equals("report")) {
+							} else if (ctx.m_command.equals("report")) {
 								outPrinterWrapper.append(m_BirtManager == null ? 
 										getResultFromFailure("NO_BIRT") : 
-										getReportXml(request.getParameter("name"), 
+										getReportXml(ctx, 
+													request.getParameter("name"), 
 													request.getParameter("type"), 
 													request.getParameter("lang"), 
 													attributePredicate(request, "twoProc", true)));
+							} else if (ctx.m_command.equals("reportSubmit")) {
+								outPrinterWrapper.append(m_reportJobs == null ? 
+										getResultFromFailure("NO_BIRT") : 
+										submitReportJob(ctx, request));
 							} else {
-								dbExecute();
-								if (m_success)
-									outPrinterWrapper.append(buildXmlResult());
+								dbExecute(ctx);
+								if (ctx.m_success)
+									outPrinterWrapper.append(buildXmlResult(ctx));
 							}
 						} catch (SQLException e) {
 							jotyMessage(e);
-							m_errorCarrier.setSqlException(e);
-							m_success = false;
+							ctx.m_errorCarrier.setSqlException(e);
+							ctx.m_success = false;
 						} catch (NamingException e) {
 							jotyMessage(e);
-							m_errorCarrier.m_exceptionMsg.append(e.getMessage());
-							m_success = false;
+							ctx.m_errorCarrier.m_exceptionMsg.append(e.getMessage());
+							ctx.m_success = false;
 						} catch (Exception e) {
 							jotyMessage(e);
-							m_errorCarrier.m_exceptionMsg.append(" Joty Server low level error !");
-							m_success = false;
+							ctx.m_errorCarrier.m_exceptionMsg.append(" Joty Server low level error !");
+							ctx.m_success = false;
 						}
-					if (!m_success) {
-						outPrinterWrapper.append(buildXmlResult());
+					if (!ctx.m_success) {
+						outPrinterWrapper.append(buildXmlResult(ctx));
 					}
 				} else
 					renderSessExpXml(outPrinterWrapper);
-				renderXmlFooter(outPrinterWrapper);
+				renderXmlFooter(ctx, outPrinterWrapper);
 			}
 			endWriter(outPrinterWrapper);
 		} catch (Exception e) {
 			jotyMessage(e);
+		} finally {
+			if (ctx != null) {
+				ctx.m_connGrabber.releaseConnection();
+				releaseAccessor(ctx);
+			}
 		}
 	}
 
-	protected String encodedBytes() {
+	protected String encodedBytes(RequestContext ctx) {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try {
-			if (m_bytes != null && m_bytes.length > 0) {
-				baos.write(m_bytes);
+			if (ctx.m_bytes != null && ctx.m_bytes.length > 0) {
+				baos.write(ctx.m_bytes);
 				return m_xmlEncoder.encode(baos.toString(m_singleByteEncoding), true);
 			}
 		} catch (IOException e) {
@@ -709,39 +1182,40 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		return null;
 	}
 
-	protected void endTrans() {
-		if (m_success)
-			m_success = commit();
+	protected void endTrans(RequestContext ctx) {
+		if (ctx.m_success)
+			ctx.m_success = commit(ctx);
 		else
-			rollback();
-		m_connGrabber.releaseConnection();
+			rollback(ctx);
+		ctx.m_connGrabber.releaseConnection();
 	}
 
 	private void endWriter(OutPrinterWrapper wrapper) {
 		wrapper.m_writer.flush();
 		wrapper.m_writer.close();
 		if (m_debug)
-			jotyWarning("    Response content : \n    " + m_responseText.toString());
+			jotyWarning("    Response content : \n    " + wrapper.m_responseText.toString());
 	}
 
 	/**
 	 * Executes an sql statement either it be participating in a transaction or standing alone
+	 * @param ctx the request context
 	 * @param sql the statement text
 	 * @return true if success
 	 * 
 	 * @see #executeStmnt
 	 */
-	protected boolean executeSql(String sql) {
-		m_success = true;
-		Boolean atomic = m_command.equals("exec");
+	protected boolean executeSql(RequestContext ctx, String sql) {
+		ctx.m_success = true;
+		Boolean atomic = ctx.m_command.equals("exec");
 		Exception exc = null;
 		try {
 			if (atomic)
-				m_connGrabber.acquireConnection(true);
-			if (m_success)
-				m_success = executeStmnt(sql);
+				ctx.m_connGrabber.acquireConnection(true);
+			if (ctx.m_success)
+				ctx.m_success = executeStmnt(ctx, sql);
 			if (atomic)
-				m_connGrabber.releaseConnection();
+				ctx.m_connGrabber.releaseConnection();
 		} catch (SQLException e) {
 			jotyMessage(e);
 			exc = e;
@@ -750,22 +1224,22 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 			exc = e;
 		} finally {
 			if (atomic)
-				m_connGrabber.releaseConnection();
+				ctx.m_connGrabber.releaseConnection();
 		}
 		if (exc != null) {
-			m_success = false;
+			ctx.m_success = false;
 			Logger.appendToHostLog("    " + exc.getMessage(), true);
 			Logger.appendToLog(m_dbLogName, exc.getMessage());
-			m_errorCarrier.m_exceptionMsg.append(exc.getMessage());
+			ctx.m_errorCarrier.m_exceptionMsg.append(exc.getMessage());
 		}
-		return m_success;
+		return ctx.m_success;
 	}
 	
 	/**
 	 * Serves {@code executeSql} in executing an sql statement.
 	 * <p>
 	 * As it can be noted currently the method manages only binary writing if
-	 * the {@code m_bytesElems} vector is not empty. This is not a limitation
+	 * the {@code m_bytesElems} vector of the request context is not empty. This is not a limitation
 	 * because in Joty 2.0 still a writing of a large blob object is managed in
 	 * a dedicated way and now, at most, is accompanied by the writing of a
 	 * small blob object. That is, it is never embedded in a transaction set of
@@ -776,6 +1250,8 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * member or not.
 	 * 
 	 * 
+	 * @param ctx
+	 *            the request context
 	 * @param sql
 	 *            the statement text
 	 * @return true if success
@@ -784,37 +1260,37 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 *
 	 */
 
-	protected Boolean executeStmnt(String sql) throws NamingException {
+	protected Boolean executeStmnt(RequestContext ctx, String sql) throws NamingException {
 		boolean success = true;
+		PreparedStatement stmnt = null;
+		String autoId = ctx.m_bytesElems.size() > 0 ? null : ctx.m_autoId;
 		try {
 			if (m_logDbActions)
-				Logger.appendToLog(m_dbLogName, sql, false, m_user, false);
-			if (m_bytesElems.size() > 0) {
-				PreparedStatement stmnt = m_conn.prepareStatement(sql);
-				stmnt.setBytes(1, m_bytesElems.get(m_statementIndex));
+				Logger.appendToLog(m_dbLogName, boundSqlLogText(ctx, sql), false, ctx.m_user, false);
+			stmnt = prepareStatement(ctx, sql, autoId);
+			if (ctx.m_bytesElems.size() > 0) {
+				stmnt.setBytes(1, ctx.m_bytesElems.get(ctx.m_statementIndex));
 				stmnt.executeUpdate();
-				stmnt.close();
-				m_statementIndex++;
+				ctx.m_statementIndex++;
 			} else {
-				PreparedStatement stmnt = null;
-				if (m_autoId.length() > 0) {
-					stmnt = m_conn.prepareStatement(sql, new String[] { m_autoId });
-					stmnt.executeUpdate();
+				bindAccessorParams(ctx, stmnt);
+				stmnt.executeUpdate();
+				if (autoId.length() > 0) {
 					ResultSet rset = stmnt.getGeneratedKeys();
-					m_autoIdVal = 0;
+					ctx.m_autoIdVal = 0;
 					if (rset.next())
-						m_autoIdVal = rset.getLong(1);
-				} else {
-					stmnt = m_conn.prepareStatement(sql);
-					stmnt.executeUpdate();
+						ctx.m_autoIdVal = rset.getLong(1);
+					rset.close();
 				}
-				stmnt.close();
 			}
 		} catch (SQLException e) {
 			jotyWarning("Sql : \n " + sql);
 			jotyMessage(e);
-			m_errorCarrier.setSqlException(e);
+			ctx.m_errorCarrier.setSqlException(e);
 			success = false;
+		} finally {
+			if (stmnt != null)
+				releaseStatement(ctx, stmnt, sql, autoId, success);
 		}
 		return success;
 	}
@@ -833,119 +1309,31 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		return m_configuration.configTermValue(literal);
 	}
 
-	protected String getNodeValue(Node node, String name) {
-		String retVal = "";
-		if (node.getNodeName().compareToIgnoreCase(name) == 0)
-			retVal = node.getTextContent();
-		return retVal;
+	private boolean getServerConfBool(String literal, boolean defaultValue) throws ConfigException {
+		String strVal = m_serverConfig.configTermValue(literal);
+		return strVal == null ? defaultValue : Boolean.parseBoolean(strVal.trim());
 	}
 
-	/**
-	 * It extracts the request content and depending on the type of the command,
-	 * read from the query string parameters, loads it in suitable data
-	 * structures.
-	 * 
-	 * @param postedContent the body of the Http Post command
-	 * @return the first sql statement encountered during the parsing
-	 * @throws IOException
-	 * 
-	 * @see #m_queryDefPostStatement
-	 * @see #m_postStatements
-	 * @see #m_reportManager
-	 * @see ReportManager#m_params
-	 * @see #m_smallBlobs
-	 * 
-	 */
-	
-	private String getPostedBodyElements(String postedContent) throws IOException {
-		m_postStatements.removeAllElements();
-		m_bytesElems.removeAllElements();
-		m_returnedValues.removeAllElements();
-		Document doc = Utilities.getXmlDocument(postedContent);
-		Node root = doc.getDocumentElement();
-		Node firstLevelNode = root.getFirstChild();
-		Node currNode = firstLevelNode;
-		String firstStmnt = null;
-		if (m_command.equals("trans") || m_command.equals("exec")) {
-			currNode = currNode.getFirstChild();
-			firstStmnt = "";
-			if (currNode.getNodeName().equals("Stmnt")) {
-				Node currStmnt;
-				currStmnt = currNode;
-				while (currStmnt != null) {
-					currNode = currStmnt.getFirstChild();
-					PostStatement postStatement = new PostStatement(this);
-					readPostStatement(postStatement, currNode);
-					if (firstStmnt.length() == 0)
-						firstStmnt = postStatement.m_sql;
-					m_postStatements.add(postStatement);
-					currStmnt = currStmnt.getNextSibling();
-				}
-			}
-			firstLevelNode = firstLevelNode.getNextSibling();
-			while (firstLevelNode != null) {
-				if (firstLevelNode.getNodeName().equals("Binary"))
-					m_bytesElems.add(m_xmlEncoder.decode(firstLevelNode.getTextContent(), true).getBytes(m_singleByteEncoding));
-				firstLevelNode = firstLevelNode.getNextSibling();
-			}
-		} else if (m_command.equals("report")) {
-			if (m_BirtManager != null) {
-				m_reportManager.resetParams();
-				currNode = currNode.getFirstChild();
-				Node currParam;
-				currParam = currNode;
-				int paramType;
-				String literalValue = null;
-				while (currParam != null) {
-					currNode = currParam.getFirstChild();
-					Parameter param = m_reportManager.new Parameter();
-					param.name = getNodeValue(currNode, "Name");
-					currNode = currNode.getNextSibling();
-					literalValue = getNodeValue(currNode, "Val");
-					currNode = currNode.getNextSibling();
-					paramType = Integer.parseInt(getNodeValue(currNode, "Type"));
-					param.type = paramType;
-					param.setValue(literalValue, paramType);
-					m_reportManager.m_params.add(param);
-					currParam = currParam.getNextSibling();
-				}
-			}
-		} else if (currNode.getNodeName().equals("QueryStmnt") || currNode.getNodeName().equals("QueryDef")) {
-			Node queryNode = currNode;
-			if (currNode.getNodeName().equals("QueryStmnt"))
-				firstStmnt = currNode.getTextContent();
-			else {
-				currNode = currNode.getFirstChild();
-				m_queryDefPostStatement.clear();
-				readPostStatement((PostStatement) m_queryDefPostStatement, currNode);
-			}
-			currNode = queryNode.getNextSibling();
-			m_smallBlobs.clear();
-			if (currNode != null && currNode.getNodeName().equals("SmallBlobs")) {
-				currNode = currNode.getFirstChild();
-				int i = 0;
-				while (currNode != null) {
-					m_smallBlobs.put(currNode.getTextContent(), i);
-					currNode = currNode.getNextSibling();
-					i++;
-				}
-			}
-		}
-		return firstStmnt;
+	private int getServerConfInt(String literal, int defaultValue) throws ConfigException {
+		String strVal = m_serverConfig.configTermValue(literal);
+		return strVal == null ? defaultValue : Integer.parseInt(strVal.trim());
 	}
 
 	/**
-	 * Gets the body of the Http Post command.
+	 * Gets the stream of the body of the Http Post command, decompressing it
+	 * if the client declared a 'gzip' or 'deflate' Content-Encoding.
 	 * @param request
-	 * @return the content of the body 
+	 * @return the stream of the body 
+	 * @throws IOException 
 	 */
-	protected String getPostedContent(HttpServletRequest request) {
-		try {
-			return Utilities.stringFromInputStream(request.getInputStream(), "UTF-8", false);
-		} catch (IOException e) {
-			jotyMessage(e);
-		}
-		return null;
+	protected InputStream getPostedStream(HttpServletRequest request) throws IOException {
+		InputStream inputStream = request.getInputStream();
+		String encoding = request.getHeader("Content-Encoding");
+		if ("gzip".equalsIgnoreCase(encoding))
+			inputStream = new GZIPInputStream(inputStream);
+		else if ("deflate".equalsIgnoreCase(encoding))
+			inputStream = new InflaterInputStream(inputStream);
+		return inputStream;
 	}
 
 	/**
@@ -960,7 +1348,12 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * <p>
 	 * For the meaning of the parameters here not documented see
 	 * {@link BirtManager#buildReport(String, String, boolean)} method.
+	 * <p>
+	 * Since the BIRT engine wrapper is a single object, shared by all the
+	 * requests, the building of the report is serialized on it.
 	 * 
+	 * @param ctx
+	 *            the request context
 	 * @param reportName
 	 * @param formatType
 	 * @param language
@@ -972,34 +1365,100 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * @see BirtManager
 	 * 
 	 */
-	protected String getReportXml(String reportName, String formatType, String language, boolean twoProcesses) {
+	protected String getReportXml(RequestContext ctx, String reportName, String formatType, String language, boolean twoProcesses) {
 		StringBuilder retVal = new StringBuilder();
-		reportManager().setUser(m_user);
-		reportManager().setPassword(m_password);
-		reportManager().setLanguage(language);
-		reportManager().buildReport(reportName, formatType, twoProcesses);
-		if (reportManager().m_exception == null) {
-			retVal.append("<Result><Value>Ok</Value></Result><Report>");
-			try {
-				m_bytes = Utilities.getFileContent( reportManager().outputFileDir() + reportName + "." + formatType, 
-													m_singleByteEncoding
-												).getBytes(m_singleByteEncoding);
-			} catch (FileNotFoundException e) {
-				jotyMessage(e);
-			} catch (UnsupportedEncodingException e) {
-				jotyMessage(e);
-			}
-			retVal.append(encodedBytes());
-			retVal.append("</Report>");
-		} else
-			retVal.append(getResultFromFailure(reportManager().m_exception));
+		synchronized (reportManager()) {
+			reportManager().setReportManager(ctx.m_reportManager);
+			reportManager().setUser(ctx.m_user);
+			reportManager().setPassword(ctx.m_password);
+			reportManager().setLanguage(language);
+			reportManager().buildReport(reportName, formatType, twoProcesses);
+			if (reportManager().m_exception == null) {
+				retVal.append("<Result><Value>Ok</Value></Result><Report>");
+				try {
+					ctx.m_bytes = Utilities.getFileContent( reportManager().outputFileDir() + reportName + "." + formatType, 
+														m_singleByteEncoding
+													).getBytes(m_singleByteEncoding);
+				} catch (FileNotFoundException e) {
+					jotyMessage(e);
+				} catch (UnsupportedEncodingException e) {
+					jotyMessage(e);
+				}
+				retVal.append(encodedBytes(ctx));
+				retVal.append("</Report>");
+			} else
+				retVal.append(getResultFromFailure(reportManager().m_exception));
+		}
+		return retVal.toString();
+	}
+
+	/**
+	 * Queues the building of the report described by the request (see
+	 * {@link #getReportXml} for the parameters) and returns the 'ReportJob'
+	 * node by which the client can follow the job.
+	 * 
+	 * @see ReportJobQueue
+	 */
+	protected String submitReportJob(RequestContext ctx, HttpServletRequest request) {
+		String name = request.getParameter("name");
+		String formatType = request.getParameter("type");
+		String language = request.getParameter("lang");
+		if (!safePathTerm(name) || !safePathTerm(formatType) || language != null && !safePathTerm(language))
+			return getResultFromFailure("Invalid report request !");
+		ReportJob job = m_reportJobs.submit(request.getSession(true).getId(), ctx.m_user, ctx.m_password, language, 
+											ctx.m_reportManager, name, formatType, attributePredicate(request, "twoProc", true));
+		return job == null ? 
+				getResultFromFailure("Too many reports are being built: retry later !") : 
+				reportJobXml(job);
+	}
+
+	/**
+	 * @return true if {@code term} can be part of a file path without leading
+	 *         out of the directory it is meant for
+	 */
+	private boolean safePathTerm(String term) {
+		return term != null && !term.contains("..") && term.indexOf('/') < 0 && term.indexOf('\\') < 0;
+	}
+
+	private String reportJobXml(ReportJob job) {
+		StringBuilder retVal = new StringBuilder();
+		if (job.m_state == ReportJobQueue.State.FAILED)
+			retVal.append(getResultFromFailure(job.m_failure == null ? "Report failure !" : job.m_failure));
+		else
+			retVal.append("<Result><Value>Ok</Value></Result>");
+		retVal.append("<ReportJob><Id>").append(job.m_id).append("</Id><State>").append(job.m_state.name().toLowerCase()).append("</State></ReportJob>");
 		return retVal.toString();
 	}
 
-	protected String getResponseFromLogin(String user, String pwd, String query) throws SQLException {
-		m_user = user;
-		m_password = pwd;
-		return getXmlFromDb(query, false, false);
+	/**
+	 * Sends the output of the report job, as it is, if the job exists in the
+	 * session of the request and it is done: then the job is discarded.
+	 * 
+	 * @return false if the file has not been sent
+	 */
+	private boolean renderReportJobFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		HttpSession session = request.getSession(false);
+		ReportJob job = m_reportJobs == null || session == null ? null : m_reportJobs.job(request.getParameter("id"), session.getId());
+		if (job == null || job.m_state != ReportJobQueue.State.DONE)
+			return false;
+		response.setContentType("application/octet-stream");
+		response.setHeader("Content-Length", String.valueOf(job.m_file.length()));
+		OutputStream out = response.getOutputStream();
+		try {
+			Files.copy(job.m_file.toPath(), out);
+		} finally {
+			out.close();
+			m_reportJobs.remove(job);
+		}
+		if (m_debug)
+			jotyWarning("    Response : report " + job.m_name + "." + job.m_renderType + " (job " + job.m_id + ")");
+		return true;
+	}
+
+	protected void renderResponseFromLogin(RequestContext ctx, OutPrinterWrapper out, String user, String pwd, String query) throws SQLException {
+		ctx.m_user = user;
+		ctx.m_password = pwd;
+		renderXmlFromDb(ctx, out, query, false, false, false);
 	}
 
 	protected String getResultFromException(Exception e) {
@@ -1025,10 +1484,34 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	
 	/**
 	 * Basing on the Joty protocol this method builds the xml code corresponding
-	 * to the result received in input and destined to be returned to the client
+	 * to the result received in input and sends it to the client.
+	 * <p>
+	 * The xml text is not built as a whole: the records are rendered, as they
+	 * are read from the ResultSet, in a chunk of bounded size that is written
+	 * to the response stream and flushed as soon as it exceeds
+	 * {@code m_responseChunkSize} characters. A failure of the dbms occurring
+	 * before the first chunk is sent leaves the response untouched and is
+	 * reported in the usual form; after that point it truncates the
+	 * response, that the client detects as malformed.
+	 * <p>
+	 * The values of each column are rendered by a {@code ColumnEncoder} object
+	 * chosen once, before the records are scanned.
+	 * <p>
+	 * If the client asked for the packed format the 'Data' node, marked by
+	 * the 'packed' attribute, contains, instead of the 'Record' nodes, a
+	 * sequence of 'Pack' nodes carrying the records in the binary form
+	 * described by the {@code PackedData} class. Each of them is closed when
+	 * its Base64 content is about to fill a chunk of the response.
 	 * 
+	 * @param ctx
+	 *            the request context
+	 * @param out
+	 *            the wrapper of the response writer
 	 * @param result
 	 *            the ResultSet object to be encoded in Joty response.
+	 * @param sqlText
+	 *            the statement that produced {@code result}: it identifies the
+	 *            description of the columns in {@code m_metadataCache}
 	 * @param onlyMetadata
 	 *            if true only the 'Structure' xml node is returned (the
 	 *            response will contain only the description of the fields o the
@@ -1036,231 +1519,225 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * @param withBinaries
 	 *            if true the binary content of the possible fields of type
 	 *            {@code JotyTypes._smallBlobs} is included
-	 * @return the rendered xml text.
+	 * @param packed
+	 *            if true the records are delivered in the packed format
 	 * @throws SQLException
+	 * 
+	 * @see PackedData
 	 */
-	protected String getResultSetAsXml(ResultSet result, boolean onlyMetadata, boolean withBinaries) throws SQLException {
+	protected void renderResultSetAsXml(RequestContext ctx, OutPrinterWrapper out, ResultSet result, String sqlText, boolean onlyMetadata, boolean withBinaries, boolean packed) throws SQLException, IOException {
 		StringBuilder retVal = new StringBuilder();
+		SimpleDateFormat format = null;
+		if (!onlyMetadata)
+			try {
+				format = new SimpleDateFormat(getConfStr("xmlDateFormat"));
+			} catch (ConfigException e) {
+				out.append(getResultFromException(e));
+				return;
+			}
 
-		ResultSetMetaData metadata = result.getMetaData();
-		int colCount = metadata.getColumnCount();
+		ColumnMetadata[] columns = m_metadataCache.statementColumns(sqlText, result.getMetaData());
+		int colCount = columns.length;
 		retVal.append("<Result><Value>Ok</Value></Result>");
 		retVal.append("<Structure>");
-		int rsetColType;
-		int size;
-		int decimals;
 		int[] types = new int[colCount];
-		int index;
+		ColumnMetadata column;
 		for (int i = 0; i < colCount; i++) {
-			index = i + 1;
-			String name = metadata.getColumnLabel(index);
-			rsetColType = metadata.getColumnType(index);
-			size = metadata.getPrecision(index);
-			decimals = metadata.getScale(index);
-			String typeName = "";
-
-			switch (rsetColType) {
-				case Types.CHAR:
-				case Types.VARCHAR:
-					types[i] = JotyTypes._text;
-					break;
-				case Types.FLOAT:
-					types[i] = JotyTypes._single;
-					break;
-				case Types.DOUBLE:
-					types[i] = JotyTypes._double;
-					break;
-				case Types.REAL:
-				case Types.NUMERIC:
-				case Types.BIGINT:
-					if (decimals == 0 || decimals == -127)
-						if (size > m_intDigitDim)
-							types[i] = JotyTypes._long;
-						else
-							types[i] = JotyTypes._int;
-					else
-						types[i] = JotyTypes._double;
-					break;
-				case Types.INTEGER:
-					types[i] = JotyTypes._long;
-					break;
-				case Types.SMALLINT:
-					types[i] = JotyTypes._int;
-					break;
-				case 11: // - !
-				case Types.DATE:
-					types[i] = JotyTypes._date;
-					break;
-				case Types.TIMESTAMP:
-					types[i] = JotyTypes._dateTime;
-					break;
-				case Types.BLOB:
-				case Types.VARBINARY:
-				case Types.LONGVARBINARY:
-					types[i] = m_smallBlobs.get(name) == null ? JotyTypes._blob : JotyTypes._smallBlob;
-					break;
-				default:
-					if (rsetColType == -1 && size > 255 && decimals == 0)
-						types[i] = JotyTypes._text;
-					else
-						types[i] = JotyTypes._none;
-					;
-			}
-			if (types[i] != JotyTypes._none)
-				typeName = String.valueOf(types[i]);
-			retVal.append("<Field name='" + name + "' type='" + typeName + "' len='" + String.valueOf(size) + 
-							"' dec='" + String.valueOf(decimals) + "'" + 
-							(m_fieldOrdinality ? (" pos='" + String.valueOf(index) + "'") : "") + 
+			column = columns[i];
+			types[i] = column.jotyType(column.m_binary && ctx.m_smallBlobs.get(column.m_label) != null);
+			retVal.append("<Field name='" + column.m_label + "' type='" + (types[i] == JotyTypes._none ? "" : String.valueOf(types[i])) + 
+							"' len='" + String.valueOf(column.m_precision) + 
+							"' dec='" + String.valueOf(column.m_scale) + "'" + 
+							(m_fieldOrdinality ? (" pos='" + String.valueOf(i + 1) + "'") : "") + 
 							" />");
 		}
 		retVal.append("</Structure>");
 		if (!onlyMetadata) {
-			retVal.append("<Data>");
-			String[] openTags = new String[colCount];
-			String[] closeTags = new String[colCount];
-			String[] nullTags = new String[colCount];
-			String[] fields = new String[colCount];
-			for (int i = 0; i < colCount; i++) {
-				index = i + 1;
-				openTags[i] = "<c" + (m_fieldOrdinality ? String.valueOf(index) : "") + ">";
-				closeTags[i] = "</c" + (m_fieldOrdinality ? String.valueOf(index) : "") + ">";
-				nullTags[i] = "<c" + (m_fieldOrdinality ? String.valueOf(index) : "") + "/>";
-				fields[i] = metadata.getColumnLabel(index);
-			}
-			StringBuilder retValB = new StringBuilder();
-			StringBuilder valueString = new StringBuilder();
-			SimpleDateFormat format = null;
-			try {
-				format = new SimpleDateFormat(getConfStr("xmlDateFormat"));
-			} catch (ConfigException e) {
-				retVal.setLength(0);
-				retVal.append(getResultFromException(e));
-			}
-			Date dtVal;
-			boolean isNull = false;
-			while (result.next()) {
-				retValB.append("<Record>");
-				boolean nullValue;
-				for (int i = 0; i < colCount; i++) {
-					nullValue = false;
-					valueString.setLength(0);
-					if (types[i] == JotyTypes._blob || types[i] == JotyTypes._smallBlob) {
-						if (withBinaries || types[i] == JotyTypes._smallBlob) {
-							Blob blob = null;
-							blob = result.getBlob(fields[i]);
-							if (blob == null)
-								nullValue = true;
-							else {
-								m_bytes = blob.getBytes(1, (int) (blob.length()));
-								valueString.append(encodedBytes());
-							}
-						} else
-							valueString.append("0");
-					} else {
-						isNull = result.getString(fields[i]) == null || result.getString(fields[i]).isEmpty();
-						if (isNull)
-							nullValue = true;
-						else {
-							if (types[i] == JotyTypes._date || types[i] == JotyTypes._dateTime) {
-								if (types[i] == JotyTypes._dateTime) {
-									result.getTimestamp(fields[i]);
-									dtVal = new Date(result.getTimestamp(fields[i]).getTime());
-								} else
-									dtVal = result.getDate(fields[i]);
-								valueString.append(format.format(dtVal));
-							} else
-								valueString.append(result.getString(fields[i]));
-						}
+			ColumnEncoder[] encoders = new ColumnEncoder[colCount];
+			for (int i = 0; i < colCount; i++)
+				encoders[i] = ColumnEncoder.create(types[i], i + 1, m_fieldOrdinality, withBinaries, m_xmlEncoder, format);
+			if (packed) {
+				retVal.append("<Data packed='y'>");
+				ByteArrayOutputStream packBuffer = new ByteArrayOutputStream();
+				DataOutputStream packStream = new DataOutputStream(packBuffer);
+				int packSize = m_responseChunkSize / 4 * 3;
+				while (result.next()) {
+					for (int i = 0; i < colCount; i++)
+						encoders[i].encodePacked(result, packStream);
+					if (packBuffer.size() >= packSize) {
+						appendPack(packBuffer, retVal);
+						out.appendChunk(retVal, false);
 					}
-					retValB.append(nullValue ? 
-										nullTags[i] : 
-										(openTags[i] + 
-											((types[i] == JotyTypes._text && !isNull) ? 
-													m_xmlEncoder.encode(valueString.toString(), false) : 
-													valueString) + 
-											closeTags[i])
-									);
 				}
-				retValB.append("</Record>");
+				appendPack(packBuffer, retVal);
+			} else {
+				retVal.append("<Data>");
+				while (result.next()) {
+					retVal.append("<Record>");
+					for (int i = 0; i < colCount; i++)
+						encoders[i].encode(result, retVal);
+					retVal.append("</Record>");
+					out.appendChunk(retVal, false);
+				}
 			}
-			retVal.append(retValB);
 			retVal.append("</Data>");
 		}
-		return retVal.toString();
+		out.appendChunk(retVal, true);
 	}
 
 	/**
-	 * From the xml node received in input this method extracts the list of
-	 * {@code Item} objects to be assigned to the {@code BasicPostStatement.m_items}
-	 * member.
-	 * 
-	 * @param currNode
-	 *            the source xml node-
-	 * @param stnmt
-	 *            the target PostStatement object-
-	 *            
-	 * @see Item
+	 * Moves the content of the buffer, as a 'Pack' node, into the chunk of
+	 * the response and empties the buffer.
 	 */
-	protected void getStmntItems(Node currNode, PostStatement stnmt) {
-		Node itemNode = currNode.getFirstChild();
-		Node itemPart;
-		String name, val, type;
-		while (itemNode != null) {
-			itemPart = itemNode.getFirstChild();
-			if (itemPart == null)
-				break;
-			name = getNodeValue(itemPart, "Name");
-			itemPart = itemPart.getNextSibling();
-			val = getNodeValue(itemPart, "Val");
-			itemPart = itemPart.getNextSibling();
-			type = getNodeValue(itemPart, "Type");
-			stnmt.m_items.add(stnmt.new Item(name, val, Integer.parseInt(type)));
-			itemNode = itemNode.getNextSibling();
+	private void appendPack(ByteArrayOutputStream packBuffer, StringBuilder chunk) {
+		if (packBuffer.size() > 0) {
+			chunk.append("<Pack>").append(m_xmlEncoder.encode(packBuffer.toByteArray())).append("</Pack>");
+			packBuffer.reset();
 		}
 	}
 
+
 	/**
-	 * Executes the sql statetement received in input and encodes the derived
-	 * result set in xml code, basing on the Joty protocol.
+	 * Executes the sql statetement received in input and sends the derived
+	 * result set, encoded in xml code basing on the Joty protocol, to the client.
+	 * <p>
+	 * If the 'queryFetchSize' item of the 'JotyServer.xml' file is set, its
+	 * value is passed to the jdbc driver as hint for the number of rows to be
+	 * fetched at once, so that the records can flow from the dbms to the
+	 * client without being accumulated.
 	 * 
+	 * @param ctx
+	 *            the request context
+	 * @param out
+	 *            the wrapper of the response writer
 	 * @param sqlText
 	 *            input sql code.
 	 * @param onlyMetadata
-	 *            see {@link getResultSetAsXml}
+	 *            see {@link renderResultSetAsXml}
 	 * @param withBinaries
 	 *            "    "
-	 * @return the result set encoded in xml
+	 * @param packed
+	 *            "    "
 	 * 
-	 * @see #getResultSetAsXml
+	 * @see #renderResultSetAsXml
 	 */
-	protected String getXmlFromDb(String sqlText, boolean onlyMetadata, boolean withBinaries) {
-		String retVal = null;
+	protected void renderXmlFromDb(RequestContext ctx, OutPrinterWrapper out, String sqlText, boolean onlyMetadata, boolean withBinaries, boolean packed) {
+		Statement statement = null;
 		try {
-			ResultSet result = m_conn.createStatement().executeQuery(sqlText);
-			retVal = getResultSetAsXml(result, onlyMetadata, withBinaries);
+			ResultSet result;
+			if (ctx.m_accessor == null || ctx.m_accessor.bindValues().isEmpty()) {
+				statement = ctx.m_conn.createStatement();
+				if (m_queryFetchSize != 0)
+					statement.setFetchSize(m_queryFetchSize);
+				result = statement.executeQuery(sqlText);
+			} else {
+				PreparedStatement prepared = ctx.m_conn.prepareStatement(sqlText);
+				statement = prepared;
+				if (m_queryFetchSize != 0)
+					statement.setFetchSize(m_queryFetchSize);
+				ctx.m_accessor.bindParams(prepared);
+				result = prepared.executeQuery();
+			}
+			renderResultSetAsXml(ctx, out, result, sqlText, onlyMetadata, withBinaries, packed);
+			result.close();
 		} catch (SQLException e) {
+			m_metadataCache.invalidateStatement(sqlText);
 			jotyWarning("Sql : \n " + sqlText);
-			retVal = getResultFromException(e);
+			out.append(getResultFromException(e));
+		} catch (IOException e) {
+			out.append(getResultFromException(e));
+		} finally {
+			if (statement != null)
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					jotyMessage(e);
+				}
 		}
-		return retVal;
 	}
 
 	/**
-	 * Replaces any numbered place holder occurrence  with the corresponding element in the vector {@code m_returnedValues} 
+	 * Gets the prepared statement from the cache of the connection, if the
+	 * connection pool provides one, otherwise prepares it.
+	 * 
+	 * @param autoId
+	 *            the name of the auto-increment field the generated value of
+	 *            which is to be returned, or null
+	 * @see #releaseStatement
+	 */
+	private PreparedStatement prepareStatement(RequestContext ctx, String sql, String autoId) throws SQLException {
+		StatementCache statementCache = m_connectionPool == null ? null : m_connectionPool.statementCache(ctx.m_conn);
+		if (statementCache != null)
+			return statementCache.prepare(sql, autoId);
+		else
+			return autoId == null || autoId.length() == 0 ? ctx.m_conn.prepareStatement(sql) : ctx.m_conn.prepareStatement(sql, new String[] { autoId });
+	}
+
+	/**
+	 * Gives the statement back to the cache of the connection or closes it if
+	 * there is no cache. A statement the execution of which has failed is
+	 * removed from the cache.
+	 */
+	private void releaseStatement(RequestContext ctx, PreparedStatement stmnt, String sql, String autoId, boolean reusable) {
+		StatementCache statementCache = m_connectionPool == null ? null : m_connectionPool.statementCache(ctx.m_conn);
+		try {
+			if (statementCache == null)
+				stmnt.close();
+			else if (reusable)
+				statementCache.release(stmnt);
+			else
+				statementCache.evict(sql, autoId);
+		} catch (SQLException e) {
+			jotyMessage(e);
+			if (statementCache != null)
+				statementCache.evict(sql, autoId);
+		}
+	}
+
+	/**
+	 * Binds to the statement the parameter values collected by the Accessor
+	 * object, if any, for the statement text being executed.
+	 * 
+	 * @see Accessor#setParamBinding(boolean)
+	 */
+	private void bindAccessorParams(RequestContext ctx, PreparedStatement stmnt) throws SQLException {
+		if (ctx.m_accessor != null)
+			ctx.m_accessor.bindParams(stmnt);
+	}
+
+	private String boundSqlLogText(RequestContext ctx, String sql) {
+		return ctx.m_accessor == null || ctx.m_accessor.bindValues().isEmpty() ? sql : (sql + "\n    bound values : " + ctx.m_accessor.bindValues());
+	}
+
+	/**
+	 * Replaces any numbered place holder occurrence  with the corresponding element in the vector {@code m_returnedValues} of the request context
+	 * @param ctx the request context 
 	 * @param stmnt the sql statement 
 	 * @return the resulting sql text
 	 */
-	protected String idSqlSubst(String stmnt) {
-		if (m_returnedValues.size() == 0)
+	protected String idSqlSubst(RequestContext ctx, String stmnt) {
+		if (ctx.m_returnedValues.size() == 0)
 			return stmnt;
 		else {
 			String replacedSql = stmnt;
-			for (int i = 0; i < m_returnedValues.size(); i++)
-				replacedSql = replacedSql.replace(String.format("'<%1$s%2$d>'", m_genIDtheme, i + 1), m_returnedValues.get(i));
+			for (int i = 0; i < ctx.m_returnedValues.size(); i++)
+				replacedSql = replacedSql.replace(String.format("'<%1$s%2$d>'", m_genIDtheme, i + 1), ctx.m_returnedValues.get(i));
 			return replacedSql;
 		}
 	}
 
+	private Logger.OverflowPolicy logOverflowPolicy() throws ConfigException {
+		Logger.OverflowPolicy retVal = Logger.OverflowPolicy.BLOCK;
+		String overflowPolicy = m_serverConfig.configTermValue("logOverflowPolicy");
+		if (overflowPolicy != null)
+			try {
+				retVal = Logger.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				Logger.appendToHostLog("Unknown logOverflowPolicy '" + overflowPolicy + "' : " + retVal + " is used !");
+			}
+		return retVal;
+	}
+
 	/**
 	 * Executed once, it performs initialization of the JotyServlet instance:
 	 * <p>
@@ -1273,20 +1750,27 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 	 * If the configuration 'remoteAccessor' item is true the method
 	 * instantiates the application {@code Accessor} object.
 	 * <p>
+	 * The first Accessor instance is put in the pool from which the requests
+	 * borrow it (see {@link #acquireAccessor(RequestContext)}).
+	 * <p>
 	 * On the success of the previously described activities, at last, it creates the
-	 * {@code MethodExecutor}, the {@code ReportManager} and the
-	 * {@code BirtManager} objects (the latter only if the configuration
+	 * {@code BirtManager} object (only if the configuration
 	 * 'use_BIRT_engine' item is true)
 	 * <p>
-	 * The method, also, instantiate a {@code DbConnectionGrabber} object the
-	 *  methods of which are used along the whole life of the
-	 * servlet .
+	 * The {@code MethodExecutor}, the {@code ReportManager} and the
+	 * {@code DbConnectionGrabber} objects, instead, are created for each
+	 * request, in its {@code RequestContext} object; the latter gets its
+	 * connections from the {@code ConnectionPool} object created here, the
+	 * dimensioning of which is read from the 'connPool...' items of the
+	 * 'JotyServer.xml' file.
 	 * 
 	 * @see ConfigFile
 	 * @see MethodExecutor
 	 * @see ReportManager
 	 * @see BirtManager
 	 * @see DbConnectionGrabber
+	 * @see ConnectionPool
+	 * @see RequestContext
 	 */
 	@Override
 	public void init() throws ServletException {
@@ -1314,7 +1798,17 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 			m_paginationPageSize = getConfStr("pageSize");
 
 			m_dbmsSessionPreset = m_serverConfig.configTermValue("dbmsSessionPreset");
+			m_responseChunkSize = getServerConfInt("responseChunkSize", 32768);
+			m_queryFetchSize = getServerConfInt("queryFetchSize", 0);
+			m_compressionThreshold = getServerConfInt("compressionThreshold", 2048);
+			m_stmntBatchSize = getServerConfInt("stmntBatchSize", 50);
+			m_metadataCache = new MetadataCache(m_intDigitDim, getServerConfInt("metadataCacheSize", 256), getServerConfInt("metadataCacheTtl", 600));
+			if (getServerConfBool("asyncLogging", false)) {
+				Logger.startAsyncMode(getServerConfInt("logBufferSize", 4096), logOverflowPolicy());
+			}
 			m_paginationQuery = m_serverConfig.configTermValue("selectorStatement");
+			m_keysetQuery = m_serverConfig.configTermValue("keysetSelectorStatement");
+			m_nullsFirstInAscOrder = getServerConfBool("nullsFirstInAscOrder", true);
 
 			Utilities.m_encoding = "UTF-8";
 			loadLanguages();
@@ -1327,81 +1821,46 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 				m_shared = getConfBool("shared");
 				m_sharingKeyField = getConfStr("sharingKeyField");
 			}
-			m_errorCarrier = new ErrorCarrier();
-			responseText();
+			if (m_debug)
+				try {
+					m_requestSchema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new File(getServletContext().getRealPath("/JotyRequest.xsd")));
+				} catch (SAXException e) {
+					jotyMessage(e);
+				}
+			if (m_configurationLoaded)
+				buildConfigPayloads();
+			ErrorCarrier errorCarrier = new ErrorCarrier();
 			if (m_configurationLoaded) {
+				m_connectionPool = new ConnectionPool(this, getConfStr("dataSourceName"), m_dbmsSessionPreset, 
+														getServerConfInt("connPoolMaxSize", 8), 
+														getServerConfInt("connPoolMaxTotalSize", 0), 
+														getServerConfInt("connPoolIdleTimeout", 300), 
+														getServerConfInt("connPoolBorrowTimeout", 30), 
+														getServerConfBool("connPoolValidateOnBorrow", true), 
+														getServerConfInt("stmntCacheSize", 32));
 				try {
-					m_dbManager = Instantiator.createDbManager(m_errorCarrier, m_configuration);
+					m_dbManager = Instantiator.createDbManager(errorCarrier, m_configuration);
 				} catch (ClassNotFoundException e) {
 					jotyMessage(e);
 				}
-				m_connGrabber = new DbConnectionGrabber() {
-					@Override
-					public Connection acquireConnection() throws SQLException, NamingException {
-						return acquireConnection(false);
-					}
-
-					@Override
-					public Connection acquireConnection(boolean autoCommit) throws SQLException, NamingException {
-						return acquireConnection(autoCommit, true);
-					}
-
-					@Override
-					public Connection acquireConnection(boolean autoCommit, boolean setContainerReference) throws SQLException, NamingException {
-						Connection retVal = null;
-						if (! setContainerReference || m_conn == null) {
-							InitialContext ic;
-							ic = new InitialContext();
-							DataSource ds = null;
-							try {
-								ds = (DataSource) ic.lookup("java:/comp/env/" + getConfStr("dataSourceName"));
-							} catch (ConfigException e) {
-								jotyMessage(e);
-							}
-							retVal = ds.getConnection(m_user, m_password);
-							retVal.setAutoCommit(autoCommit);
-							if (m_dbmsSessionPreset != null)
-								retVal.createStatement().execute(m_dbmsSessionPreset);
-						}
-						if (setContainerReference)
-							m_conn = retVal;
-						return retVal;
-					}
-
-					@Override
-					public void releaseConnection() {
-						if (m_conn != null) {
-							try {
-								m_conn.close();
-							} catch (SQLException e) {
-								jotyMessage(e);
-							}
-							m_conn = null;
-						}
-					}
-				};
 				if (m_remoteAccessor)
 					try {
-						m_accessor = Instantiator.createAccessor(this, m_errorCarrier, m_serverConfig, m_configuration, m_connGrabber);
-						if (m_accessor == null)
+						Accessor accessor = createAccessor(errorCarrier, null);
+						if (accessor == null)
 							jotyWarning("Accessor not specified or not found !");
 						else {
-							m_accessor.setPaginationQuery(m_paginationQuery, m_paginationPageSize);
-							m_accessor.setLangLiteralRetCodeMapper(m_langLiteralRetCodeMapper);
-							m_queryDefParamContext = new ParamContext(this);
+							m_accessorPool.add(accessor);
+							m_accessorAvailable = true;
 						}
 					} catch (ClassNotFoundException e) {
 						jotyMessage(e);
 					}
-				if (!m_remoteAccessor || m_accessor != null) {
-					m_methodExecutor = new MethodExecutor(m_accessor, m_errorCarrier, m_returnedValues, m_connGrabber);
+				if (!m_remoteAccessor || m_accessorAvailable) {
 					m_use_BIRT = getConfBool("use_BIRT_engine");
-					m_reportManager = new ReportManager();
-					m_reportManager.setXmlEncoder(m_xmlEncoder);
 					if (m_use_BIRT) {
 						String reportsDirectoryName = "/JotyServerReports";
 						Utilities.checkDirectory(getServletContext().getRealPath(reportsDirectoryName));
-						m_BirtManager = new BirtManager(m_reportManager);
+						m_BirtManager = new BirtManager(null);
 						m_BirtManager.setRealPath(getServletContext().getRealPath(reportsDirectoryName) + "/");
 						m_BirtManager.init(getConfStr("rptDesignsPath"), getConfStr("rptDocumentsPath"), 
 											getConfStr("rptOutputsPath"), getConfStr("rptLogsPath"));
@@ -1409,6 +1868,33 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 						String jdbcClassName = getConfStr("jdbcDriverClass");
 						m_msSqlServer = Utilities.isMsSqlServer(jdbcClassName);
 						m_BirtManager.setJdbcDriverClass(jdbcClassName);
+						m_BirtManager.setMemoryDocumentSize(getServerConfInt("reportMemoryDocumentSize", 1024) * 1024L);
+						if (getServerConfBool("reportPreload", false)) {
+							Thread preloader = new Thread(new Runnable() {
+								@Override
+								public void run() {
+									jotyWarning("Report designs preloaded : " + m_BirtManager.preloadDesigns());
+								}
+							}, "JotyReportPreloader");
+							preloader.setDaemon(true);
+							preloader.start();
+						}
+						// opt-in: the cached outputs are served until they expire, unless the
+						// accessor methods that modify the data invoke invalidateReports
+						int reportCacheSize = getServerConfInt("reportCacheSize", 0);
+						if (reportCacheSize > 0) {
+							m_reportCache = new ReportCache(getServletContext().getRealPath(reportsDirectoryName + "/cache"), 
+															reportCacheSize * 1024L * 1024L, 
+															getServerConfInt("reportCacheTtl", 3600));
+							m_BirtManager.setReportCache(m_reportCache);
+							for (Accessor accessor : m_accessorPool)
+								accessor.setReportCache(m_reportCache);
+						}
+						m_reportJobs = new ReportJobQueue(m_BirtManager, getServletContext().getRealPath(reportsDirectoryName + "/jobs"), 
+															getServerConfInt("reportWorkers", 2), 
+															getServerConfInt("reportQueueSize", 16), 
+															getServerConfInt("reportJobTtl", 600), 
+															this);
 					}
 				}
 			}
@@ -1418,6 +1904,21 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		super.init();
 	}
 
+	@Override
+	public void destroy() {
+		if (m_connectionPool != null) {
+			jotyWarning(m_connectionPool.statistics());
+			jotyWarning(m_metadataCache.statistics());
+			m_connectionPool.close();
+		}
+		if (m_reportJobs != null)
+			m_reportJobs.shutdown();
+		if (m_reportCache != null)
+			jotyWarning(m_reportCache.statistics());
+		Logger.stopAsyncMode();
+		super.destroy();
+	}
+
 	private void checkHostLogLocation() {
 		if ( ! m_hostLogNameSet) {
 			Logger.setHostLogName("JotyServerLog", getServletContext().getRealPath("/JotyLogs"));
@@ -1467,48 +1968,6 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 			jotyWarning("\n    Failure report forwarded to the client : \n    " + reason);
 	}
 
-	/**
-	 * Makes the PostStatement object members to receive their values by extracting them from the xml node {@code currNode}.
-	 * @param postStatement target PostStatement object 
-	 * @param currNode source xml node
-	 */
-	void readPostStatement(PostStatement postStatement, Node currNode) {
-		postStatement.m_sql = getNodeValue(currNode, "SqlStmnt");
-		currNode = currNode.getNextSibling();
-		postStatement.m_autoId = getNodeValue(currNode, "AutoId");
-		currNode = currNode.getNextSibling();
-		postStatement.m_genTable = getNodeValue(currNode, "GenTable");
-		currNode = currNode.getNextSibling();
-		postStatement.m_verifyExpr = getNodeValue(currNode, "VerifyExpr");
-		currNode = currNode.getNextSibling();
-		postStatement.m_method = getNodeValue(currNode, "Method");
-		currNode = currNode.getNextSibling();
-
-		postStatement.m_firstOutParamPos = getNodeValue(currNode, "FOPP");
-		currNode = currNode.getNextSibling();
-		postStatement.m_outParamsQty = getNodeValue(currNode, "OPQ");
-		currNode = currNode.getNextSibling();
-
-		postStatement.m_AccessorContext = getNodeValue(currNode, "AccessContext");
-		currNode = currNode.getNextSibling();
-		postStatement.m_dataPanelIdx = getNodeValue(currNode, "PanelIdx");
-		currNode = currNode.getNextSibling();
-		postStatement.m_termName = getNodeValue(currNode, "TermName");
-		currNode = currNode.getNextSibling();
-		postStatement.m_mainFilter = getNodeValue(currNode, "MainFilter");
-		currNode = currNode.getNextSibling();
-		postStatement.m_sortExpr = getNodeValue(currNode, "SortExpr");
-		currNode = currNode.getNextSibling();
-		postStatement.m_iteration = getNodeValue(currNode, "Iteration");
-		currNode = currNode.getNextSibling();
-		String attributeNTRA = getNodeValue(currNode, "NMRA");
-		postStatement.m_nonManagedRollbackActionIden = (attributeNTRA == null || attributeNTRA.length() == 0) ? 0 : Integer.parseInt(attributeNTRA);
-		if (postStatement.m_nonManagedRollbackActionIden != 0)
-			currNode = currNode.getNextSibling();
-		getStmntItems(currNode, postStatement);
-
-	}
-
 	private void renderError(OutPrinterWrapper wrapper, String reason) {
 		logUncodedFailureReport(reason);
 		wrapper.append("<Result><Value>Nok</Value><Reason>" + m_xmlEncoder.encode(reason, false) + "</Reason></Result>");
@@ -1518,27 +1977,126 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		renderError(wrapper, "SESSION_EXP");
 	}
 
-	private void renderSessionID(OutPrinterWrapper wrapper) {
-		wrapper.append("<S_ID>" + m_sessionID + "</S_ID>");
+	private void renderSessionID(RequestContext ctx, OutPrinterWrapper wrapper) {
+		wrapper.append("<S_ID>" + ctx.m_sessionID + "</S_ID>");
 	}
 
-	private void renderXmlFooter(OutPrinterWrapper wrapper) {
-		renderSessionID(wrapper);
+	private void renderXmlFooter(RequestContext ctx, OutPrinterWrapper wrapper) {
+		renderSessionID(ctx, wrapper);
 		wrapper.append(xmlRootNode(false));
 	}
 
 	private void renderXmlHeader(OutPrinterWrapper wrapper) {
-		wrapper.append("<?xml version='1.0' encoding='UTF-8' ?>" + xmlRootNode(true));
+		wrapper.append(xmlHeader());
+	}
+
+	private String xmlHeader() {
+		return "<?xml version='1.0' encoding='UTF-8' ?>" + xmlRootNode(true);
+	}
+
+	/**
+	 * Serves the 'config' command by means of the response prepared at
+	 * initialization time, if any: if the 'If-None-Match' header of the
+	 * request matches its entity tag the response has no content and the
+	 * 304 status code; in this case no session is created.
+	 * 
+	 * @return false if the response has not been prepared for the requested
+	 *         type and language
+	 * 
+	 * @see #buildConfigPayloads()
+	 */
+	private boolean renderConfigPayload(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String key = configPayloadKey(request.getParameter("type"), request.getParameter("lang"));
+		ConfigPayload payload = key == null || m_configPayloads == null ? null : m_configPayloads.get(key);
+		if (payload == null)
+			return false;
+		if (payload.matches(request.getHeader("If-None-Match"))) {
+			response.setHeader("ETag", payload.m_etag);
+			response.setHeader("Cache-Control", "no-cache");
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			if (m_debug)
+				jotyWarning("    Response : not modified " + key.replace('\n', ' '));
+		} else {
+			HttpSession session = request.getSession(true);
+			String sessionID = request.isRequestedSessionIdFromCookie() ? "" : session.getId();
+			payload.write(response, 
+							m_compressionThreshold > 0 && "gzip".equals(ResponseOutputStream.chooseEncoding(request.getHeader("Accept-Encoding"))), 
+							"<S_ID>" + sessionID + "</S_ID>" + xmlRootNode(false));
+			if (m_debug)
+				jotyWarning("    Response : prepared configuration " + key.replace('\n', ' ') + " " + payload.m_etag);
+		}
+		return true;
+	}
+
+	/**
+	 * Prepares the responses to the 'config' command for the configuration
+	 * file and for the dictionaries of each language.
+	 */
+	private void buildConfigPayloads() throws IOException {
+		m_configPayloads = new HashMap<String, ConfigPayload>();
+		addConfigPayload("conf", null, m_configuration);
+		for (String lang : m_langVector) {
+			addConfigPayload("jotyLang", lang, m_JotyLangs.get(lang));
+			addConfigPayload("appLang", lang, m_JotyAppLangs.get(lang));
+		}
+	}
+
+	private void addConfigPayload(String type, String lang, ConfigFile configFile) throws IOException {
+		if (configFile != null && configFile.m_fileContent != null)
+			m_configPayloads.put(configPayloadKey(type, lang), 
+									new ConfigPayload(xmlHeader() + 
+														String.format("<Result><Value>Ok</Value><ConfigData>%1$s</ConfigData></Result>", 
+																		m_xmlEncoder.encode(configFile.m_fileContent, false)), 
+														m_compressionThreshold));
+	}
+
+	/**
+	 * @return the key of the prepared response or null if the response is not
+	 *         prepared for the type
+	 */
+	private String configPayloadKey(String type, String lang) {
+		if (type == null)
+			return null;
+		else if (type.compareToIgnoreCase("conf") == 0)
+			return "conf";
+		else if (lang != null && (type.compareToIgnoreCase("jotyLang") == 0 || type.compareToIgnoreCase("appLang") == 0))
+			return type.toLowerCase() + "\n" + lang.toLowerCase();
+		else
+			return null;
+	}
+
+	/**
+	 * Gives the {@code Accessor} instance used by the request back to the pool.
+	 * 
+	 * @see #acquireAccessor(RequestContext)
+	 */
+	protected void releaseAccessor(RequestContext ctx) {
+		if (ctx.m_accessor != null) {
+			ctx.m_accessor.setConn(null);
+			ctx.m_accessor.setPostStatement(null);
+			m_accessorPool.add(ctx.m_accessor);
+			ctx.m_accessor = null;
+		}
 	}
 
 	protected BirtManager reportManager() {
 		return m_BirtManager;
 	}
 
-	protected boolean rollback() {
+	/**
+	 * Provides the request with its own {@code MethodExecutor} instance, bound
+	 * to the members of the request context.
+	 */
+	protected MethodExecutor methodExecutor(RequestContext ctx) {
+		if (ctx.m_methodExecutor == null)
+			ctx.m_methodExecutor = new MethodExecutor(ctx.m_accessor, ctx.m_errorCarrier, ctx.m_returnedValues, ctx.m_connGrabber);
+		return ctx.m_methodExecutor;
+	}
+
+	protected boolean rollback(RequestContext ctx) {
 		boolean retVal = false;
 		try {
-			m_conn.rollback();
+			ctx.m_conn.rollback();
 			retVal = true;
 		} catch (SQLException e) {
 			jotyMessage(e);
@@ -1546,20 +2104,11 @@ public class JotyServer extends HttpServlet implements JotyMessenger {
 		return retVal;
 	}
 
-	StringBuilder responseText() {
-		if (m_responseText==null)
-			m_responseText = new StringBuilder();
-		return m_responseText;
-	}
-	
 	@Override
 	protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		checkHostLogLocation();
-		if (m_debug) {
+		if (m_debug)
 			jotyWarning("HTTP" + (request.isSecure() ? "S" : "") + " - " + request.getMethod() + "\n    Querystring : \n    " + request.getQueryString());
-			responseText().setLength(0);
-		}
-		m_outWriter = response.getWriter();
 		setNoCacheHeaders(response);
 		response.setCharacterEncoding("UTF-8");
 		super.service(request, response);
@@ -0,0 +1,232 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joty.access.BirtManager;
+import org.joty.common.JotyMessenger;
+import org.joty.common.ReportManager;
+
+/**
+ * Builds the reports requested by the 'reportSubmit' command out of the
+ * request threads, by means of a bounded pool of worker threads fed by a
+ * bounded queue.
+ * <p>
+ * Each job works with its own {@code BirtManager} instance, obtained by
+ * {@link BirtManager#jobManager(String)}, and with its own directory, named
+ * after the identifier of the job, so that concurrent reports, even of the
+ * same name, don't interfere. The job belongs to the http session that
+ * submitted it: the state of the job can be asked for ('reportStatus') and
+ * the output file can be fetched ('reportFetch') only within that session.
+ * <p>
+ * A job is discarded, together with its directory, when its output has been
+ * fetched or when, once it has ended, it is not fetched within the time to
+ * live: the expired jobs are looked for periodically and at each submission.
+ * The directories left by a previous run of the server are deleted at
+ * start-up.
+ * 
+ * @see JotyServer#submitReportJob
+ */
+class ReportJobQueue {
+
+	enum State {
+		QUEUED, RUNNING, DONE, FAILED
+	}
+
+	static class ReportJob {
+		String m_id;
+		String m_sessionID;
+		String m_name;
+		String m_renderType;
+		volatile State m_state;
+		String m_failure;
+		File m_dir;
+		File m_file;
+		volatile long m_endTime;
+	}
+
+	private BirtManager m_birtManager;
+	private File m_jobsDir;
+	private ThreadPoolExecutor m_executor;
+	private ScheduledExecutorService m_purger;
+	private ConcurrentHashMap<String, ReportJob> m_jobs;
+	private long m_ttl;
+	private JotyMessenger m_jotyMessenger;
+
+	/**
+	 * @param birtManager
+	 *            the manager owning the engine
+	 * @param jobsDir
+	 *            the directory that hosts the directories of the jobs
+	 * @param workers
+	 *            the number of the reports that can be built at the same time
+	 * @param queueSize
+	 *            the number of the jobs that can wait for a worker
+	 * @param ttl
+	 *            the time (seconds) the output of a job is kept waiting to be
+	 *            fetched
+	 */
+	ReportJobQueue(BirtManager birtManager, String jobsDir, int workers, int queueSize, int ttl, JotyMessenger jotyMessenger) {
+		m_birtManager = birtManager;
+		m_jobsDir = new File(jobsDir);
+		m_jobsDir.mkdirs();
+		File[] leftovers = m_jobsDir.listFiles();
+		if (leftovers != null)
+			for (File leftover : leftovers)
+				deleteDir(leftover);
+		m_ttl = ttl * 1000L;
+		m_jotyMessenger = jotyMessenger;
+		m_jobs = new ConcurrentHashMap<String, ReportJob>();
+		m_executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+			AtomicInteger m_count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread retVal = new Thread(runnable, "JotyReportWorker-" + m_count.incrementAndGet());
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		});
+		m_purger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread retVal = new Thread(runnable, "JotyReportJobPurger");
+				retVal.setDaemon(true);
+				return retVal;
+			}
+		});
+		long purgePeriod = Math.max(m_ttl / 2, 10000L);
+		m_purger.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				purge();
+			}
+		}, purgePeriod, purgePeriod, TimeUnit.MILLISECONDS);
+	}
+
+	private void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null)
+			for (File file : files)
+				if (file.isDirectory())
+					deleteDir(file);
+				else
+					file.delete();
+		dir.delete();
+	}
+
+	/**
+	 * Returns the job if it exists and it belongs to the session.
+	 */
+	ReportJob job(String id, String sessionID) {
+		ReportJob retVal = id == null ? null : m_jobs.get(id);
+		return retVal != null && retVal.m_sessionID.equals(sessionID) ? retVal : null;
+	}
+
+	/**
+	 * Discards the ended jobs the time to live of which is expired. It runs
+	 * both in the purging thread and in the request threads: a job is
+	 * deleted by the caller that actually removes it from the map.
+	 */
+	private void purge() {
+		long now = System.currentTimeMillis();
+		for (ReportJob job : m_jobs.values())
+			if (job.m_endTime > 0 && now - job.m_endTime > m_ttl)
+				remove(job);
+	}
+
+	void remove(ReportJob job) {
+		if (m_jobs.remove(job.m_id, job))
+			deleteDir(job.m_dir);
+	}
+
+	private void run(ReportJob job, String user, String password, String language, ReportManager reportManager, boolean twoProcesses) {
+		job.m_state = State.RUNNING;
+		try {
+			BirtManager birtManager = m_birtManager.jobManager(job.m_dir.getPath() + File.separator);
+			birtManager.setReportManager(reportManager);
+			birtManager.setUser(user);
+			birtManager.setPassword(password);
+			birtManager.setLanguage(language);
+			birtManager.buildReport(job.m_name, job.m_renderType, twoProcesses);
+			if (birtManager.m_exception == null && !birtManager.initied())
+				birtManager.m_exception = "Report engine initialization failure !";
+			if (birtManager.m_exception == null) {
+				job.m_file = new File(job.m_dir, job.m_name + "." + BirtManager.fileExtension(job.m_renderType));
+				if (!job.m_file.exists())
+					birtManager.m_exception = "Report output not found !";
+			}
+			job.m_failure = birtManager.m_exception;
+		} catch (Throwable t) {
+			m_jotyMessenger.jotyMessage(t);
+			job.m_failure = t.toString();
+		}
+		job.m_endTime = System.currentTimeMillis();
+		job.m_state = job.m_failure == null ? State.DONE : State.FAILED;
+	}
+
+	void shutdown() {
+		m_purger.shutdownNow();
+		m_executor.shutdownNow();
+	}
+
+	/**
+	 * Queues the building of the report.
+	 * 
+	 * @return the job or null if the queue is full
+	 */
+	ReportJob submit(String sessionID, final String user, final String password, final String language, final ReportManager reportManager, 
+						String name, String renderType, final boolean twoProcesses) {
+		purge();
+		final ReportJob job = new ReportJob();
+		job.m_id = UUID.randomUUID().toString();
+		job.m_sessionID = sessionID;
+		job.m_name = name;
+		job.m_renderType = renderType;
+		job.m_state = State.QUEUED;
+		job.m_dir = new File(m_jobsDir, job.m_id);
+		job.m_dir.mkdirs();
+		m_jobs.put(job.m_id, job);
+		try {
+			m_executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					ReportJobQueue.this.run(job, user, password, language, reportManager, twoProcesses);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			remove(job);
+			return null;
+		}
+		return job;
+	}
+
+}
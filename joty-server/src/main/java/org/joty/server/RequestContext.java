@@ -0,0 +1,98 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.util.Vector;
+
+import org.joty.access.Accessor;
+import org.joty.access.DbManager;
+import org.joty.access.MethodExecutor;
+import org.joty.access.PostStatement;
+import org.joty.access.DbManager.DbConnectionGrabber;
+import org.joty.common.CaselessStringKeyMap;
+import org.joty.common.ErrorCarrier;
+import org.joty.common.JotyMessenger;
+import org.joty.common.ReportManager;
+
+/**
+ * Holds the whole state of a single Joty request served by the
+ * {@code JotyServer} instance.
+ * <p>
+ * The servlet instance is shared by all the threads of the servlet container
+ * so that nothing that changes during the serving of a request can live in
+ * its members: an instance of this class is created at the beginning of
+ * {@code doGet} or {@code doPost} and travels along all the methods that
+ * contribute to build the response.
+ * <p>
+ * The objects that are not thread safe by themselves, like the
+ * {@code Accessor} instance, the {@code MethodExecutor} and the
+ * {@code ReportManager}, are referenced here too, so that each request works
+ * with its own copy.
+ * 
+ * @see JotyServer
+ * 
+ */
+public class RequestContext {
+	public PrintWriter m_outWriter;
+	public StringBuilder m_responseText;
+	public Connection m_conn;
+	public String m_user;
+	public String m_password;
+	public String m_sharingKey;
+	public String m_sessionID;
+	public String m_command;
+	public Vector<PostStatement> m_postStatements;
+	public PostStatement m_queryDefPostStatement;
+	public Vector<byte[]> m_bytesElems;
+	/**
+	 * holds the generated values resulting by the execution of
+	 * {@link JotyServer#dbExecute(RequestContext)}
+	 */
+	public Vector<String> m_returnedValues;
+	public boolean m_success;
+	public ErrorCarrier m_errorCarrier;
+	public byte[] m_bytes;
+	public long m_autoIdVal;
+	public String m_autoId;
+	public int m_statementIndex;
+	public CaselessStringKeyMap<Integer> m_smallBlobs;
+	public DbConnectionGrabber m_connGrabber;
+	public Accessor m_accessor;
+	public MethodExecutor m_methodExecutor;
+	public ReportManager m_reportManager;
+	public DbManager m_dbManager;
+
+	public RequestContext(JotyMessenger jotyMessanger, PrintWriter outWriter) {
+		m_outWriter = outWriter;
+		m_responseText = new StringBuilder();
+		m_sessionID = "";
+		m_autoId = "";
+		m_postStatements = new Vector<PostStatement>();
+		m_queryDefPostStatement = new PostStatement(jotyMessanger);
+		m_bytesElems = new Vector<byte[]>();
+		m_returnedValues = new Vector<String>();
+		m_errorCarrier = new ErrorCarrier();
+		m_errorCarrier.clear();
+		m_smallBlobs = new CaselessStringKeyMap<Integer>(jotyMessanger);
+	}
+
+}
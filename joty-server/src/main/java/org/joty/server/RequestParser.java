@@ -0,0 +1,292 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Vector;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joty.access.PostStatement;
+import org.joty.common.JotyMessenger;
+import org.joty.common.ReportManager.Parameter;
+
+/**
+ * Reads the body of a Joty request directly from the stream of the Http Post
+ * command, by means of a StAX pull parser, and fills the structures of the
+ * {@code RequestContext} object: the {@code PostStatement} objects with their
+ * {@code Item} objects, the query definition, the list of the small blobs,
+ * the report parameters and the binary contents.
+ * <p>
+ * The parsing does not depend on the Joty command because the elements of
+ * the request describe themselves (see JotyRequest.xsd); this allows the body
+ * to be consumed before any access to the request parameters.
+ * <p>
+ * The content of the 'Binary' nodes is decoded from Base64, as the parser
+ * delivers it, straight into an array of bytes.
+ * <p>
+ * The {@code XMLInputFactory} instance is created once and shared: after its
+ * configuration it is only used to create the readers.
+ * 
+ * @see JotyServer#doPost
+ */
+public class RequestParser {
+
+	/** Decodes Base64 text supplied in pieces of any length. */
+	static class Base64Sink {
+		private static final int[] m_values = new int[128];
+		static {
+			Arrays.fill(m_values, -1);
+			String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+			for (int i = 0; i < alphabet.length(); i++)
+				m_values[alphabet.charAt(i)] = i;
+		}
+
+		private ByteArrayOutputStream m_out = new ByteArrayOutputStream();
+		private int m_bits;
+		private int m_count;
+
+		/** Characters outside the alphabet (line breaks, padding) are skipped. */
+		void write(char[] chars, int start, int length) {
+			int value;
+			char ch;
+			for (int i = start; i < start + length; i++) {
+				ch = chars[i];
+				value = ch < 128 ? m_values[ch] : -1;
+				if (value < 0)
+					continue;
+				m_bits = (m_bits << 6) | value;
+				if (++m_count == 4) {
+					m_out.write(m_bits >> 16);
+					m_out.write(m_bits >> 8);
+					m_out.write(m_bits);
+					m_bits = 0;
+					m_count = 0;
+				}
+			}
+		}
+
+		byte[] toByteArray() {
+			if (m_count == 2)
+				m_out.write(m_bits >> 4);
+			else if (m_count == 3) {
+				m_out.write(m_bits >> 10);
+				m_out.write(m_bits >> 2);
+			}
+			return m_out.toByteArray();
+		}
+	}
+
+	private static final XMLInputFactory m_inputFactory = createInputFactory();
+
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		return factory;
+	}
+
+	private JotyMessenger m_jotyMessenger;
+	private RequestContext m_ctx;
+	private boolean m_withReportParms;
+	private XMLStreamReader m_reader;
+
+	/**
+	 * @param jotyMessenger
+	 *            the messenger for the created {@code PostStatement} objects
+	 * @param ctx
+	 *            the target request context
+	 * @param withReportParms
+	 *            if false the report parameters are skipped
+	 */
+	public RequestParser(JotyMessenger jotyMessenger, RequestContext ctx, boolean withReportParms) {
+		m_jotyMessenger = jotyMessenger;
+		m_ctx = ctx;
+		m_withReportParms = withReportParms;
+	}
+
+	/**
+	 * Parses the request body.
+	 * 
+	 * @param inputStream
+	 *            the UTF-8 encoded body
+	 * @return the content of the 'QueryStmnt' node or null if it is missing
+	 * @throws XMLStreamException
+	 */
+	public String parse(InputStream inputStream) throws XMLStreamException {
+		m_ctx.m_postStatements.removeAllElements();
+		m_ctx.m_bytesElems.removeAllElements();
+		m_ctx.m_returnedValues.removeAllElements();
+		m_ctx.m_smallBlobs.clear();
+		String retVal = null;
+		int smallBlobIndex = 0;
+		m_reader = m_inputFactory.createXMLStreamReader(inputStream, "UTF-8");
+		try {
+			while (m_reader.hasNext()) {
+				if (m_reader.next() != XMLStreamConstants.START_ELEMENT)
+					continue;
+				switch (m_reader.getLocalName()) {
+					case "Stmnt":
+						PostStatement postStatement = new PostStatement(m_jotyMessenger);
+						readPostStatement(postStatement);
+						m_ctx.m_postStatements.add(postStatement);
+						break;
+					case "Binary":
+						m_ctx.m_bytesElems.add(readBinary());
+						break;
+					case "QueryStmnt":
+						retVal = m_reader.getElementText();
+						break;
+					case "QueryDef":
+						m_ctx.m_queryDefPostStatement.clear();
+						readPostStatement(m_ctx.m_queryDefPostStatement);
+						break;
+					case "Field":
+						m_ctx.m_smallBlobs.put(m_reader.getElementText(), smallBlobIndex++);
+						break;
+					case "ReportParms":
+						if (m_withReportParms)
+							readReportParms();
+						break;
+				}
+			}
+		} finally {
+			m_reader.close();
+		}
+		return retVal;
+	}
+
+	/** Reads the children of a 'Stmnt' or 'QueryDef' node. */
+	private void readPostStatement(PostStatement postStatement) throws XMLStreamException {
+		String value;
+		while (m_reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			String name = m_reader.getLocalName();
+			if (name.equals("Items")) {
+				String[] item;
+				while ((item = readItem()) != null)
+					postStatement.m_items.add(postStatement.new Item(item[0], item[1], Integer.parseInt(item[2])));
+				continue;
+			}
+			if (name.equals("SeekValues")) {
+				Vector<String> values = new Vector<String>();
+				while (m_reader.nextTag() == XMLStreamConstants.START_ELEMENT)
+					values.add(m_reader.getElementText());
+				postStatement.m_seekValues = values.toArray(new String[values.size()]);
+				continue;
+			}
+			value = m_reader.getElementText();
+			switch (name) {
+				case "SqlStmnt":
+					postStatement.m_sql = value;
+					break;
+				case "AutoId":
+					postStatement.m_autoId = value;
+					break;
+				case "GenTable":
+					postStatement.m_genTable = value;
+					break;
+				case "VerifyExpr":
+					postStatement.m_verifyExpr = value;
+					break;
+				case "Method":
+					postStatement.m_method = value;
+					break;
+				case "FOPP":
+					postStatement.m_firstOutParamPos = value;
+					break;
+				case "OPQ":
+					postStatement.m_outParamsQty = value;
+					break;
+				case "AccessContext":
+					postStatement.m_AccessorContext = value;
+					break;
+				case "PanelIdx":
+					postStatement.m_dataPanelIdx = value;
+					break;
+				case "TermName":
+					postStatement.m_termName = value;
+					break;
+				case "MainFilter":
+					postStatement.m_mainFilter = value;
+					break;
+				case "SortExpr":
+					postStatement.m_sortExpr = value;
+					break;
+				case "Iteration":
+					postStatement.m_iteration = value;
+					break;
+				case "NMRA":
+					postStatement.m_nonManagedRollbackActionIden = value.length() == 0 ? 0 : Integer.parseInt(value);
+					break;
+			}
+		}
+	}
+
+	private void readReportParms() throws XMLStreamException {
+		m_ctx.m_reportManager.resetParams();
+		String[] item;
+		while ((item = readItem()) != null) {
+			Parameter param = m_ctx.m_reportManager.new Parameter();
+			param.name = item[0];
+			param.type = Integer.parseInt(item[2]);
+			param.setValue(item[1], param.type);
+			m_ctx.m_reportManager.m_params.add(param);
+		}
+	}
+
+	/**
+	 * Reads the next 'Item' node of the current list.
+	 * 
+	 * @return the name, the value and the type of the item or null at the end
+	 *         of the list
+	 */
+	private String[] readItem() throws XMLStreamException {
+		if (m_reader.nextTag() != XMLStreamConstants.START_ELEMENT)
+			return null;
+		String[] retVal = new String[3];
+		while (m_reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+			String name = m_reader.getLocalName();
+			String value = m_reader.getElementText();
+			if (name.equals("Name"))
+				retVal[0] = value;
+			else if (name.equals("Val"))
+				retVal[1] = value;
+			else if (name.equals("Type"))
+				retVal[2] = value;
+		}
+		return retVal;
+	}
+
+	/** Decodes the text of the current 'Binary' node as it is delivered by the parser. */
+	private byte[] readBinary() throws XMLStreamException {
+		Base64Sink sink = new Base64Sink();
+		int event;
+		while ((event = m_reader.next()) != XMLStreamConstants.END_ELEMENT)
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+				sink.write(m_reader.getTextCharacters(), m_reader.getTextStart(), m_reader.getTextLength());
+		return sink.toByteArray();
+	}
+}
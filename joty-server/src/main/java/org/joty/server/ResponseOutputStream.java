@@ -0,0 +1,142 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The stream on which the Joty response is written when the client accepts a
+ * compressed content.
+ * <p>
+ * The bytes are held back until they reach the {@code threshold} size: if
+ * the response ends before, it is sent as it is; otherwise the
+ * 'Content-Encoding' header is set and the content goes on through a
+ * compressing stream. Once the compression is started, each {@code flush}
+ * performs a synchronous flush of the compressor so that the chunks of the
+ * response keep on reaching the client as they are produced.
+ * 
+ * @see JotyServer#createRequestContext
+ */
+public class ResponseOutputStream extends OutputStream {
+	private HttpServletResponse m_response;
+	private String m_encoding;
+	private int m_threshold;
+	private ByteArrayOutputStream m_pending;
+	private OutputStream m_target;
+
+	/**
+	 * @param response
+	 *            the servlet response
+	 * @param encoding
+	 *            either 'gzip' or 'deflate'
+	 * @param threshold
+	 *            the size in bytes beyond which the content is compressed
+	 */
+	public ResponseOutputStream(HttpServletResponse response, String encoding, int threshold) {
+		m_response = response;
+		m_encoding = encoding;
+		m_threshold = threshold;
+		m_pending = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Chooses the encoding among the ones accepted by the client, preferring
+	 * 'gzip'.
+	 * 
+	 * @param acceptEncoding
+	 *            the value of the 'Accept-Encoding' request header
+	 * @return the encoding or null if none of the supported ones is accepted
+	 */
+	public static String chooseEncoding(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return null;
+		boolean deflate = false;
+		String coding;
+		int paramsPos;
+		for (String item : acceptEncoding.split(",")) {
+			paramsPos = item.indexOf(';');
+			coding = (paramsPos < 0 ? item : item.substring(0, paramsPos)).trim();
+			if (paramsPos >= 0 && item.substring(paramsPos + 1).replace(" ", "").matches("q=0(\\.0*)?"))
+				continue;
+			if (coding.equalsIgnoreCase("gzip"))
+				return "gzip";
+			else if (coding.equalsIgnoreCase("deflate"))
+				deflate = true;
+		}
+		return deflate ? "deflate" : null;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (m_target == null) {
+			m_pending.write(b);
+			checkThreshold();
+		} else
+			m_target.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (m_target == null) {
+			m_pending.write(b, off, len);
+			checkThreshold();
+		} else
+			m_target.write(b, off, len);
+	}
+
+	/**
+	 * Before the threshold is reached there is nothing to do: the decision
+	 * about the compression would be taken too early.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (m_target != null)
+			m_target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (m_target == null) {
+			OutputStream out = m_response.getOutputStream();
+			m_pending.writeTo(out);
+			out.close();
+		} else
+			m_target.close();
+	}
+
+	private void checkThreshold() throws IOException {
+		if (m_pending.size() >= m_threshold) {
+			m_response.setHeader("Content-Encoding", m_encoding);
+			m_response.addHeader("Vary", "Accept-Encoding");
+			OutputStream out = m_response.getOutputStream();
+			m_target = m_encoding.equals("gzip") ? 
+							new GZIPOutputStream(out, 8192, true) : 
+							new DeflaterOutputStream(out, true);
+			m_pending.writeTo(m_target);
+			m_pending = null;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Core.
+
+	Joty 2.0 Core is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Core is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Core.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joty.common.JotyMessenger;
+
+/**
+ * Keeps the prepared statements of a single physical connection, so that a
+ * statement text that comes back, in the same request or in later ones served
+ * by the same pooled connection, doesn't need to be prepared again.
+ * <p>
+ * The statements are addressed by the sql text together with the name of the
+ * field, if any, the generated value of which is to be returned. The cache is
+ * bounded by {@code m_maxSize}: the least recently used statement is closed
+ * when a new one would exceed the limit.
+ * <p>
+ * An instance is used by one request at a time, like the connection it
+ * belongs to, then it is not synchronized; the hit and miss counters are
+ * shared by all the instances of the {@code ConnectionPool} object.
+ * 
+ * @see ConnectionPool#statementCache(Connection)
+ * 
+ */
+public class StatementCache {
+	private Connection m_conn;
+	private int m_maxSize;
+	private LinkedHashMap<String, PreparedStatement> m_statements;
+	private ConnectionPool m_connectionPool;
+	private JotyMessenger m_jotyMessanger;
+
+	StatementCache(ConnectionPool connectionPool, Connection conn, int maxSize, JotyMessenger jotyMessanger) {
+		m_connectionPool = connectionPool;
+		m_conn = conn;
+		m_maxSize = maxSize;
+		m_jotyMessanger = jotyMessanger;
+		m_statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > m_maxSize) {
+					closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/** Closes all the statements: the connection is about to be closed. */
+	void close() {
+		for (Iterator<PreparedStatement> it = m_statements.values().iterator(); it.hasNext();) {
+			closeQuietly(it.next());
+			it.remove();
+		}
+	}
+
+	private void closeQuietly(PreparedStatement stmnt) {
+		try {
+			stmnt.close();
+		} catch (SQLException e) {
+			m_jotyMessanger.jotyMessage(e);
+		}
+	}
+
+	/**
+	 * Removes the statement from the cache and closes it. It is to be invoked
+	 * when the execution of the statement has failed.
+	 */
+	public void evict(String sql, String autoId) {
+		PreparedStatement stmnt = m_statements.remove(key(sql, autoId));
+		if (stmnt != null)
+			closeQuietly(stmnt);
+	}
+
+	private String key(String sql, String autoId) {
+		return autoId == null || autoId.length() == 0 ? sql : (autoId + "\n" + sql);
+	}
+
+	/**
+	 * Returns the cached statement for the text and the auto-increment field
+	 * name, preparing it if it is not there.
+	 * 
+	 * @param autoId
+	 *            the name of the field the generated value of which is
+	 *            requested, or null
+	 */
+	public PreparedStatement prepare(String sql, String autoId) throws SQLException {
+		String key = key(sql, autoId);
+		PreparedStatement retVal = m_statements.get(key);
+		if (retVal == null || retVal.isClosed()) {
+			m_connectionPool.m_stmntCacheMisses.incrementAndGet();
+			retVal = autoId == null || autoId.length() == 0 ? m_conn.prepareStatement(sql) : m_conn.prepareStatement(sql, new String[] { autoId });
+			m_statements.put(key, retVal);
+		} else
+			m_connectionPool.m_stmntCacheHits.incrementAndGet();
+		return retVal;
+	}
+
+	/**
+	 * Gives back the statement after its execution, releasing the values
+	 * bound to its parameters.
+	 */
+	public void release(PreparedStatement stmnt) throws SQLException {
+		stmnt.clearParameters();
+	}
+
+	public int size() {
+		return m_statements.size();
+	}
+
+}
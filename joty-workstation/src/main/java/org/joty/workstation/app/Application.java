@@ -67,6 +67,9 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.jnlp.BasicService;
 import javax.jnlp.ServiceManager;
@@ -79,6 +82,7 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.text.MaskFormatter;
 import javax.xml.bind.DatatypeConverter;
@@ -88,6 +92,7 @@ import org.joty.access.BirtManager;
 import org.joty.access.DbManager;
 import org.joty.access.Instantiator;
 import org.joty.access.Logger;
+import org.joty.access.MetadataCache;
 import org.joty.access.MethodExecutor;
 import org.joty.access.PostStatement;
 import org.joty.app.Common;
@@ -116,7 +121,6 @@ import org.joty.data.JotyDate;
 import org.joty.data.SearchQueryBuilderFront;
 import org.joty.data.WrappedField;
 import org.joty.web.AbstractWebClient;
-import org.joty.web.AbstractWebClient.DocumentDescriptor;
 import org.joty.workstation.authorization.ChangePasswordDialog;
 import org.joty.workstation.authorization.LoginDialog;
 import org.joty.workstation.authorization.UsersPanel;
@@ -577,7 +581,16 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 		return wrapAction;
 	}
 
-	public static void informationMsg(Container container, String text) {
+	public static void informationMsg(final Container container, final String text) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					informationMsg(container, text);
+				}
+			});
+			return;
+		}
 		message(JOptionPane.INFORMATION_MESSAGE, container, text, 0, null);
 	}
 
@@ -609,7 +622,16 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 	 * @param text
 	 *            the message body.
 	 */
-	public void JotyMsg(Object object, String text) {
+	public void JotyMsg(final Object object, final String text) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					JotyMsg(object, text);
+				}
+			});
+			return;
+		}
 		m_app.m_common.resetRemoteTransactionBuilding();
 		if (!m_exclamationIconMissing && ! m_exclamationIconChecked) {
 			m_exclamationIconChecked = true;
@@ -720,7 +742,16 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 		return retVal;
 	}
 
-	public static void warningMsg(Container container, String text, String caption) {
+	public static void warningMsg(final Container container, final String text, final String caption) {
+		if (!SwingUtilities.isEventDispatchThread()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					warningMsg(container, text, caption);
+				}
+			});
+			return;
+		}
 		message(JOptionPane.WARNING_MESSAGE, container, text, 0, caption);
 	}
 
@@ -846,10 +877,13 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 
 	public PasswordValidator m_passwordValidator;
 	public boolean m_webMode;
+	/** the interval (milliseconds) between two inquiries about the state of a report job */
+	public int m_reportPollingInterval = 1000;
 	public boolean m_accessorMode;
 	public JotyFrame m_frame;
 	public String m_name;
 	public JotyDB m_db;
+	private MetadataCache m_metadataCache;
 	public String m_versionString;
 	public String m_startPath;
 
@@ -891,6 +925,26 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 	public String m_ksFileName = "ks";
 	public String m_JotyDeskLog;
 	public static boolean m_deskTracing;
+	/**
+	 * the grids that allow it are loaded by an {@code AsyncDataLoader}
+	 * instance; in web mode the loading stays synchronous, as the
+	 * {@code WebClient} object is used by the event dispatching thread only
+	 * 
+	 * @see org.joty.workstation.data.AsyncDataLoader
+	 * @see #dataLoadExecutor()
+	 */
+	public boolean m_asyncDataLoading;
+	/** the number of records rendered first, before the rest of the set arrives */
+	public int m_asyncFirstChunkSize;
+	public int m_asyncLoadChunkSize;
+	/**
+	 * the buffers of the tables keep their values in a column store
+	 * 
+	 * @see org.joty.workstation.data.JotyDataBuffer#setColumnarStorage(int)
+	 */
+	public boolean m_columnarDataBuffers;
+	public int m_columnarWindowSize;
+	private ExecutorService m_dataLoadExecutor;
 	public static boolean m_debug = true;
 
 	public ReportManager m_reportManager;
@@ -1938,6 +1992,26 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 	 * 
 	 * @see JotyDB#getDbConn(boolean)
 	 */
+	/**
+	 * Returns the executor that runs the asynchronous loads of the data
+	 * buffers. A single thread serves all of them so that the data layer is
+	 * never accessed by two loads at the same time.
+	 * 
+	 * @see org.joty.workstation.data.AsyncDataLoader
+	 */
+	public ExecutorService dataLoadExecutor() {
+		if (m_dataLoadExecutor == null)
+			m_dataLoadExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "JotyDataLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		return m_dataLoadExecutor;
+	}
+
 	protected boolean dbmsAuthentication() {
 		boolean retVal = false;
 		try {
@@ -2302,6 +2376,7 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 					try {
 						m_accessor = Instantiator.createAccessor(this, m_errorCarrier, m_common.m_configuration, m_common.m_configuration, null);
 						m_accessor.setPaginationQuery(m_common.m_paginationQuery, m_common.m_paginationPageSize);
+						m_accessor.setKeysetQuery(m_common.m_keysetQuery, m_common.m_nullsFirstInAscOrder);
 						m_accessor.setLangLiteralRetCodeMapper(m_langLiteralRetCodeMapper);
 					} catch (ClassNotFoundException e1) {
 						if (m_debug)
@@ -2434,20 +2509,60 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 					return;
 			}
 			if (m_webMode) {
-				WebClient wClient = m_webClient;
-				DocumentDescriptor docDescriptor = wClient.getDocumentFromRespContent(wClient.report(name, renderType, twoProcesses, m_reportManager.m_params));
-				if (docDescriptor.xml != null) {
-					byte[] m_bytes;
-					m_bytes = wClient.getBytesFromRespDocument(docDescriptor, "Report");
-					if (m_bytes != null && m_bytes.length > 0)
-						openDocumentFromBytes(m_bytes, renderType);
-				}
+				String jobId = m_webClient.submitReport(name, renderType, twoProcesses, m_reportManager.m_params);
+				if (jobId != null)
+					pollReportJob(jobId, renderType);
 			} else
 				birtManager().buildReport(name, renderType, twoProcesses);
 		} else
 			langWarningMsg("AccessDenied");
 	}
 
+	/**
+	 * Follows the report job submitted to the server from a worker thread,
+	 * that asks for the state of the job every
+	 * {@code m_reportPollingInterval} milliseconds and, when the job is done,
+	 * fetches the output; the document is then opened in the event
+	 * dispatching thread, that is never kept busy while the report is being
+	 * built.
+	 * <p>
+	 * As the {@code WebClient} object of the application is used by the event
+	 * dispatching thread only, the worker makes its requests by means of a
+	 * {@code WebClient} instance of its own, that joins the same session.
+	 */
+	protected void pollReportJob(final String jobId, final String renderType) {
+		final WebClient webClient = new WebClient(this);
+		webClient.m_sessionID = m_webClient.m_sessionID;
+		Thread poller = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				String state;
+				long delay = m_reportPollingInterval / 2;
+				try {
+					do {
+						Thread.sleep(delay);
+						delay = m_reportPollingInterval;
+						state = webClient.reportJobState(jobId);
+					} while (state != null && !state.equals("done"));
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (state != null) {
+					final byte[] bytes = webClient.fetchReport(jobId);
+					if (bytes != null && bytes.length > 0)
+						SwingUtilities.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								openDocumentFromBytes(bytes, BirtManager.fileExtension(renderType));
+							}
+						});
+				}
+			}
+		}, "JotyReportPoller");
+		poller.setDaemon(true);
+		poller.start();
+	}
+
 	protected Object[] getBirtRenderTypes() {
 		return  new Object[] { "pdf", "html", "ods", "xls", "ppt", "doc" };
 	}
@@ -2464,10 +2579,22 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 			m_common.loadConfigProperties(m_webMode);
 			if (extensionAvailable) {
 				m_common.m_paginationQuery = extensionConfigFile.configTermValue("selectorStatement");
+				m_common.m_keysetQuery = extensionConfigFile.configTermValue("keysetSelectorStatement", true);
+				String nullsFirstInAscOrder = extensionConfigFile.configTermValue("nullsFirstInAscOrder", true);
+				if (nullsFirstInAscOrder != null)
+					m_common.m_nullsFirstInAscOrder = Boolean.parseBoolean(nullsFirstInAscOrder.trim());
 				m_dbmsSessionPreset = extensionConfigFile.configTermValue("dbmsSessionPreset");
 			}
 			m_JotyDeskLog = m_common.getConfStr("JotyDeskLog");
 			m_deskTracing = m_common.getConfBool("deskTracing");
+			m_asyncDataLoading = !m_webMode && Boolean.parseBoolean(m_common.m_configuration.configTermValue("asyncDataLoading", true));
+			String asyncLoadChunkSize = m_common.m_configuration.configTermValue("asyncLoadChunkSize", true);
+			m_asyncLoadChunkSize = asyncLoadChunkSize == null ? 200 : Integer.parseInt(asyncLoadChunkSize.trim());
+			String asyncFirstChunkSize = m_common.m_configuration.configTermValue("asyncFirstChunkSize", true);
+			m_asyncFirstChunkSize = asyncFirstChunkSize == null ? 50 : Integer.parseInt(asyncFirstChunkSize.trim());
+			m_columnarDataBuffers = Boolean.parseBoolean(m_common.m_configuration.configTermValue("columnarDataBuffers", true));
+			String columnarWindowSize = m_common.m_configuration.configTermValue("columnarWindowSize", true);
+			m_columnarWindowSize = columnarWindowSize == null ? 256 : Integer.parseInt(columnarWindowSize.trim());
 			if (!m_webMode)
 				m_debug = m_common.getConfBool("debug");
 			if (m_webMode) 
@@ -2509,6 +2636,19 @@ public class Application implements ClipboardOwner, ApplMessenger, JotyApplicati
 	@Override
 	public void lostOwnership(Clipboard clipboard, Transferable contents) {}
 
+	/**
+	 * Returns the cache of the descriptions of the result sets opened in jdbc
+	 * mode, creating it at the first invocation, when the configuration is
+	 * loaded.
+	 * 
+	 * @see WResultSet#jdbcOpen(BasicPostStatement)
+	 */
+	public synchronized MetadataCache metadataCache() {
+		if (m_metadataCache == null)
+			m_metadataCache = new MetadataCache(m_common.m_intDigitDim, 256, 600);
+		return m_metadataCache;
+	}
+
 	public boolean m_toolTipsEnabled() {
 		return designTime() ? true : (m_mntmEnableTooltips == null ? true : m_mntmEnableTooltips.isSelected());
 	}
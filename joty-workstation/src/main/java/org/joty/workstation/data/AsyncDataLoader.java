@@ -0,0 +1,190 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Workstation.
+
+	Joty 2.0 Workstation is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Workstation is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Workstation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.workstation.data;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javax.swing.SwingUtilities;
+
+import org.joty.access.Logger;
+import org.joty.common.BasicPostStatement;
+import org.joty.workstation.data.JotyDataBuffer.Record;
+
+/**
+ * Loads a {@code JotyDataBuffer} instance without keeping the event dispatch
+ * thread busy.
+ * <p>
+ * The opening of the {@code WResultSet} object (that is the query execution)
+ * and the building of the records take place in the thread of the executor
+ * the instance is submitted to. The loader is used in jdbc mode only: in web
+ * mode the {@code WebClient} object of the application is not shared with
+ * other threads (see {@code Application.m_asyncDataLoading}). The messages
+ * that the data layer may present on failure are posted to the event
+ * dispatch thread by the {@code Application} methods that show them. The records are handed to the event dispatch
+ * thread in chunks: there they are appended to the buffer and the
+ * {@code Listener} implementation is notified, so that the component can show
+ * them while the loading goes on. The first chunk is made of
+ * {@code m_firstChunkSize} records only, to have the first page rendered as
+ * soon as possible; the following ones of {@code m_chunkSize} records.
+ * <p>
+ * The key maps of the buffer and, if present, its {@code QueueManager} are
+ * kept consistent at each chunk: for a queued buffer the rows notified are
+ * the ones the order map already reaches (see
+ * {@link JotyDataBuffer#presentableRowCount()}); the order map is rebuilt on
+ * the complete set at the end.
+ * <p>
+ * The record descriptor is built and the {@code loadDataProlog} hook is
+ * invoked in the event dispatch thread before any record is fetched; the
+ * {@code loadDataBreak} hook is honored as in
+ * {@link JotyDataBuffer#loadData(WResultSet, BasicPostStatement, org.joty.workstation.gui.GridTerm)}.
+ * <p>
+ * The {@code cancel} method, invoked from the event dispatch thread, assures
+ * that no further record reaches the buffer and that the listener is no more
+ * notified.
+ * 
+ * @see org.joty.workstation.gui.GridTerm
+ */
+public class AsyncDataLoader implements Runnable {
+
+	/** Receives the notifications in the event dispatch thread. */
+	public interface Listener {
+		void recordsAppended(int firstRow, int lastRow);
+
+		void loadCompleted(WResultSet rs, boolean success);
+	}
+
+	JotyDataBuffer m_buffer;
+	WResultSet m_rs;
+	BasicPostStatement m_postStatement;
+	int m_firstChunkSize;
+	int m_chunkSize;
+	Listener m_listener;
+	private volatile boolean m_cancelled;
+
+	public AsyncDataLoader(JotyDataBuffer buffer, WResultSet rs, BasicPostStatement postStatement, int chunkSize, Listener listener) {
+		this(buffer, rs, postStatement, chunkSize, chunkSize, listener);
+	}
+
+	public AsyncDataLoader(JotyDataBuffer buffer, WResultSet rs, BasicPostStatement postStatement, int firstChunkSize, int chunkSize, Listener listener) {
+		m_buffer = buffer;
+		m_rs = rs;
+		m_postStatement = postStatement;
+		m_chunkSize = chunkSize > 0 ? chunkSize : 1;
+		m_firstChunkSize = firstChunkSize > 0 ? firstChunkSize : m_chunkSize;
+		m_listener = listener;
+		m_cancelled = false;
+	}
+
+	public void cancel() {
+		m_cancelled = true;
+		m_buffer.m_streaming = false;
+	}
+
+	public boolean isCancelled() {
+		return m_cancelled;
+	}
+
+	private void complete(final boolean success) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (!m_cancelled) {
+					int firstRow = m_buffer.presentableRowCount();
+					m_buffer.m_streaming = false;
+					if (m_buffer.m_queueManager != null)
+						m_buffer.m_queueManager.buildOrderMap();
+					notifyAppended(firstRow);
+					m_listener.loadCompleted(m_rs, success);
+				}
+			}
+		});
+	}
+
+	private void publish(final List<Record> records) {
+		if (records.size() > 0)
+			SwingUtilities.invokeLater(new Runnable() {
+				@Override
+				public void run() {
+					if (!m_cancelled) {
+						int firstRow = m_buffer.presentableRowCount();
+						m_buffer.appendRecords(records);
+						notifyAppended(firstRow);
+					}
+				}
+			});
+	}
+
+	private void notifyAppended(int firstRow) {
+		int lastRow = m_buffer.presentableRowCount() - 1;
+		if (lastRow >= firstRow)
+			m_listener.recordsAppended(firstRow, lastRow);
+	}
+
+	@Override
+	public void run() {
+		boolean success = false;
+		try {
+			if (!m_cancelled && m_rs.open(m_postStatement)) {
+				SwingUtilities.invokeAndWait(new Runnable() {
+					@Override
+					public void run() {
+						m_buffer.buildRecordDescriptor(m_rs);
+						m_buffer.loadDataProlog(m_rs);
+						m_buffer.m_streaming = !m_cancelled;
+					}
+				});
+				List<Record> records = new ArrayList<Record>();
+				int chunkSize = m_firstChunkSize;
+				int i = 0;
+				while (!m_cancelled && !m_rs.isEOF()) {
+					i++;
+					if (m_buffer.loadDataBreak(i))
+						break;
+					records.add(m_buffer.fetchRecord(m_rs));
+					if (records.size() == chunkSize) {
+						publish(records);
+						records = new ArrayList<Record>();
+						chunkSize = m_chunkSize;
+					}
+					m_rs.next();
+				}
+				m_rs.close();
+				publish(records);
+				success = true;
+			}
+		} catch (InterruptedException e) {
+			m_cancelled = true;
+		} catch (InvocationTargetException e) {
+			Logger.exceptionToHostLog(e);
+		} catch (RuntimeException e) {
+			if (!m_cancelled)
+				Logger.exceptionToHostLog(e);
+		}
+		complete(success);
+	}
+
+	public void start(ExecutorService executor) {
+		executor.execute(this);
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Workstation.
+
+	Joty 2.0 Workstation is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Workstation is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Workstation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.workstation.data;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joty.data.WrappedField;
+import org.joty.workstation.data.JotyDataBuffer.Record;
+
+/**
+ * Takes the place of the {@code m_records} list of a
+ * {@code JotyDataBuffer} instance when the buffer keeps its values in a
+ * {@code ColumnarStore}, so that all the code accessing the records by
+ * {@code m_records.get(row).m_data} keeps working.
+ * <p>
+ * A {@code Record} object is built from the columns the first time its row is
+ * accessed and it is the object returned for the row for as long as it is
+ * referenced: its cells write the values set by their methods straight
+ * through to the columns, so that nothing is lost when the record is no more
+ * referenced. A window of the most recently accessed rows keeps their records
+ * alive, so that a row accessed again is not rebuilt; the window size bounds
+ * the number of {@code WrappedField} objects alive for the buffer, whatever
+ * its size is, apart from the records held by the caller. The rows holding a
+ * value still to be generated by the server (a 'delayed' value) are never
+ * evicted, as the delayed state is not kept by the columns.
+ * <p>
+ * A record appended or set into the list gets its cells replaced by cells
+ * bound to the row; a record removed from the list, or replaced, keeps its
+ * values and is no more bound to the columns, as it happens with any other
+ * {@code List} implementation. Since the records referenced are all tracked,
+ * the methods looking for a record by identity, as {@code indexOf}, are exact.
+ * 
+ * @see ColumnarStore
+ * @see JotyDataBuffer#setColumnarStorage(int)
+ */
+public class ColumnarRecords extends AbstractList<Record> {
+
+	/** Tracks the record of a row until it is no more referenced. */
+	static class RecordRef extends WeakReference<Record> {
+		int m_row;
+
+		RecordRef(Record record, int row, ReferenceQueue<Record> queue) {
+			super(record, queue);
+			m_row = row;
+		}
+	}
+
+	JotyDataBuffer m_buffer;
+	ColumnarStore m_store;
+	int m_windowSize;
+	LinkedHashMap<Integer, Record> m_window;
+	HashMap<Integer, RecordRef> m_refs;
+	ReferenceQueue<Record> m_collected;
+
+	public ColumnarRecords(JotyDataBuffer buffer, int windowSize) {
+		m_buffer = buffer;
+		m_store = new ColumnarStore();
+		m_windowSize = windowSize;
+		m_window = new LinkedHashMap<Integer, Record>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Record> eldest) {
+				return size() > m_windowSize && !hasDelayedValues(eldest.getValue());
+			}
+		};
+		m_refs = new HashMap<Integer, RecordRef>();
+		m_collected = new ReferenceQueue<Record>();
+	}
+
+	@Override
+	public void add(int index, Record record) {
+		if (index < 0 || index > m_store.size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + m_store.size());
+		m_store.insert(index, record);
+		shiftRows(index, 1);
+		track(index, record);
+		modCount++;
+	}
+
+	/**
+	 * Points the cells of the record to {@code row} or, if {@code row} is
+	 * negative, detaches them from the columns.
+	 */
+	private void bind(Record record, int row) {
+		for (WrappedField wfield : record.m_data)
+			if (wfield instanceof ColumnarStore.Cell)
+				((ColumnarStore.Cell) wfield).bind(row < 0 ? null : m_store, row);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= m_store.size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + m_store.size());
+	}
+
+	@Override
+	public void clear() {
+		Record record;
+		for (RecordRef ref : m_refs.values()) {
+			record = ref.get();
+			if (record != null)
+				bind(record, -1);
+		}
+		m_window.clear();
+		m_refs.clear();
+		expungeCollected();
+		m_store.clear();
+		modCount++;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		return indexOf(object) >= 0;
+	}
+
+	/** Forgets the rows whose record has been garbage collected. */
+	private void expungeCollected() {
+		RecordRef ref;
+		while ((ref = (RecordRef) m_collected.poll()) != null)
+			if (m_refs.get(ref.m_row) == ref)
+				m_refs.remove(ref.m_row);
+	}
+
+	@Override
+	public Record get(int index) {
+		Record record = m_window.get(index);
+		if (record == null) {
+			checkIndex(index);
+			expungeCollected();
+			RecordRef ref = m_refs.get(index);
+			record = ref == null ? null : ref.get();
+			if (record == null) {
+				record = m_buffer.new Record();
+				m_store.read(index, record);
+				m_refs.put(index, new RecordRef(record, index, m_collected));
+			}
+			m_window.put(index, record);
+		}
+		return record;
+	}
+
+	private boolean hasDelayedValues(Record record) {
+		for (WrappedField wfield : record.m_data)
+			if (wfield.m_delayed)
+				return true;
+		return false;
+	}
+
+	/** Returns an estimate, in bytes, of the heap used by the values held in the columns. */
+	public long heapFootprint() {
+		return m_store.heapFootprint();
+	}
+
+	@Override
+	public int indexOf(Object object) {
+		if (object != null)
+			for (RecordRef ref : m_refs.values())
+				if (ref.get() == object)
+					return ref.m_row;
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object object) {
+		return indexOf(object);
+	}
+
+	@Override
+	public Record remove(int index) {
+		Record record = get(index);
+		bind(record, -1);
+		m_window.remove(index);
+		m_refs.remove(index);
+		m_store.remove(index);
+		shiftRows(index + 1, -1);
+		modCount++;
+		return record;
+	}
+
+	@Override
+	public Record set(int index, Record record) {
+		Record oldRecord = get(index);
+		bind(oldRecord, -1);
+		m_store.write(index, record);
+		track(index, record);
+		return oldRecord;
+	}
+
+	/**
+	 * Moves by {@code delta} the rows of the records got so far, from
+	 * {@code row} on, keeping the order of the window.
+	 */
+	private void shiftRows(int row, int delta) {
+		Map<Integer, Record> window = new LinkedHashMap<Integer, Record>(m_window);
+		m_window.clear();
+		for (Map.Entry<Integer, Record> entry : window.entrySet())
+			m_window.put(entry.getKey() >= row ? entry.getKey() + delta : entry.getKey(), entry.getValue());
+		expungeCollected();
+		HashMap<Integer, RecordRef> refs = new HashMap<Integer, RecordRef>();
+		Record record;
+		for (RecordRef ref : m_refs.values()) {
+			if (ref.m_row >= row) {
+				ref.m_row += delta;
+				record = ref.get();
+				if (record != null)
+					bind(record, ref.m_row);
+			}
+			refs.put(ref.m_row, ref);
+		}
+		m_refs = refs;
+	}
+
+	@Override
+	public int size() {
+		return m_store.size();
+	}
+
+	/** Makes {@code record} the record of the row, with its cells bound to the row. */
+	private void track(int row, Record record) {
+		m_store.read(row, record);
+		m_refs.put(row, new RecordRef(record, row, m_collected));
+		m_window.put(row, record);
+	}
+
+}
@@ -0,0 +1,642 @@
+/*
+	Copyright (c) 2013-2015, Stefano Pizzocaro. All rights reserved. Use is subject to license terms.
+
+	This file is part of Joty 2.0 Workstation.
+
+	Joty 2.0 Workstation is free software: you can redistribute it and/or modify
+	it under the terms of the GNU Lesser General Public License as published by
+	the Free Software Foundation, either version 3 of the License, or
+	(at your option) any later version.
+
+	Joty 2.0 Workstation is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU Lesser General Public License for more details.
+
+	You should have received a copy of the GNU Lesser General Public License
+	along with Joty 2.0 Workstation.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.joty.workstation.data;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+import org.joty.common.JotyTypes;
+import org.joty.data.JotyDate;
+import org.joty.data.JotyResultSet;
+import org.joty.data.WrappedField;
+import org.joty.gui.NumberFormatter;
+import org.joty.workstation.app.Application;
+import org.joty.workstation.data.JotyDataBuffer.Record;
+
+/**
+ * Holds the values of the records of a {@code JotyDataBuffer} column by
+ * column, in primitive arrays, instead of as {@code WrappedField} objects.
+ * <p>
+ * Integer, floating point and date columns (these ones as epoch
+ * milliseconds) are stored in an array of the corresponding primitive type;
+ * the text of a column is kept in a single character pool addressed by offset
+ * and length; small blob previews are kept as byte arrays. Each column has a
+ * bitmap for the null values.
+ * <p>
+ * The attributes that do not change from row to row (the data type, the
+ * database field name, the metadata source and so on) are held once per
+ * column by a 'prototype' {@code WField} instance, taken from the first
+ * record appended: {@link #read(int, Record)} builds the cells of a record
+ * from it. These cells are {@link Cell} instances bound to the row: the
+ * values set by their methods are written straight through to the columns.
+ * <p>
+ * The class is not thread safe: it is accessed in the event dispatch thread
+ * through a {@code ColumnarRecords} instance.
+ * 
+ * @see ColumnarRecords
+ */
+public class ColumnarStore {
+
+	abstract static class Column {
+		WField m_prototype;
+		BitSet m_nulls = new BitSet();
+
+		abstract void grow(int capacity);
+
+		abstract void move(int srcRow, int destRow, int length);
+
+		abstract void read(int row, WrappedField wfield);
+
+		abstract void write(int row, WrappedField wfield);
+
+		abstract long footprint(int capacity);
+
+		/** Releases what the row refers to, once the row is no more in use. */
+		void vacate(int row) {}
+	}
+
+	static class IntColumn extends Column {
+		int[] m_values = new int[0];
+
+		@Override
+		void grow(int capacity) {
+			int[] values = new int[capacity];
+			System.arraycopy(m_values, 0, values, 0, m_values.length);
+			m_values = values;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			System.arraycopy(m_values, srcRow, m_values, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_iVal = m_values[row];
+			wfield.m_lVal = m_values[row];
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = (int) wfield.getInteger();
+		}
+
+		@Override
+		long footprint(int capacity) {
+			return 4L * capacity;
+		}
+	}
+
+	static class LongColumn extends Column {
+		long[] m_values = new long[0];
+
+		@Override
+		void grow(int capacity) {
+			long[] values = new long[capacity];
+			System.arraycopy(m_values, 0, values, 0, m_values.length);
+			m_values = values;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			System.arraycopy(m_values, srcRow, m_values, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_lVal = m_values[row];
+			wfield.m_iVal = (int) m_values[row];
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = wfield.getInteger();
+		}
+
+		@Override
+		long footprint(int capacity) {
+			return 8L * capacity;
+		}
+	}
+
+	static class FloatColumn extends Column {
+		float[] m_values = new float[0];
+
+		@Override
+		void grow(int capacity) {
+			float[] values = new float[capacity];
+			System.arraycopy(m_values, 0, values, 0, m_values.length);
+			m_values = values;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			System.arraycopy(m_values, srcRow, m_values, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_fltVal = m_values[row];
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = wfield.m_fltVal;
+		}
+
+		@Override
+		long footprint(int capacity) {
+			return 4L * capacity;
+		}
+	}
+
+	static class DoubleColumn extends Column {
+		double[] m_values = new double[0];
+
+		@Override
+		void grow(int capacity) {
+			double[] values = new double[capacity];
+			System.arraycopy(m_values, 0, values, 0, m_values.length);
+			m_values = values;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			System.arraycopy(m_values, srcRow, m_values, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_dblVal = m_values[row];
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = wfield.m_dblVal;
+		}
+
+		@Override
+		long footprint(int capacity) {
+			return 8L * capacity;
+		}
+	}
+
+	/** epoch milliseconds; a second bitmap tracks the null state of the date object */
+	static class DateColumn extends LongColumn {
+		BitSet m_nullDates = new BitSet();
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			super.move(srcRow, destRow, length);
+			moveBits(m_nullDates, srcRow, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_dateVal.setTime(m_values[row]);
+			wfield.m_dateVal.m_isNull = m_nullDates.get(row);
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = wfield.m_dateVal.getTime();
+			m_nullDates.set(row, wfield.m_dateVal.m_isNull);
+		}
+	}
+
+	/**
+	 * The text of all the rows is held in one character pool: a row refers to
+	 * its text by offset and length (-1 for a null string). A text replaced
+	 * by a longer one is appended to the pool; the pool is compacted when the
+	 * space left unreferenced exceeds the used one.
+	 */
+	static class TextColumn extends Column {
+		char[] m_pool = new char[0];
+		int m_poolUsed;
+		int m_poolWasted;
+		int[] m_offsets = new int[0];
+		int[] m_lengths = new int[0];
+
+		@Override
+		void grow(int capacity) {
+			int[] offsets = new int[capacity];
+			int[] lengths = new int[capacity];
+			System.arraycopy(m_offsets, 0, offsets, 0, m_offsets.length);
+			System.arraycopy(m_lengths, 0, lengths, 0, m_lengths.length);
+			m_offsets = offsets;
+			m_lengths = lengths;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			if (srcRow > destRow)
+				for (int i = destRow; i < srcRow; i++)
+					m_poolWasted += Math.max(m_lengths[i], 0);
+			System.arraycopy(m_offsets, srcRow, m_offsets, destRow, length);
+			System.arraycopy(m_lengths, srcRow, m_lengths, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_strVal = m_lengths[row] < 0 ? null : new String(m_pool, m_offsets[row], m_lengths[row]);
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			String text = wfield.m_strVal;
+			int length = text == null ? -1 : text.length();
+			if (length > m_lengths[row]) {
+				m_poolWasted += Math.max(m_lengths[row], 0);
+				m_lengths[row] = 0;
+				if (m_poolUsed + length > m_pool.length) {
+					if (m_poolWasted > m_poolUsed / 2)
+						compact();
+					if (m_poolUsed + length > m_pool.length) {
+						char[] pool = new char[Math.max(m_poolUsed + length, m_pool.length * 3 / 2 + 16)];
+						System.arraycopy(m_pool, 0, pool, 0, m_poolUsed);
+						m_pool = pool;
+					}
+				}
+				m_offsets[row] = m_poolUsed;
+				m_poolUsed += length;
+			} else if (m_lengths[row] > 0)
+				m_poolWasted += m_lengths[row] - Math.max(length, 0);
+			if (length > 0)
+				text.getChars(0, length, m_pool, m_offsets[row]);
+			m_lengths[row] = length;
+		}
+
+		/** relocates the texts of the rows, in row order, at the beginning of the pool */
+		private void compact() {
+			char[] pool = new char[m_pool.length];
+			int used = 0;
+			for (int i = 0; i < m_offsets.length; i++)
+				if (m_lengths[i] > 0) {
+					System.arraycopy(m_pool, m_offsets[i], pool, used, m_lengths[i]);
+					m_offsets[i] = used;
+					used += m_lengths[i];
+				}
+			m_pool = pool;
+			m_poolUsed = used;
+			m_poolWasted = 0;
+		}
+
+		@Override
+		long footprint(int capacity) {
+			return 8L * capacity + 2L * m_pool.length;
+		}
+
+		@Override
+		void vacate(int row) {
+			m_offsets[row] = 0;
+			m_lengths[row] = 0;
+		}
+	}
+
+	static class BytesColumn extends Column {
+		byte[][] m_values = new byte[0][];
+
+		@Override
+		void grow(int capacity) {
+			byte[][] values = new byte[capacity][];
+			System.arraycopy(m_values, 0, values, 0, m_values.length);
+			m_values = values;
+		}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {
+			System.arraycopy(m_values, srcRow, m_values, destRow, length);
+		}
+
+		@Override
+		void read(int row, WrappedField wfield) {
+			wfield.m_previewBytes = m_values[row];
+		}
+
+		@Override
+		void write(int row, WrappedField wfield) {
+			m_values[row] = wfield.m_previewBytes;
+		}
+
+		@Override
+		long footprint(int capacity) {
+			long retVal = 4L * capacity;
+			for (byte[] bytes : m_values)
+				if (bytes != null)
+					retVal += 16 + bytes.length;
+			return retVal;
+		}
+
+		@Override
+		void vacate(int row) {
+			m_values[row] = null;
+		}
+	}
+
+	/** for the types with no value held in the buffer (embedded blobs, unspecified types) */
+	static class VoidColumn extends Column {
+		@Override
+		void grow(int capacity) {}
+
+		@Override
+		void move(int srcRow, int destRow, int length) {}
+
+		@Override
+		void read(int row, WrappedField wfield) {}
+
+		@Override
+		void write(int row, WrappedField wfield) {}
+
+		@Override
+		long footprint(int capacity) {
+			return 0;
+		}
+	}
+
+	/**
+	 * A cell of a record got from the store. While the cell is bound to a row
+	 * every method that modifies its value writes the value in the column
+	 * too, so that the modification survives the cell itself. The values
+	 * assigned directly to the public members are not tracked: the cell has
+	 * to be modified by its methods.
+	 */
+	static class Cell extends WField {
+		ColumnarStore m_store;
+		int m_column;
+		int m_row;
+
+		Cell(Application app, int column) {
+			super(app);
+			m_column = column;
+		}
+
+		/** Binds the cell to {@code row} of {@code store} or, if {@code store} is null, detaches it. */
+		void bind(ColumnarStore store, int row) {
+			m_store = store;
+			m_row = row;
+		}
+
+		@Override
+		public void clear(boolean overAll) {
+			super.clear(overAll);
+			writeThrough();
+		}
+
+		@Override
+		public void copyWField(WrappedField source, boolean withDbIdentity, boolean storeSource) {
+			super.copyWField(source, withDbIdentity, storeSource);
+			writeThrough();
+		}
+
+		@Override
+		public void getValFrom(WrappedField source) {
+			super.getValFrom(source);
+			writeThrough();
+		}
+
+		@Override
+		public void getWField(JotyResultSet rs) {
+			super.getWField(rs);
+			writeThrough();
+		}
+
+		@Override
+		public void setData(String gotText, NumberFormatter numberFormatter) {
+			super.setData(gotText, numberFormatter);
+			writeThrough();
+		}
+
+		@Override
+		public void setToNull(boolean truth) {
+			super.setToNull(truth);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(double dblVal) {
+			super.setVal(dblVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(float fltVal) {
+			super.setVal(fltVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(int iVal) {
+			super.setVal(iVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(JotyDate dtVal) {
+			super.setVal(dtVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(long lVal) {
+			super.setVal(lVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setVal(String strVal) {
+			super.setVal(strVal);
+			writeThrough();
+		}
+
+		@Override
+		public void setValFromDbSubmittedExpr(String strVal) {
+			super.setValFromDbSubmittedExpr(strVal);
+			writeThrough();
+		}
+
+		private void writeThrough() {
+			if (m_store != null)
+				m_store.write(m_row, m_column, this);
+		}
+	}
+
+	static void moveBits(BitSet bits, int srcRow, int destRow, int length) {
+		if (srcRow > destRow)
+			for (int i = 0; i < length; i++)
+				bits.set(destRow + i, bits.get(srcRow + i));
+		else
+			for (int i = length - 1; i >= 0; i--)
+				bits.set(destRow + i, bits.get(srcRow + i));
+	}
+
+	Application m_app = Application.m_app;
+	Vector<Column> m_columns;
+	int m_size;
+	int m_capacity;
+
+	public ColumnarStore() {
+		m_columns = new Vector<Column>();
+		m_size = 0;
+		m_capacity = 0;
+	}
+
+	private Column addColumn(WrappedField wfield) {
+		Column column;
+		switch (wfield.dataType()) {
+			case JotyTypes._text:
+				column = new TextColumn();
+				break;
+			case JotyTypes._int:
+				column = new IntColumn();
+				break;
+			case JotyTypes._long:
+			case JotyTypes._dbDrivenInteger:
+				column = new LongColumn();
+				break;
+			case JotyTypes._single:
+				column = new FloatColumn();
+				break;
+			case JotyTypes._double:
+				column = new DoubleColumn();
+				break;
+			case JotyTypes._date:
+			case JotyTypes._dateTime:
+				column = new DateColumn();
+				break;
+			case JotyTypes._smallBlob:
+				column = new BytesColumn();
+				break;
+			default:
+				column = new VoidColumn();
+		}
+		column.m_prototype = new WField(m_app);
+		column.m_prototype.copyWField(wfield, false);
+		column.m_prototype.clear(true);
+		column.m_prototype.m_dataType = wfield.m_dataType;
+		column.m_prototype.m_dbFieldName = wfield.m_dbFieldName;
+		column.m_prototype.m_metaDataWField = wfield.m_metaDataWField;
+		if (wfield instanceof WField)
+			column.m_prototype.m_metaDataSource = ((WField) wfield).m_metaDataSource;
+		column.grow(m_capacity);
+		// the rows already stored have no value for the column
+		column.m_nulls.set(0, m_size);
+		m_columns.add(column);
+		return column;
+	}
+
+	/** Appends a row with the values of {@code record}. */
+	public void append(Record record) {
+		insert(m_size, record);
+	}
+
+	public void clear() {
+		m_columns.removeAllElements();
+		m_size = 0;
+		m_capacity = 0;
+	}
+
+	/**
+	 * Returns an estimate, in bytes, of the heap used by the values: the
+	 * prototypes and the object headers are not counted.
+	 */
+	public long heapFootprint() {
+		long retVal = 0;
+		for (Column column : m_columns)
+			retVal += column.footprint(m_capacity) + m_capacity / 8;
+		return retVal;
+	}
+
+	/** Inserts a row with the values of {@code record} at {@code row}, shifting the following ones. */
+	public void insert(int row, Record record) {
+		if (m_size == m_capacity) {
+			m_capacity = m_capacity * 3 / 2 + 16;
+			for (Column column : m_columns)
+				column.grow(m_capacity);
+		}
+		for (Column column : m_columns) {
+			column.move(row, row + 1, m_size - row);
+			moveBits(column.m_nulls, row, row + 1, m_size - row);
+			column.vacate(row);
+		}
+		m_size++;
+		write(row, record);
+	}
+
+	/**
+	 * Replaces the cells of {@code record} with new cells carrying the
+	 * attributes of the columns and the values of the row, bound to the row.
+	 */
+	public void read(int row, Record record) {
+		Column column;
+		Cell cell;
+		record.m_data.clear();
+		for (int i = 0; i < m_columns.size(); i++) {
+			column = m_columns.get(i);
+			cell = new Cell(m_app, i);
+			cell.copyWField(column.m_prototype, false);
+			cell.m_dataType = column.m_prototype.m_dataType;
+			cell.m_dbFieldName = column.m_prototype.m_dbFieldName;
+			cell.m_metaDataWField = column.m_prototype.m_metaDataWField;
+			cell.m_metaDataSource = column.m_prototype.m_metaDataSource;
+			if (!column.m_nulls.get(row)) {
+				cell.setToNull(false);
+				column.read(row, cell);
+			}
+			cell.bind(this, row);
+			record.m_data.add(cell);
+		}
+	}
+
+	public void remove(int row) {
+		for (Column column : m_columns) {
+			column.move(row + 1, row, m_size - row - 1);
+			moveBits(column.m_nulls, row + 1, row, m_size - row - 1);
+			column.m_nulls.clear(m_size - 1);
+			column.vacate(m_size - 1);
+		}
+		m_size--;
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	/** Stores the values of {@code record} in the row. */
+	public void write(int row, Record record) {
+		WrappedField wfield;
+		for (int i = 0; i < record.m_data.size(); i++) {
+			wfield = record.m_data.get(i);
+			if (i == m_columns.size())
+				addColumn(wfield);
+			write(row, i, wfield);
+		}
+	}
+
+	void write(int row, int col, WrappedField wfield) {
+		Column column = m_columns.get(col);
+		if (wfield.isNull())
+			column.m_nulls.set(row);
+		else {
+			column.m_nulls.clear(row);
+			column.write(row, wfield);
+		}
+	}
+
+}
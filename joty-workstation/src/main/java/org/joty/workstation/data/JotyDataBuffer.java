@@ -24,7 +24,9 @@ import java.util.Map.Entry;
 
 import org.joty.access.Logger;
 import org.joty.common.CaselessStringKeyMap;
+import org.joty.common.IntIntMap;
 import org.joty.common.JotyTypes;
+import org.joty.common.LongIntMap;
 import org.joty.common.BasicPostStatement;
 import org.joty.data.JotyDate;
 import org.joty.data.FieldDescriptor;
@@ -66,13 +68,13 @@ import org.joty.workstation.gui.GridTerm;
  */
 
 public class JotyDataBuffer {
-	public class IdsStock extends HashMap<Long, Integer> {
-		public boolean isPresent(Long key) {
-			return get(key) != null;
+	public class IdsStock extends LongIntMap {
+		public boolean isPresent(long key) {
+			return containsKey(key);
 		}
 
-		public Integer put(Long key) {
-			return super.put(key, size());
+		public int put(long key) {
+			return put(key, size());
 		}
 	}
 
@@ -123,27 +125,43 @@ public class JotyDataBuffer {
 		/** the queue records as loaded in memory */
 		private Vector<QueueRecord> m_queueRecords;
 
-		private Map<Long, Integer> m_idsMap;
-		private Map<Integer, Integer> m_orderMap;
-		private Map<Integer, Integer> m_orderReverseMap;
+		private LongIntMap m_idsMap;
+		private IntIntMap m_orderMap;
+		private IntIntMap m_orderReverseMap;
 		private int m_startIdx;
+		private boolean m_startLoaded;
 
 		QueueManager() {
 			m_queueRecords = new Vector<QueueRecord>();
-			m_idsMap = new HashMap<Long, Integer>();
-			m_orderMap = new HashMap<Integer, Integer>();
-			m_orderReverseMap = new HashMap<Integer, Integer>();
+			m_idsMap = new LongIntMap();
+			m_orderMap = new IntIntMap();
+			m_orderReverseMap = new IntIntMap();
 			m_startIdx = 0;
+			m_startLoaded = false;
 		}
 
 		public void addRecord(WResultSet rs) {
 			QueueRecord qRecord = new QueueRecord();
 			getQueueRecord(qRecord, rs);
+			addRecord(qRecord);
+		}
+
+		void addRecord(int recordPos) {
+			QueueRecord qRecord = new QueueRecord();
+			qRecord.ID = integerValue(idField, recordPos);
+			qRecord.previousID = integerValue(prevField, recordPos);
+			qRecord.nextID = integerValue(nextField, recordPos);
+			addRecord(qRecord);
+		}
+
+		private void addRecord(QueueRecord qRecord) {
 			int currIndex = m_queueRecords.size();
 			m_queueRecords.add(qRecord);
 			m_idsMap.put(qRecord.ID, currIndex);
-			if (qRecord.previousID == 0)
+			if (qRecord.previousID == 0) {
 				m_startIdx = currIndex;
+				m_startLoaded = true;
+			}
 		}
 
 		/**
@@ -154,6 +172,8 @@ public class JotyDataBuffer {
 		 * @see org.joty.workstation.gui.Table
 		 */
 		public void buildOrderMap() {
+			m_orderMap.clear();
+			m_orderReverseMap.clear();
 			int currIdx = m_startIdx;
 			for (int orderPos = 0; orderPos < m_queueRecords.size(); orderPos++) {
 				m_orderMap.put(orderPos, currIdx);
@@ -172,6 +192,31 @@ public class JotyDataBuffer {
 			m_idsMap.clear();
 			m_orderMap.clear();
 			m_orderReverseMap.clear();
+			m_startIdx = 0;
+			m_startLoaded = false;
+		}
+
+		/**
+		 * Extends the order map as far as the chain of the records loaded so
+		 * far allows: used while the records arrive in chunks, before
+		 * {@code buildOrderMap} is called on the complete set.
+		 * 
+		 * @return the number of rows the order map covers
+		 */
+		int extendOrderMap() {
+			int currIdx;
+			int orderPos = m_orderMap.size();
+			if (orderPos == 0)
+				currIdx = m_startLoaded ? m_startIdx : -1;
+			else
+				currIdx = nextIndex(m_orderMap.get(orderPos - 1));
+			while (currIdx >= 0 && orderPos < m_queueRecords.size()) {
+				m_orderMap.put(orderPos, currIdx);
+				m_orderReverseMap.put(currIdx, orderPos);
+				orderPos++;
+				currIdx = nextIndex(currIdx);
+			}
+			return orderPos;
 		}
 
 		public int getID(int buffPosition) {
@@ -182,13 +227,12 @@ public class JotyDataBuffer {
 			return getID(getMappedRow(buffPosition));
 		}
 
-		public Integer getIdRow(long id) {
+		public int getIdRow(long id) {
 			return m_idsMap.get(id);
 		}
 
-		public Integer getMappedRow(int row) {
-			Integer rowIndex = m_orderMap.get(row);
-			return row == -1 ? -1 : (rowIndex == null ? -1 : rowIndex);
+		public int getMappedRow(int row) {
+			return row == -1 ? -1 : m_orderMap.get(row);
 		}
 
 		public int getNextID(int buffPosition) {
@@ -205,7 +249,16 @@ public class JotyDataBuffer {
 			qRecord.nextID = rs.integerValue(nextField);
 		}
 
-		public Integer getReverseMappedRow(int row) {
+		private int nextIndex(int buffPosition) {
+			long nextID = m_queueRecords.get(buffPosition).nextID;
+			return nextID == 0 ? -1 : m_idsMap.get(nextID);
+		}
+
+		int orderedCount() {
+			return m_orderMap.size();
+		}
+
+		public int getReverseMappedRow(int row) {
 			return m_orderReverseMap.get(row);
 		}
 
@@ -327,7 +380,7 @@ public class JotyDataBuffer {
 	public String m_keyName;
 
 	public boolean m_textKey;
-	public Vector<Record> m_records;
+	public List<Record> m_records;
 	public int m_cursorPos;
 	public boolean m_descriptorBuilt;
 	protected int m_keyIndex;
@@ -335,13 +388,15 @@ public class JotyDataBuffer {
 	protected Record m_record;
 	public CaselessStringKeyMap<Integer> m_fieldNamesMap;
 	protected CaselessStringKeyMap<Integer> m_strKeyMap;
-	protected Map<Long, Integer> m_longKeyMap;
+	protected LongIntMap m_longKeyMap;
 	public Vector<String> m_fieldNames;
 	public Vector<Integer> m_fieldTypes;
 	protected int m_maxRecord;
 	protected int m_recPos;
 	public QueueManager m_queueManager;
 	public CaselessStringKeyMap<IdsStock> m_idsStocksMap;
+	/** true while an {@code AsyncDataLoader} instance appends records */
+	boolean m_streaming;
 
 	public JotyDataBuffer() {
 		m_keyIndex = -1;
@@ -354,12 +409,13 @@ public class JotyDataBuffer {
 		m_records = new Vector<Record>();
 		m_fieldNamesMap = new CaselessStringKeyMap<Integer>(m_app);
 		m_strKeyMap = new CaselessStringKeyMap<Integer>(m_app);
-		m_longKeyMap = new HashMap<Long, Integer>();
+		m_longKeyMap = new LongIntMap();
 		m_fieldNames = new Vector<String>();
 		m_fieldTypes = new Vector<Integer>();
 		m_idsStocksMap = new CaselessStringKeyMap<IdsStock>(m_app);
 		m_maxRecord = 0;
 		m_queueManager = null;
+		m_streaming = false;
 	}
 
 	public JotyDataBuffer(String keyFieldName) {
@@ -373,10 +429,8 @@ public class JotyDataBuffer {
 	}
 
 	protected void addFromDataLayer(WResultSet rs) {
+		Record record = fetchRecord(rs);
 		m_cursorPos++;
-		Record record = new Record();
-		buildRecord(record, rs);
-		getFromDataLayer(record, rs);
 		m_records.add(record);
 		if (m_queueManager != null)
 			m_queueManager.addRecord(rs);
@@ -384,6 +438,30 @@ public class JotyDataBuffer {
 		updateIdsStocks(m_cursorPos, true);
 	}
 
+	/**
+	 * Appends records got by {@link #fetchRecord(WResultSet)} updating the
+	 * indexes of the buffer and, if present, the queue manager, whose order
+	 * map is extended as far as the records got so far allow. The cursor is
+	 * left where it was.
+	 * 
+	 * @see AsyncDataLoader
+	 * @see #presentableRowCount()
+	 */
+	public void appendRecords(List<Record> records) {
+		int oldCursorPos = m_cursorPos;
+		for (Record record : records) {
+			m_cursorPos = m_records.size();
+			m_records.add(record);
+			if (m_queueManager != null)
+				m_queueManager.addRecord(m_cursorPos);
+			updateBuffIndex();
+			updateIdsStocks(m_cursorPos, true);
+		}
+		m_cursorPos = oldCursorPos;
+		if (m_queueManager != null)
+			m_queueManager.extendOrderMap();
+	}
+
 	protected void buildRecord(Record record, WResultSet sourceRs) {
 		checkRecordDescriptor(sourceRs);
 		if (m_descriptorBuilt) {
@@ -502,7 +580,7 @@ public class JotyDataBuffer {
 				m_longKeyMap.remove(getKeyVal().getInteger());
 		}
 		updateIdsStocks(m_cursorPos, false);
-		m_records.removeElementAt(m_cursorPos);
+		m_records.remove(m_cursorPos);
 		reloadBuffIndex();
 		m_cursorPos = -1;
 	}
@@ -522,9 +600,7 @@ public class JotyDataBuffer {
 	}
 
 	public void empty(boolean withDescriptor) {
-		for (int i = 0; i < m_records.size(); i++)
-			m_records.removeElementAt(i);
-		m_records.removeAllElements();
+		m_records.clear();
 		m_strKeyMap.clear();
 		m_longKeyMap.clear();
 		emptyIdsStocks();
@@ -589,6 +665,19 @@ public class JotyDataBuffer {
 		}
 	}
 
+	/**
+	 * Builds a record with the values of the current row of {@code rs}
+	 * without adding it to the buffer: the record descriptor must be already
+	 * built. Since nothing of the buffer changes, the method can run outside
+	 * the event dispatch thread.
+	 */
+	Record fetchRecord(WResultSet rs) {
+		Record record = new Record();
+		buildRecord(record, rs);
+		getFromDataLayer(record, rs);
+		return record;
+	}
+
 	public long getKeyLongVal() {
 		return getKeyLongVal(-1);
 	}
@@ -598,15 +687,28 @@ public class JotyDataBuffer {
 	}
 
 	public Integer getKeyPos(Long lkey) {
-		if (m_keyName == null)
-			m_app.JotyMsg(this, "m_keyName is null: the key map doesn't work !");
-		return m_longKeyMap.get(lkey);
+		if (lkey == null)
+			return null;
+		int pos = keyPos(lkey);
+		return pos == -1 ? null : pos;
 	}
 
 	public Integer getKeyPos(String strKey) {
 		return m_strKeyMap.get(strKey);
 	}
 
+	/**
+	 * The same as {@code getKeyPos(Long)} but without boxing.
+	 * 
+	 * @return the position of the record having {@code lkey} as key value or
+	 *         -1 if it is absent.
+	 */
+	public int keyPos(long lkey) {
+		if (m_keyName == null)
+			m_app.JotyMsg(this, "m_keyName is null: the key map doesn't work !");
+		return m_longKeyMap.get(lkey);
+	}
+
 	public String getKeyStrVal(int pos) {
 		return getKeyVal(m_keyName, pos).m_strVal;
 	}
@@ -634,9 +736,14 @@ public class JotyDataBuffer {
 	}
 
 	public String getValueForSql(String fieldName) {
+		return getValueForSql(fieldName, m_cursorPos);
+	}
+
+	public String getValueForSql(String fieldName, int recPos) {
 		String retStr = "", tempStr;
 		try {
-			WrappedField wfield = getWField(fieldName);
+			int index = getFieldIndex(fieldName);
+			WrappedField wfield = index >= 0 && recPos >= 0 ? getWField(recPos, index) : null;
 			if (wfield != null) {
 				if (wfield.isNull())
 					retStr = "null";
@@ -763,6 +870,51 @@ public class JotyDataBuffer {
 		return retVal;
 	}
 
+	/**
+	 * Loads, in one pass on {@code rs}, the rows that belong to several
+	 * buffers: each row is added to the buffers mapped to the value of its
+	 * {@code keyField} column. Rows not mapped are skipped. Every buffer gets
+	 * its record descriptor built even if no row goes into it.
+	 * 
+	 * @param renderedBuffer
+	 *            the buffer whose rows are rendered by {@code renderer} while
+	 *            loaded (may be null)
+	 * @return false if the result set cannot be opened or if it lacks the
+	 *         {@code keyField} column
+	 * 
+	 * @see #loadData(WResultSet, BasicPostStatement, GridTerm)
+	 */
+	public static boolean loadData(WResultSet rs, BasicPostStatement postStatement, String keyField, Map<Long, List<JotyDataBuffer>> buffers, JotyDataBuffer renderedBuffer, GridTerm renderer) {
+		if (!rs.open(postStatement))
+			return false;
+		if (rs.m_cursor.m_fieldsMap.get(keyField) == null) {
+			rs.close();
+			return false;
+		}
+		for (List<JotyDataBuffer> keyBuffers : buffers.values())
+			for (JotyDataBuffer buffer : keyBuffers) {
+				buffer.buildRecordDescriptor(rs);
+				buffer.loadDataProlog(rs);
+			}
+		List<JotyDataBuffer> keyBuffers;
+		while (!rs.isEOF()) {
+			keyBuffers = buffers.get(rs.integerValue(keyField));
+			if (keyBuffers != null)
+				for (JotyDataBuffer buffer : keyBuffers) {
+					buffer.addFromDataLayer(rs);
+					if (renderer != null && buffer == renderedBuffer)
+						renderer.renderRecord(rs, buffer.m_keyName);
+				}
+			rs.next();
+		}
+		rs.close();
+		for (List<JotyDataBuffer> bufferList : buffers.values())
+			for (JotyDataBuffer buffer : bufferList)
+				if (buffer.m_queueManager != null)
+					buffer.m_queueManager.buildOrderMap();
+		return true;
+	}
+
 	protected boolean loadDataBreak(int count) {
 		return false;
 	}
@@ -773,6 +925,15 @@ public class JotyDataBuffer {
 		return wfield(fieldName, JotyTypes._long, "longValue", recPos).m_lVal;
 	}
 
+	/**
+	 * Returns the number of rows that can be presented: they are all the
+	 * records but while a queued buffer is being loaded, when they are only
+	 * those the order map already reaches.
+	 */
+	public int presentableRowCount() {
+		return m_streaming && m_queueManager != null ? Math.min(m_records.size(), m_queueManager.orderedCount()) : m_records.size();
+	}
+
 	public void newRecord(WResultSet sourceRs) {
 		Record record = new Record();
 		buildRecord(record, sourceRs);
@@ -782,9 +943,8 @@ public class JotyDataBuffer {
 
 	public boolean recordLookup(long lKey) {
 		if (lKey >= 0) {
-			Integer currentRecordPos = getKeyPos(lKey);
-			m_cursorPos = currentRecordPos == null ? -1 : currentRecordPos;
-			return currentRecordPos != null;
+			m_cursorPos = keyPos(lKey);
+			return m_cursorPos != -1;
 		} else
 			return false;
 	}
@@ -808,9 +968,7 @@ public class JotyDataBuffer {
 	}
 
 	public void setCellValue(String value, int row, int col) {
-		WrappedField wfiend = m_records.get(row).m_data.get(col);
-		wfiend.m_strVal = value;
-		wfiend.setToNull(false);
+		m_records.get(row).m_data.get(col).setVal(value);
 	}
 
 	public void setInteger(String fieldName, long lVal) {
@@ -822,6 +980,22 @@ public class JotyDataBuffer {
 		checkBufferIndex(fieldName);
 	}
 
+	/**
+	 * Makes the buffer keep the values of its records column by column, in
+	 * primitive arrays, instead of as a {@code WrappedField} object per cell:
+	 * the records are rebuilt on access and kept in a window of
+	 * {@code windowSize} rows. The buffer must be empty.
+	 * 
+	 * @see ColumnarRecords
+	 * @see ColumnarStore
+	 */
+	public void setColumnarStorage(int windowSize) {
+		if (m_records.size() > 0)
+			m_app.JotyMsg(this, "Columnar storage can be set only on an empty buffer !");
+		else
+			m_records = new ColumnarRecords(this, windowSize);
+	}
+
 	public void setKeyFieldName(String name) {
 		m_keyName = name;
 	}
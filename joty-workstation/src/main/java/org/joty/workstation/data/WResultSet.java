@@ -21,10 +21,8 @@ package org.joty.workstation.data;
 
 import java.sql.Blob;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Types;
 
 import javax.naming.NamingException;
 
@@ -32,11 +30,10 @@ import org.joty.access.Accessor;
 import org.joty.access.Accessor.DataDef;
 import org.joty.access.DbManager;
 import org.joty.access.Logger;
+import org.joty.access.MetadataCache.ColumnMetadata;
 import org.joty.access.PostStatement;
-import org.joty.app.Common;
 import org.joty.app.JotyException;
 import org.joty.app.JotyException.reason;
-import org.joty.common.ApplMessenger;
 import org.joty.common.BasicPostStatement;
 import org.joty.common.JotyTypes;
 import org.joty.common.Utilities;
@@ -298,71 +295,24 @@ public class WResultSet extends WrappedResultSet {
 		try {
 			m_statement = JotyDB.createStmnt(m_forUpdate);
 			m_application.m_db.setPostStatement(postStatement);
-			m_result = m_statement.executeQuery(m_application.m_db.nameSubst(postStatement, m_sql));
-			ResultSetMetaData metadata = m_result.getMetaData();
-			m_colCount = metadata.getColumnCount();
+			String sql = m_application.m_db.nameSubst(postStatement, m_sql);
+			m_result = m_statement.executeQuery(sql);
+			ColumnMetadata[] columns = m_application.metadataCache().statementColumns(sql, m_result.getMetaData());
+			m_colCount = columns.length;
 			m_cursor = new BasicJotyCursor(m_colCount, m_app);
-			int index;
 			FieldDescriptor currColumn;
 			for (int i = 0; i < m_colCount; i++) {
 				currColumn = new FieldDescriptor(m_app);
 				m_cursor.m_fields[i] = currColumn;
 				m_cursor.m_fields[i].m_pos = i;
-				index = i + 1;
-				currColumn.m_strName = metadata.getColumnLabel(index);
+				currColumn.m_strName = columns[i].m_label;
 				m_cursor.m_fieldsMap.put(currColumn.m_strName, currColumn);
-				currColumn.m_nSqlType = metadata.getColumnType(index);
-				currColumn.m_lPrecision = metadata.getPrecision(index); // size
-				currColumn.m_nScale = metadata.getScale(index); // decimals
-				switch (currColumn.m_nSqlType) {
-					case Types.CHAR:
-					case Types.VARCHAR:
-						currColumn.m_nType = JotyTypes._text;
-						break;
-					case Types.FLOAT:
-						currColumn.m_nType = JotyTypes._single;
-						break;
-					case Types.DOUBLE:
-						currColumn.m_nType = JotyTypes._double;
-						break;
-					case Types.REAL:
-					case Types.NUMERIC:
-					case Types.BIGINT:
-						if (currColumn.m_nScale == 0 || currColumn.m_nScale == -127)
-							if (currColumn.m_lPrecision > ((Common) ((ApplMessenger) m_app).getCommon()).m_intDigitDim)
-								currColumn.m_nType = JotyTypes._long;
-							else
-								currColumn.m_nType = JotyTypes._int;
-						else
-							currColumn.m_nType = JotyTypes._double;
-						break;
-					case Types.INTEGER:
-						currColumn.m_nType = JotyTypes._long;
-						break;
-					case Types.SMALLINT:
-						currColumn.m_nType = JotyTypes._int;
-						break;
-					case 11:
-					case Types.DATE:
-						currColumn.m_nType = JotyTypes._date;
-						break;
-					case Types.TIMESTAMP:
-						currColumn.m_nType = JotyTypes._dateTime;
-						break;
-					case Types.BLOB:
-					case Types.VARBINARY:
-					case Types.LONGVARBINARY:
-						currColumn.m_nType = m_smallBlobs == null || m_smallBlobs.contains(currColumn.m_strName) ? JotyTypes._smallBlob : JotyTypes._blob;
-						break;
-					default:
-						if (currColumn.m_nSqlType == Types.LONGVARCHAR && currColumn.m_lPrecision > 255 && currColumn.m_nScale == 0)
-							currColumn.m_nType = JotyTypes._text;
-						else {
-							if (Application.m_app.debug())
-								m_app.JotyMsg(this, "Unmapped Sql type " + String.valueOf(currColumn.m_nSqlType) + " for field '" + currColumn.m_strName + "' !");
-							currColumn.m_nType = JotyTypes._none;
-						}
-				}
+				currColumn.m_nSqlType = columns[i].m_sqlType;
+				currColumn.m_lPrecision = columns[i].m_precision; // size
+				currColumn.m_nScale = columns[i].m_scale; // decimals
+				currColumn.m_nType = columns[i].jotyType(m_smallBlobs == null || m_smallBlobs.contains(currColumn.m_strName));
+				if (currColumn.m_nType == JotyTypes._none && Application.m_app.debug())
+					m_app.JotyMsg(this, "Unmapped Sql type " + String.valueOf(currColumn.m_nSqlType) + " for field '" + currColumn.m_strName + "' !");
 			}
 			next();
 			retVal = true;
@@ -74,10 +74,10 @@ public abstract class DescrTerm extends Term {
 	protected void createComponent(TermContainerPanel panel) {}
 
 	String descrByItemData(long itemData) {
-		Integer posIdx = null;
+		int posIdx = -1;
 		if (m_literalStruct.m_descrReverseMap != null)
 			posIdx = m_literalStruct.m_descrReverseMap.get(itemData);
-		if (itemData >= 0 && posIdx != null)
+		if (itemData >= 0 && posIdx >= 0)
 			return m_literalStruct.m_descrArray.get(posIdx).descr;
 		else
 			return "";
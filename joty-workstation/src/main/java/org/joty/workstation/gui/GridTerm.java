@@ -21,7 +21,9 @@ package org.joty.workstation.gui;
 
 import java.awt.event.MouseEvent;
 import java.beans.Beans;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.joty.access.PostStatement;
@@ -35,6 +37,7 @@ import org.joty.data.WrappedField;
 import org.joty.gui.WFieldSet;
 import org.joty.workstation.app.Application;
 import org.joty.workstation.app.Application.LiteralStruct;
+import org.joty.workstation.data.AsyncDataLoader;
 import org.joty.workstation.data.JotyDataBuffer;
 import org.joty.workstation.data.WResultSet;
 import org.joty.workstation.gui.DataAccessPanel.ActionOnRowInterface;
@@ -143,6 +146,18 @@ public abstract class GridTerm extends DescrTerm {
 	public String m_seq_name;
 	protected boolean m_newRowJustCreated;
 	public QueryInterface m_queryInterface;
+	/**
+	 * If true (default) the buffers of a slave term are loaded by queries
+	 * that fetch the rows for many master rows at once, when the term
+	 * definition allows it.
+	 * 
+	 * @see #createSlaveTermBuffers(int)
+	 */
+	public boolean m_bulkLoad;
+	/** maximum number of master keys listed in a single bulk query */
+	public int m_bulkLoadChunkSize;
+	/** the loading in progress, if started by {@code loadDataAsync} */
+	protected AsyncDataLoader m_asyncLoader;
 	public int m_mainIterator;
 	public DataDef m_dataDef;
 	private boolean m_accessorMode;
@@ -196,6 +211,8 @@ public abstract class GridTerm extends DescrTerm {
 		m_seq_name = Application.m_common.m_seq_name;
 		m_autoIncrGenID = Application.m_common.m_idFieldAutoIncrement;
 		m_newRowJustCreated = false;
+		m_bulkLoad = true;
+		m_bulkLoadChunkSize = 500;
 		m_mainIterator = -1;
 		m_wfields = new WFieldSet(m_app);
 		m_gridRowDescriptor = new GridRowDescriptor();
@@ -228,6 +245,11 @@ public abstract class GridTerm extends DescrTerm {
 		updateDriverTerms();
 	}
 
+	@Override
+	public void clearAppReferences() {
+		cancelAsyncLoad();
+	}
+
 	@Override
 	protected void clearComponent() {
 		if (m_dataTable != null || explicitQuery()) {
@@ -263,6 +285,7 @@ public abstract class GridTerm extends DescrTerm {
 	}
 
 	void clearDataBuffer() {
+		cancelAsyncLoad();
 		if (m_slave)
 			clearSlaveBuffers();
 		else if (m_dataBuffer != null)
@@ -672,8 +695,143 @@ public abstract class GridTerm extends DescrTerm {
 		return rs.open(true, postStatement) ? rs : null;
 	}
 
+	/**
+	 * Tells whether {@code doLoadData} can return before the buffer is
+	 * loaded: the terms that are able to show the rows while they arrive
+	 * override the method.
+	 * 
+	 * @see #loadDataAsync(WResultSet)
+	 */
+	protected boolean asyncLoadable() {
+		return false;
+	}
+
+	/** Notifies that the rows from {@code firstRow} to {@code lastRow} have been appended by the asynchronous load. */
+	protected void asyncRecordsAppended(int firstRow, int lastRow) {}
+
+	protected void asyncLoadCompleted(boolean success) {}
+
+	public void cancelAsyncLoad() {
+		if (m_asyncLoader != null) {
+			m_asyncLoader.cancel();
+			m_asyncLoader = null;
+		}
+	}
+
+	public boolean isLoading() {
+		return m_asyncLoader != null;
+	}
+
+	/**
+	 * Starts the loading of the buffer in the executor provided by the
+	 * application, leaving the event dispatch thread free.
+	 * 
+	 * @see AsyncDataLoader
+	 * @see Application#dataLoadExecutor()
+	 */
+	protected void loadDataAsync(WResultSet rs) {
+		m_asyncLoader = new AsyncDataLoader(m_dataBuffer, rs, m_queryDefPostStatement, m_app.m_asyncFirstChunkSize, m_app.m_asyncLoadChunkSize, new AsyncDataLoader.Listener() {
+			@Override
+			public void recordsAppended(int firstRow, int lastRow) {
+				asyncRecordsAppended(firstRow, lastRow);
+			}
+
+			@Override
+			public void loadCompleted(WResultSet rs, boolean success) {
+				m_asyncLoader = null;
+				lookForDataStructure(rs);
+				asyncLoadCompleted(success);
+			}
+		});
+		m_asyncLoader.start(m_app.dataLoadExecutor());
+	}
+
+	/**
+	 * Returns the query that loads the rows of the slave term related to all
+	 * the master keys listed in {@code keysList}. In remote accessor mode the
+	 * query is not returned: it is left to the {@code m_queryDefPostStatement}
+	 * member, as {@code dataQuery} does.
+	 */
+	String bulkDataQuery(String keysList) {
+		String filter = String.format("%1$s IN (%2$s)", m_mainEntityKeyField, keysList);
+		String sqlStr = null;
+		if (m_accessorMode) {
+			DataAccessPanel dataPanel = (DataAccessPanel) m_panel;
+			m_queryDefPostStatement = dataPanel.createQueryDefPostStatement(m_name, filter, m_sortExpr, dataPanel.m_panelIdxInDialog);
+			if (dataPanel.m_localAccessor) {
+				m_app.m_accessor.setPostStatement(m_queryDefPostStatement);
+				m_dataTable = m_app.m_accessor.getUpdatableSetFromDataDef();
+				sqlStr = m_app.m_accessor.getQueryFromPostStatement();
+				m_queryDefPostStatement = null;
+			}
+		} else {
+			sqlStr = String.format("Select %1$s from %2$s", m_dataTable + ".*", m_dataTable) + " WHERE " + filter;
+			if (m_sortExpr != null && !m_sortExpr.isEmpty())
+				sqlStr += " Order by " + m_sortExpr;
+		}
+		return sqlStr;
+	}
+
+	/**
+	 * Tells whether the term can be loaded by {@code bulkDataQuery}: that is
+	 * when the relation with the master term is the only filter applied.
+	 */
+	protected boolean bulkLoadable() {
+		return m_bulkLoad && m_mainEntityKeyField != null && !m_mainEntityKeyField.isEmpty() && 
+				(m_definedWhereClause == null || m_definedWhereClause.isEmpty()) && 
+				m_whereClauseImplementor == null && m_queryInterface == null && 
+				(m_accessorMode || m_dataTable != null);
+	}
+
+	/**
+	 * Loads the buffers of all the rows of the master term with one query
+	 * every {@code m_bulkLoadChunkSize} master rows, distributing the rows
+	 * got to the buffers by the value of the {@code m_mainEntityKeyField}
+	 * column.
+	 * 
+	 * @return false if the result set doesn't expose the key column, so that
+	 *         the loading must take place row by row
+	 */
+	protected boolean bulkLoadSlaveTermBuffers(int pilotSize, int renderedIndex) {
+		String keyColumn = m_mainEntityKeyField.substring(m_mainEntityKeyField.lastIndexOf('.') + 1);
+		Map<Long, List<JotyDataBuffer>> buffers = new HashMap<Long, List<JotyDataBuffer>>();
+		JotyDataBuffer renderedBuffer = null;
+		StringBuilder keysList = new StringBuilder();
+		long whereKey;
+		for (int i = 0; i < pilotSize; i++) {
+			JotyDataBuffer newBuffer = new TermBuffer(this, m_targetDatumField);
+			m_dataBuffers.put(mainTermData(i), newBuffer);
+			if (i == renderedIndex)
+				renderedBuffer = newBuffer;
+			whereKey = m_mainTermLiteralStruct != null ? m_mainTermLiteralStruct.m_descrArray.get(i).id : mainTermData(i);
+			List<JotyDataBuffer> keyBuffers = buffers.get(whereKey);
+			if (keyBuffers == null) {
+				keyBuffers = new ArrayList<JotyDataBuffer>();
+				buffers.put(whereKey, keyBuffers);
+				if (keysList.length() > 0)
+					keysList.append(", ");
+				keysList.append(whereKey);
+			}
+			keyBuffers.add(newBuffer);
+			if (buffers.size() == m_bulkLoadChunkSize || i == pilotSize - 1) {
+				WResultSet rs = new WResultSet(null, bulkDataQuery(keysList.toString()));
+				if (!JotyDataBuffer.loadData(rs, m_queryDefPostStatement, keyColumn, buffers, renderedBuffer, this))
+					return false;
+				buffers.clear();
+				keysList.setLength(0);
+				renderedBuffer = null;
+			}
+		}
+		return true;
+	}
+
 	protected void createSlaveTermBuffers(int pilotSize) {
 		int oldMainIterator = m_mainIterator;
+		if (pilotSize > 0 && bulkLoadable()) {
+			if (bulkLoadSlaveTermBuffers(pilotSize, oldMainIterator))
+				return;
+			m_dataBuffers.clear();
+		}
 		for (m_mainIterator = 0; m_mainIterator < pilotSize; m_mainIterator++) {
 			JotyDataBuffer newBuffer = new TermBuffer(this, m_targetDatumField);
 			m_dataBuffers.put(mainTermData(m_mainIterator), newBuffer);
@@ -684,6 +842,7 @@ public abstract class GridTerm extends DescrTerm {
 	}
 
 	protected void doLoadData() {
+		cancelAsyncLoad();
 		m_app.beginWaitCursor();
 		if (m_slave) {
 			int pilotSize = ((GridTerm) m_panel.term(m_mainTermName)).getRowQty();
@@ -698,9 +857,13 @@ public abstract class GridTerm extends DescrTerm {
 			WResultSet rs = new WResultSet(null, dataQuery());
 			prepareRs(rs);
 			m_dataBuffer.empty(false);
-			m_dataBuffer.loadData(rs, m_queryDefPostStatement, this);
 			m_updatingActor = true;
-			lookForDataStructure(rs);
+			if (asyncLoadable())
+				loadDataAsync(rs);
+			else {
+				m_dataBuffer.loadData(rs, m_queryDefPostStatement, this);
+				lookForDataStructure(rs);
+			}
 		}
 		m_app.endWaitCursor();
 	}
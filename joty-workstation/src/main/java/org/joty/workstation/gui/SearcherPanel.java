@@ -24,6 +24,7 @@ import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.beans.Beans;
+import java.util.Vector;
 
 import javax.swing.JLabel;
 import javax.swing.border.LineBorder;
@@ -32,6 +33,7 @@ import org.joty.common.SearchQueryBuilderBack;
 import org.joty.data.SearchQueryBuilderFront;
 import org.joty.data.WrappedField;
 import org.joty.workstation.app.Application;
+import org.joty.workstation.data.JotyDataBuffer;
 import org.joty.workstation.data.WResultSet;
 import org.joty.workstation.data.JotyDataBuffer.Record;
 
@@ -49,6 +51,13 @@ import org.joty.workstation.data.JotyDataBuffer.Record;
  * search process, the resulting query performs it. The size of the resulting
  * page is also got from the configuration file.
  * <p>
+ * If the configuration enables the keyset pagination, the panel keeps, for
+ * each page reached, the values of the sort columns in the last row of the
+ * previous page and sends them in place of the number of iteration: the sort
+ * clause is completed by the key field so that the order is total. When the
+ * values cannot be used (a null value or a sort expression that is not a
+ * column) the page is requested by its number of iteration.
+ * <p>
  * The class controls the availability of the search/navigation buttons
  * depending on the effect of the research.
  * 
@@ -76,6 +85,8 @@ public class SearcherPanel extends Panel {
 	public WrappedField m_detailsKeyWField;
 	private boolean m_backward;
 	public int m_iteration;
+	/** for each page, the seek values that select it in keyset mode (null for the first page or if not available) */
+	private Vector<String[]> m_pageSeekValues = new Vector<String[]>();
 	public boolean m_furtherRecords;
 	private String m_lblNextText;
 	private String m_lblSearchText;
@@ -205,19 +216,25 @@ public class SearcherPanel extends Panel {
 		}
 		emptyResult();
 		String query = null;
+		boolean keysetMode = Application.m_common.m_keysetPagination;
+		String orderByClause = keysetMode ? keysetOrderByClause(qBuilder.m_orderByClause) : qBuilder.m_orderByClause;
+		String[] seekValues = keysetMode && m_iteration > 0 && m_iteration < m_pageSeekValues.size() ? m_pageSeekValues.get(m_iteration) : null;
 		if (m_accessorMode) {
 			m_queryDefPostStatement = createQueryDefPostStatement(
-					null, qBuilder.m_whereClause, qBuilder.m_orderByClause, m_panelContextIndex, String.valueOf(m_iteration));
+					null, qBuilder.m_whereClause, orderByClause, m_panelContextIndex, String.valueOf(m_iteration));
+			m_queryDefPostStatement.m_seekValues = seekValues;
 			if (!m_app.remoteAccessorMode()) {
 				m_app.m_accessor.setPostStatement(m_queryDefPostStatement);
 				query = m_app.m_accessor.getQueryFromPostStatement();
 				m_queryDefPostStatement = null;
 			}
 		} else
-			query = getQuery(qBuilder);
+			query = getQuery(qBuilder, orderByClause, seekValues);
 
 		WResultSet rs = new WResultSet(null, query);
 		loadResult(rs);
+		if (keysetMode)
+			storeNextPageSeekValues(orderByClause);
 		updateSearchNavigator(false);
 		if (connectedDataPanel != null)
 			connectedDataPanel.lookForDataStructure(rs);
@@ -234,13 +251,17 @@ public class SearcherPanel extends Panel {
 	 */
 	
 	public String getQuery(SearchQueryBuilderFront qBuilder) {
+		return getQuery(qBuilder, qBuilder.m_orderByClause, null);
+	}
+
+	public String getQuery(SearchQueryBuilderFront qBuilder, String orderByClause, String[] seekValues) {
 		String retVal = null;
 		if (qBuilder.m_setDefinition == null)			
 			m_app.JotyMsg(this, "Set definition missing in query builder ! \n(use 'setQuerySetDef()' method in " + 
 					this.m_criteriaPanel.getClass() + " or switch the dialog to the AccessorMode)");
 		else
 			retVal = qBuilder.m_backDelegate.getQuery(qBuilder.m_setDefinition, qBuilder.m_whereClause, 
-														qBuilder.m_orderByClause, this.m_iteration, null);
+														orderByClause, this.m_iteration, null, seekValues);
 		return retVal;
 	}
 
@@ -266,6 +287,21 @@ public class SearcherPanel extends Panel {
 			doSearch(false);
 	}
 
+	/**
+	 * Appends the key field to the sort clause, if it is not already there,
+	 * so that no two rows can have the same position.
+	 */
+	private String keysetOrderByClause(String orderByClause) {
+		if (orderByClause == null || orderByClause.trim().length() == 0)
+			return m_keyFieldName;
+		String[] columns = SearchQueryBuilderBack.sortColumns(orderByClause);
+		if (columns != null)
+			for (String column : columns)
+				if (unqualified(column).equalsIgnoreCase(m_keyFieldName))
+					return orderByClause;
+		return orderByClause + ", " + m_keyFieldName;
+	}
+
 	public void injectIntoBuffer() {
 		if (!Beans.isDesignTime())
 			m_gridManager.m_gridBuffer.m_searcher = this;
@@ -296,6 +332,30 @@ public class SearcherPanel extends Panel {
 		m_app.setWaitCursor(oldCursorIsWaiting);
 	}
 
+	/**
+	 * Stores the values of the sort columns in the last row loaded: they
+	 * will select the next page. The values are not stored if they don't
+	 * exist (no further records) or cannot be used.
+	 */
+	private void storeNextPageSeekValues(String orderByClause) {
+		String[] seekValues = null;
+		JotyDataBuffer buffer = m_gridManager.m_gridBuffer;
+		String[] columns = SearchQueryBuilderBack.sortColumns(orderByClause);
+		if (m_furtherRecords && columns != null && buffer.m_records.size() > 0) {
+			seekValues = new String[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				seekValues[i] = buffer.getValueForSql(unqualified(columns[i]), buffer.m_records.size() - 1);
+				if (seekValues[i].length() == 0 || seekValues[i].equals("null")) {
+					seekValues = null;
+					break;
+				}
+			}
+		}
+		if (m_pageSeekValues.size() <= m_iteration + 1)
+			m_pageSeekValues.setSize(m_iteration + 2);
+		m_pageSeekValues.set(m_iteration + 1, seekValues);
+	}
+
 	public void setKeyFieldName(String name) {
 		m_keyFieldName = name;
 		if (!Beans.isDesignTime())
@@ -374,6 +434,11 @@ public class SearcherPanel extends Panel {
 	public void resetIteration() {
 		m_iteration = 0;
 		m_furtherRecords = false;
+		m_pageSeekValues.clear();
+	}
+
+	private String unqualified(String column) {
+		return column.substring(column.lastIndexOf('.') + 1);
 	}
 
 	private boolean initAction() {
@@ -178,7 +178,7 @@ public class Table extends ScrollGridPane {
 			if (!Beans.isDesignTime()) {
 				JotyDataBuffer buffer = getBuffer();
 				if (buffer != null)
-					retVal = buffer.m_records.size();
+					retVal = buffer.presentableRowCount();
 			}
 			return retVal;
 		}
@@ -675,6 +675,11 @@ public class Table extends ScrollGridPane {
 		repaintCell(m_jtable, row, column);
 	}
 
+	/** Notifies the rows appended to the buffer while it is loaded asynchronously. */
+	public void rowsAppended(int firstRow, int lastRow) {
+		m_model.fireTableRowsInserted(firstRow, lastRow);
+	}
+
 	public void setAllColsAlignement(int alignement) {
 		m_allColsAlignement = alignement;
 	}
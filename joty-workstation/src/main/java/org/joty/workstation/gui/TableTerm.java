@@ -78,8 +78,11 @@ public class TableTerm extends GridTerm {
 
 	public TableTerm(TermContainerPanel panel, int dataType, TermParams params) {
 		super(panel, dataType, params);
-		if (!m_slave && !Beans.isDesignTime())
+		if (!m_slave && !Beans.isDesignTime()) {
 			m_dataBuffer = new TermBuffer(this, m_targetDatumField);
+			if (m_app.m_columnarDataBuffers)
+				m_dataBuffer.setColumnarStorage(m_app.m_columnarWindowSize);
+		}
 		m_reloadOnDetailsDialogChange = true;
 		m_smallBlobs = Utilities.m_me.new Stocker();
 		m_publishersSet = new HashSet<String>();
@@ -91,6 +94,29 @@ public class TableTerm extends GridTerm {
 		m_smallBlobs.add(fieldName);
 	}
 
+	/**
+	 * The table can be loaded asynchronously if the application is
+	 * configured for it and no other term depends on the whole content of
+	 * the buffer.
+	 */
+	@Override
+	protected boolean asyncLoadable() {
+		return m_app.m_asyncDataLoading && !m_slave && m_slaveTermName == null;
+	}
+
+	@Override
+	protected void asyncLoadCompleted(boolean success) {
+		checkSelection();
+	}
+
+	@Override
+	protected void asyncRecordsAppended(int firstRow, int lastRow) {
+		if (firstRow == 0)
+			m_table.newDataAvailable();
+		else
+			m_table.rowsAppended(firstRow, lastRow);
+	}
+
 	@Override
 	public void bufferRender() {
 		m_table.newDataAvailable();
@@ -547,8 +547,8 @@ public class TermContainerPanel extends Panel implements ActionListener {
 	}
 
 	String descrByData(LiteralStruct literalStruct, int itemData) {
-		Integer posIdx = literalStruct.m_descrReverseMap.get(itemData);
-		if (posIdx != null)
+		int posIdx = literalStruct.m_descrReverseMap.get(itemData);
+		if (posIdx >= 0)
 			return literalStruct.m_descrArray.get(posIdx).descr;
 		else
 			return "";
@@ -69,7 +69,7 @@ public class WebClient extends AbstractWebClient {
     @Override
     protected boolean doGet(AbstractWebConn webConn, Object manager) {
 		m_responseText = webConn.doConnection(null, false, m_command.compareToIgnoreCase("end") != 0);
-        return doEpilog();
+        return webConn.m_notModified || webConn.m_responseBytes != null || doEpilog();
     }
     
     private boolean doEpilog(){
@@ -85,7 +85,7 @@ public class WebClient extends AbstractWebClient {
 			}
 		}
 		if (m_responseText == null)
-			m_application.m_common.resetRemoteTransactionBuilding();
+			buildingRemoteTransaction_reset();
 		return m_responseText != null;
     }
 
@@ -134,20 +134,41 @@ public class WebClient extends AbstractWebClient {
 
 	/**
 	 * Gets a {@code ConfigFile} from the server.
+	 * <p>
+	 * If the server delivers the content together with its entity tag, both
+	 * are kept in the local files of the application, so that the next time the
+	 * request is made conditional and the content is downloaded again only if
+	 * it has changed.
+	 * 
 	 * @param type possible values are {conf, confX, jotyLang, appLang}
 	 * @param lang the language identifier in the case {@code type} gets the values {jotyLang, appLang}
 	 * @return {@code ConfigFile} object
 	 */
 	public ConfigFile getConfig(String type, String lang) {
+		String localName = "config_" + type + (lang == null ? "" : ("_" + lang));
+		String[] localCopy = (String[]) m_common.accessLocalData(localName, null);
 		prepareReqCommand("config");
 		addReqParm("type", type);
 		if (lang != null)
 			addReqParm("lang", lang);
+		if (localCopy != null)
+			m_ifNoneMatch = localCopy[0];
 		ConfigFile configuration = null;
 		if (doRequest()) {
-			DocumentDescriptor docDescriptor = getDocumentFromRespContent(true);
-			if (docDescriptor.success) {
-				String configContent = m_common.m_xmlEncoder.decode(getValue(docDescriptor.xml, "ConfigData"), false);
+			String configContent = null;
+			if (m_respNotModified && localCopy != null)
+				configContent = localCopy[1];
+			else {
+				DocumentDescriptor docDescriptor = getDocumentFromRespContent(true);
+				if (docDescriptor.success) {
+					configContent = m_common.m_xmlEncoder.decode(getValue(docDescriptor.xml, "ConfigData"), false);
+					if (m_respEtag != null) {
+						Utilities.checkDirectory(m_application.localFilesPath());
+						m_common.accessLocalData(localName, new String[] {m_respEtag, configContent});
+					}
+				}
+			}
+			if (configContent != null) {
 				configuration = new ConfigFile(m_app);
 				configuration.buildDoc(configContent);
 			}
@@ -47,16 +47,12 @@ public class WebConn extends AbstractWebConn {
 	protected String connect() {
 		String retVal = null;
 		try {
-			if (m_post) {
-				OutputStreamWriter out = new OutputStreamWriter(m_conn.getOutputStream());
-				out.write(m_postContent);
-				out.close();
-			} else {
+			if (m_post)
+				writePostContent();
+			else
 				m_conn.connect();
-			}
 			responseCode = m_conn.getResponseCode();
-			InputStream is = m_conn.getInputStream();
-			retVal = getResp(is);
+			retVal = readResponse();
 		} catch (IOException e1) {
 			manageException(e1);
 		}